@@ -1,16 +1,44 @@
 package me.kokokotlin.main;
 
+import me.kokokotlin.main.compiler.BatchCompiler;
+import me.kokokotlin.main.engine.ApproximateMatcher;
 import me.kokokotlin.main.engine.AutomatonBase;
+import me.kokokotlin.main.engine.DFA;
+import me.kokokotlin.main.engine.ENFA;
+import me.kokokotlin.main.engine.EnginePlanner;
+import me.kokokotlin.main.engine.LanguageStatistics;
+import me.kokokotlin.main.engine.Lexer;
 import me.kokokotlin.main.engine.Loader;
+import me.kokokotlin.main.engine.Matcher;
+import me.kokokotlin.main.engine.OffHeapTransitionTable;
+import me.kokokotlin.main.engine.State;
+import me.kokokotlin.main.engine.StateLayout;
+import me.kokokotlin.main.engine.TransitionTable;
 import me.kokokotlin.main.engine.graphviz.DotEncoder;
+import me.kokokotlin.main.engine.metrics.PhaseProfiler;
 import me.kokokotlin.main.engine.regex.RegularExpressionLoader;
-
+import me.kokokotlin.main.engine.trace.ExecutionTrace;
+import me.kokokotlin.main.engine.trace.TraceReplay;
+import me.kokokotlin.main.engine.trace.TraceStep;
+import me.kokokotlin.main.server.AutomatonRegistry;
+import me.kokokotlin.main.server.AutomatonReloader;
+import me.kokokotlin.main.server.MatchServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 
 public class Main {
@@ -21,6 +49,7 @@ public class Main {
     private static Path dotPath;
 
     private static String word;
+    private static Path wordsPath;
     private static String regex;
 
     private static Path automatonSrc;
@@ -28,6 +57,37 @@ public class Main {
     private static boolean pngFile;
     private static Path pngPath;
 
+    private static int maxDrawnStates = Integer.MAX_VALUE;
+
+    private static Integer statisticsLength;
+
+    private static Path compilePath;
+    private static Path layoutSamplePath;
+
+    private static Integer fuzzyCost;
+    private static int[] editCosts = { 1, 1, 1 };
+
+    private static EnginePlanner.Engine engineOverride;
+    private static boolean explainEngine = false;
+
+    private static PhaseProfiler.Format profileFormat;
+    private static PhaseProfiler profiler;
+
+    private static final int TRACE_CAPACITY = 4096;
+    private static final int TRACE_MAX_ACTIVE_STATES = 64;
+    private static Path tracePath;
+    private static Path replayPath;
+
+    private static Path compileSourceDirectory;
+    private static Path compileOutputDirectory;
+
+    private static Path lexerPath;
+    private static Path lexInputPath;
+
+    private static Path socketPath;
+    private static Path serveDirectory;
+    private static boolean watchSources = false;
+
     private static String convertWord(String word) {
         return (word.length() == 0) ? "ε" : word;
     }
@@ -38,13 +98,35 @@ Automaton Interpreter by Yannik Höll (2021)
 
 Command line switches:
     -h: Display help
+    -fuzzy <k>: Accept words with an edit distance of at most k to a word of the automaton and print the distance
+    -fuzzy-costs <insertion>,<deletion>,<substitution>: Costs of the edit operations for -fuzzy [default: 1,1,1]
     -c: Check the source for errors (only works with provided source files)
+    -compile <path>: Write the DFA of the automaton as compiled transition table (.autc), which can be loaded with -p
+    -compile-all <source directory> <output directory>: Compile every .aut and .regex file of the directory tree
+        concurrently into .autc files (and .dot files with -d) named after the source (x.aut -> x.aut.autc), unchanged
+        sources are skipped
+    -layout <path>: With -compile, number the states by how often the words of the file (one per line) visit them,
+        so that hot states are next to each other in the compiled table (also works for a compiled automaton with -p)
     -d <path>: Write graph representation to dot file for graphviz [default: automaton.dot]
+    -engine <dense|minimal|lazy|bit-parallel>: Match with the given engine instead of the one chosen by the cost model
+    -explain: Print the engine chosen for matching and the reason to stderr
     -i: Start program in interactive mode
-    -p <path>: Path of the source of the automaton 
+    -lex <token definitions> <input>: Split the input into the longest tokens and print them as name, offset and length
+        (definitions are lines "<name> regex <regular expression>" or "<name> aut <path>", earlier lines win ties)
+    -max-states <n>: Draw at most n states in the dot file or image, the remaining states are collapsed into one node
+    -p <path>: Path of the source of the automaton, compiled automata (.autc) are memory mapped and only match words,
+        word lists (.dict, one word per line) are built into their minimal DFA
     -png <path>: Save a image of the graph at the given path [default: automaton.png]
+    -profile [text|json]: Print wall time, cpu time, allocated bytes and automaton sizes of every phase to stderr [default: text]
     -regex <regular expression>: Regular expression from which an automaton is build
+    -stats <n>: Print the number of accepted words (over all chars, a wildcard stands for every char outside of the
+        alphabet) for every length up to n and a shortest accepted word
+    -serve <socket path> [<directory>]: Serve match requests on a unix domain socket for the loaded automaton and all automata in the directory
+    -replay <path>: Step through a recorded trace, with -d the active states are highlighted in the dot file
+    -watch: Reload changed automaton files while serving (see -serve)
+    -trace <path>: Record the execution of the matches and write the trace to the given path [needs -Dautomaton.trace=true]
     -w: Input word for the automaton [required when no -i, -c, -d provided]
+    -words <path>: Match every line of the file as word, words with common prefixes share the work
 
 You have to provide a path to a source file or a regular expression such that an automaton can be loaded.
 If neither is provided, the program will exit without further action.
@@ -75,6 +157,10 @@ If both are provided the program will load from file. The regex will then be not
                 case "-w" -> {
                     word = getArgumentOrError(argQueue, "Command line option -w needs a argument <word>!");
                 }
+                case "-words" -> {
+                    String argument = getArgumentOrError(argQueue, "Command line option -words needs a argument <file path>!");
+                    wordsPath = Paths.get(argument);
+                }
                 case "-h" -> {
                     printHelp();
                     System.exit(0);
@@ -102,6 +188,84 @@ If both are provided the program will load from file. The regex will then be not
                     String maybePath = tryGetArgument(argQueue);
                     pngPath = Paths.get((maybePath != null) ? maybePath : "automaton.png");
                 }
+                case "-compile-all" -> {
+                    compileSourceDirectory = Paths.get(getArgumentOrError(argQueue, "Command line option -compile-all needs a argument <source directory>!"));
+                    compileOutputDirectory = Paths.get(getArgumentOrError(argQueue, "Command line option -compile-all needs a argument <output directory>!"));
+                }
+                case "-lex" -> {
+                    lexerPath = Paths.get(getArgumentOrError(argQueue, "Command line option -lex needs a argument <token definitions>!"));
+                    lexInputPath = Paths.get(getArgumentOrError(argQueue, "Command line option -lex needs a argument <input>!"));
+                }
+                case "-max-states" -> {
+                    String argument = getArgumentOrError(argQueue, "Command line option -max-states needs a argument <number of states>!");
+                    try {
+                        maxDrawnStates = Integer.parseInt(argument);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Command line option -max-states needs a number as argument!");
+                    }
+                }
+                case "-stats" -> {
+                    String argument = getArgumentOrError(argQueue, "Command line option -stats needs a argument <maximal word length>!");
+                    try {
+                        statisticsLength = Integer.parseInt(argument);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Command line option -stats needs a number as argument!");
+                    }
+                }
+                case "-fuzzy" -> {
+                    String argument = getArgumentOrError(argQueue, "Command line option -fuzzy needs a argument <maximal distance>!");
+                    try {
+                        fuzzyCost = Integer.parseInt(argument);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Command line option -fuzzy needs a number as argument!");
+                    }
+                }
+                case "-fuzzy-costs" -> {
+                    String argument = getArgumentOrError(argQueue, "Command line option -fuzzy-costs needs a argument <insertion>,<deletion>,<substitution>!");
+                    String[] costs = argument.split(",");
+                    if (costs.length != 3) throw new IllegalArgumentException("Command line option -fuzzy-costs needs three costs separated by commas!");
+                    try {
+                        for (int i = 0; i < 3; i++) editCosts[i] = Integer.parseInt(costs[i].trim());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Command line option -fuzzy-costs needs numbers as costs!");
+                    }
+                }
+                case "-compile" -> {
+                    String argument = getArgumentOrError(argQueue, "Command line option -compile needs a argument <file path>!");
+                    compilePath = Paths.get(argument);
+                }
+                case "-engine" -> {
+                    String argument = getArgumentOrError(argQueue, "Command line option -engine needs a argument <engine>!");
+                    engineOverride = EnginePlanner.Engine.of(argument);
+                }
+                case "-explain" -> {
+                    explainEngine = true;
+                }
+                case "-layout" -> {
+                    String argument = getArgumentOrError(argQueue, "Command line option -layout needs a argument <file path>!");
+                    layoutSamplePath = Paths.get(argument);
+                }
+                case "-profile" -> {
+                    String maybeFormat = tryGetArgument(argQueue);
+                    profileFormat = (maybeFormat != null) ? PhaseProfiler.Format.of(maybeFormat) : PhaseProfiler.Format.TEXT;
+                }
+                case "-trace" -> {
+                    String argument = getArgumentOrError(argQueue, "Command line option -trace needs a argument <file path>!");
+                    tracePath = Paths.get(argument);
+                }
+                case "-serve" -> {
+                    String argument = getArgumentOrError(argQueue, "Command line option -serve needs a argument <socket path>!");
+                    socketPath = Paths.get(argument);
+                    String maybeDirectory = tryGetArgument(argQueue);
+                    if (maybeDirectory != null) serveDirectory = Paths.get(maybeDirectory);
+                }
+                case "-watch" -> {
+                    watchSources = true;
+                }
+                case "-replay" -> {
+                    String argument = getArgumentOrError(argQueue, "Command line option -replay needs a argument <file path>!");
+                    replayPath = Paths.get(argument);
+                }
                 default -> {
                     throw new IllegalArgumentException(String.format("Command line option %s unknown! See -h for help!", currentOption));
                 }
@@ -109,7 +273,83 @@ If both are provided the program will load from file. The regex will then be not
         }
     }
 
-    private static void interactivePrompt(AutomatonBase automaton) {
+    // runs the work as a phase of the profile if -profile was given
+    private static <T> T measure(String phase, Supplier<T> work) {
+        return (profiler != null) ? profiler.measure(phase, work) : work.get();
+    }
+
+    private static void run(String phase, Runnable work) {
+        if (profiler != null) profiler.run(phase, work);
+        else work.run();
+    }
+
+    // number of characters that will be matched, the planner decides by it if the construction of a dfa pays off
+    private static long expectedInputLength() {
+        if (interactive) return EnginePlanner.UNKNOWN_INPUT_LENGTH;
+        if (wordsPath != null) {
+            try {
+                return Files.size(wordsPath);
+            } catch (IOException e) {
+                return EnginePlanner.UNKNOWN_INPUT_LENGTH;
+            }
+        }
+
+        return (word != null) ? word.length() : 0;
+    }
+
+    private static Matcher plannedMatcher(Supplier<EnginePlanner.Plan> planning) {
+        EnginePlanner.Plan plan = measure("plan", planning);
+        if (explainEngine) System.err.printf("Engine: %s\n", plan);
+
+        return plan.matcher();
+    }
+
+    private static void matchWords(Matcher matcher) {
+        if (interactive) {
+            interactivePrompt(matcher);
+        } else if (wordsPath != null) {
+            List<String> words;
+            try {
+                words = Files.readAllLines(wordsPath);
+            } catch (IOException e) {
+                System.err.printf("Couldn't read words %s: %s\n", wordsPath, e.getMessage());
+                return;
+            }
+
+            StringBuilder output = new StringBuilder();
+            if (matcher instanceof ApproximateMatcher) {
+                run("match", () -> words.forEach(w -> output.append(result(matcher, w)).append('\n')));
+            } else {
+                boolean[] accepted = measure("match", () -> matcher.matchAll(words));
+                for (int i = 0; i < accepted.length; i++) {
+                    output.append(String.format("Word: %s, Accepted: %s\n", convertWord(words.get(i)), accepted[i]));
+                }
+            }
+            System.out.print(output);
+        } else {
+
+            if (word == null) {
+                System.err.println("No word provided and not in interactive mode! Exiting...");
+                return;
+            }
+
+            System.out.println(measure("match", () -> result(matcher, word)));
+        }
+    }
+
+    // approximate matches also show the distance of the word
+    private static String result(Matcher matcher, String word) {
+        if (matcher instanceof ApproximateMatcher approximate) {
+            int distance = approximate.distance(word);
+            boolean accepted = distance != ApproximateMatcher.NO_MATCH;
+            return String.format("Word: %s, Accepted: %s, Distance: %s", convertWord(word), accepted,
+                    accepted ? String.valueOf(distance) : "> " + approximate.getMaxCost());
+        }
+
+        return String.format("Word: %s, Accepted: %s", convertWord(word), matcher.match(word));
+    }
+
+    private static void interactivePrompt(Matcher matcher) {
         final Scanner scanner = new Scanner(System.in);
 
         while(true) {
@@ -120,33 +360,266 @@ If both are provided the program will load from file. The regex will then be not
                 scanner.close();
                 return;
             } else {
-                System.out.printf("Word: %s, Accepted: %s\n", convertWord(userInput), automaton.match(userInput));
+                System.out.println(result(matcher, userInput));
+            }
+        }
+    }
+
+    private static void replayTrace(AutomatonBase automaton) {
+        TraceReplay replay;
+        try {
+            replay = TraceReplay.load(replayPath);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.printf("Couldn't load trace %s: %s\n", replayPath, e.getMessage());
+            return;
+        }
+
+        final Scanner scanner = new Scanner(System.in);
+        for (TraceStep step: replay.getSteps()) {
+            List<State> activeStates = step.resolveStates(automaton.getStates());
+            String stateNames = activeStates.stream().map(State::getName).collect(Collectors.joining(", "));
+
+            if (step.isInitial()) System.out.printf("Match %d, initial states: { %s }\n", step.getMatchId(), stateNames);
+            else System.out.printf("Match %d, position %d, symbol %c: { %s%s }\n", step.getMatchId(), step.getPosition(),
+                    step.getSymbol(), stateNames, step.isTruncated() ? ", ..." : "");
+
+            if (dotFile) DotEncoder.automatonToDotfile(automaton, dotPath, activeStates, maxDrawnStates);
+
+            System.out.print("(enter: next step, q: quit)> ");
+            if (!scanner.hasNextLine() || "q".equals(scanner.nextLine())) break;
+        }
+        scanner.close();
+    }
+
+    private static void printStatistics(DFA dfa) {
+        LanguageStatistics statistics = new LanguageStatistics(dfa);
+
+        List<BigInteger> counts = measure("statistics", () -> statistics.countAcceptedUpTo(statisticsLength));
+        for (int length = 0; length < counts.size(); length++) {
+            System.out.printf("Length %d: %s accepted words\n", length, counts.get(length));
+        }
+
+        String witness = measure("witness", statistics::shortestWitness);
+        if (witness == null) System.out.println("The automaton accepts no word.");
+        else System.out.printf("Shortest accepted word: %s\n", convertWord(witness));
+    }
+
+    // writes the table to compilePath, with -layout the states are reordered by the profile of the sample first
+    private static void writeCompiled(TransitionTable table) {
+        TransitionTable compiled = table;
+        if (layoutSamplePath != null) {
+            List<String> sample;
+            try {
+                sample = Files.readAllLines(layoutSamplePath);
+            } catch (IOException e) {
+                System.err.printf("Couldn't read layout sample %s: %s\n", layoutSamplePath, e.getMessage());
+                return;
             }
+
+            compiled = measure("layout", () -> StateLayout.reorder(table, StateLayout.profile(table, sample)));
+        }
+
+        final TransitionTable written = compiled;
+        try {
+            run("write compiled", () -> {
+                try {
+                    OffHeapTransitionTable.write(written, compilePath);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            System.err.printf("Couldn't write compiled automaton %s: %s\n", compilePath, e.getCause().getMessage());
+        }
+    }
+
+    private static void writeTrace(AutomatonBase automaton) {
+        if (automaton.getTracer() == null) return;
+
+        try {
+            automaton.getTracer().export(tracePath);
+        } catch (IOException e) {
+            System.err.printf("Couldn't write trace %s: %s\n", tracePath, e.getMessage());
+        }
+    }
+
+    private static void compileAll() {
+        BatchCompiler compiler = new BatchCompiler(compileSourceDirectory, compileOutputDirectory, dotFile, Runtime.getRuntime().availableProcessors());
+
+        final long start = System.nanoTime();
+        try {
+            List<BatchCompiler.Result> results = measure("compile all", () -> {
+                try {
+                    return compiler.compileAll();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            BatchCompiler.report(results, System.nanoTime() - start, System.out);
+        } catch (UncheckedIOException e) {
+            System.err.printf("Couldn't compile %s: %s\n", compileSourceDirectory, e.getCause().getMessage());
+        }
+    }
+
+    private static void lex() {
+        Lexer lexer = measure("compile lexer", () -> Lexer.load(lexerPath));
+        if (lexer == null) return;
+
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = Files.newBufferedReader(lexInputPath)) {
+            run("lex", () -> {
+                try {
+                    lexer.tokenize(reader, token -> output.append(lexer.nameOf(token.type())).append(' ')
+                            .append(token.offset()).append(' ').append(token.length()).append('\n'));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            System.err.printf("Couldn't read input %s: %s\n", lexInputPath, e.getMessage());
+            return;
+        } catch (UncheckedIOException e) {
+            System.err.printf("Couldn't read input %s: %s\n", lexInputPath, e.getCause().getMessage());
+            return;
         }
+        System.out.print(output);
     }
 
+    private static void serve() {
+        AutomatonRegistry registry = new AutomatonRegistry();
+
+        if (automatonSrc != null && !registry.load(automatonSrc)) return;
+        if (automatonSrc == null && regex != null) registry.register("regex", RegularExpressionLoader.loadFromRegex(regex));
+
+        try {
+            if (serveDirectory != null) registry.loadDirectory(serveDirectory);
+        } catch (IOException e) {
+            System.err.printf("Couldn't read directory %s: %s\n", serveDirectory, e.getMessage());
+            return;
+        }
+
+        if (registry.size() == 0) {
+            System.err.println("No automaton to serve! Exiting...");
+            return;
+        }
+
+        // the reloader is closed with the server, also if serving fails
+        try (MatchServer server = new MatchServer(registry, socketPath, Runtime.getRuntime().availableProcessors());
+             AutomatonReloader reloader = watchSources ? new AutomatonReloader(registry, (serveDirectory != null) ? Set.of(serveDirectory) : Set.of()) : null) {
+            if (reloader != null) reloader.start();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            System.out.printf("Serving %s on %s\n", String.join(", ", registry.getNames()), socketPath);
+            server.serve();
+        } catch (IOException e) {
+            System.err.printf("Server error: %s\n", e.getMessage());
+        }
+    }
 
     public static void main(String[] args) {
         handleARGS(args);
 
+        if (profileFormat != null) profiler = new PhaseProfiler();
+        try {
+            run();
+        } finally {
+            if (profiler != null) profiler.report(profileFormat, System.err);
+        }
+    }
+
+    private static void run() {
+        if (socketPath != null) {
+            serve();
+            return;
+        }
+
+        if (compileSourceDirectory != null) {
+            compileAll();
+            return;
+        }
+
+        if (lexerPath != null) {
+            lex();
+            return;
+        }
+
         if (automatonSrc == null && regex == null) {
             System.err.println("No automaton source provided! Exiting...");
             return;
         }
 
+        if (automatonSrc != null && automatonSrc.toString().endsWith(OffHeapTransitionTable.FILE_EXTENSION)) {
+            try {
+                OffHeapTransitionTable table = measure("load", () -> {
+                    try {
+                        return OffHeapTransitionTable.map(automatonSrc);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                // a mapped table can't be written into its own file, the file is truncated while it is read
+                if (compilePath != null && automatonSrc.toAbsolutePath().normalize().equals(compilePath.toAbsolutePath().normalize()))
+                    System.err.printf("Couldn't write compiled automaton %s: it is the source\n", compilePath);
+                else if (compilePath != null) writeCompiled(table);
+                else matchWords(table);
+            } catch (UncheckedIOException e) {
+                System.err.printf("Couldn't load compiled automaton %s: %s\n", automatonSrc, e.getCause().getMessage());
+            } catch (IllegalArgumentException e) {
+                System.err.printf("Couldn't load compiled automaton %s: %s\n", automatonSrc, e.getMessage());
+            }
+            return;
+        }
+
+        // plain matching of a regex doesn't need an automaton, the planner only builds one if it pays off
+        boolean needsAutomaton = compilePath != null || replayPath != null || tracePath != null || statisticsLength != null || fuzzyCost != null || dotFile || pngFile;
+        EnginePlanner planner = new EnginePlanner(expectedInputLength(), engineOverride);
+        if (automatonSrc == null && !needsAutomaton) {
+            matchWords(plannedMatcher(() -> planner.plan(regex)));
+            return;
+        }
+
+        // the same steps as RegularExpressionLoader.loadFromRegex, so that they are measured separately
         AutomatonBase automaton;
-        if (automatonSrc != null) automaton = Loader.loadFromFile(automatonSrc);
-        else automaton = RegularExpressionLoader.loadFromRegex(regex);
+        if (automatonSrc != null) automaton = measure("load", () -> Loader.loadFromFile(automatonSrc));
+        else {
+            ENFA eNFA = measure("parse regex", () -> ENFA.fromRegex(regex));
+            automaton = measure("to dfa", eNFA::toDFA);
+        }
 
         if (automaton == null) return;
 
+        if (replayPath != null) {
+            replayTrace(automaton);
+            return;
+        }
+
+        if (tracePath != null) {
+            if (!ExecutionTrace.ENABLED) {
+                System.err.println("Tracing is disabled! Start the jvm with -Dautomaton.trace=true to record a trace.");
+                return;
+            }
+
+            int maxActiveStates = Math.min(TRACE_MAX_ACTIVE_STATES, Math.max(1, automaton.getStates().size()));
+            automaton.setTracer(new ExecutionTrace(TRACE_CAPACITY, maxActiveStates));
+        }
+
+        if (compilePath != null) {
+            writeCompiled(measure("to dfa", automaton::toDFA));
+            return;
+        }
+
+        if (statisticsLength != null) {
+            printStatistics(measure("to dfa", automaton::toDFA));
+            return;
+        }
+
         if (dotFile) {
-            DotEncoder.automatonToDotfile(automaton, dotPath);
+            run("dot", () -> DotEncoder.automatonToDotfile(automaton, dotPath, maxDrawnStates));
             return;
         }
 
         if (pngFile) {
-            DotEncoder.automatonToPng(automaton, pngPath);
+            run("png", () -> DotEncoder.automatonToPng(automaton, pngPath, maxDrawnStates));
             return;
         }
 
@@ -155,16 +628,11 @@ If both are provided the program will load from file. The regex will then be not
             return;
         }
 
-        if (interactive) {
-            interactivePrompt(automaton);
-        } else {
+        // a trace records the simulation of the automaton itself
+        if (fuzzyCost != null) matchWords(new ApproximateMatcher(automaton, fuzzyCost, editCosts[0], editCosts[1], editCosts[2]));
+        else if (tracePath != null) matchWords(automaton);
+        else matchWords(plannedMatcher(() -> planner.plan(automaton)));
 
-            if (word == null) {
-                System.err.println("No word provided and not in interactive mode! Exiting...");
-                return;
-            }
-
-            System.out.printf("Word: %s, Accepted: %s\n", convertWord(word), automaton.match(word));
-        }
+        if (tracePath != null) writeTrace(automaton);
     }
 }
@@ -0,0 +1,311 @@
+package me.kokokotlin.main.compiler;
+
+import me.kokokotlin.main.engine.AutomatonBase;
+import me.kokokotlin.main.engine.DFA;
+import me.kokokotlin.main.engine.ENFA;
+import me.kokokotlin.main.engine.Loader;
+import me.kokokotlin.main.engine.OffHeapTransitionTable;
+import me.kokokotlin.main.engine.graphviz.DotEncoder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// compiles every automaton (.aut) and regular expression (.regex, the expression on the first line) of a directory tree
+// into a compiled transition table (.autc) and optionally a dot file, the output mirrors the tree of the sources
+// the outputs keep the extension of their source (x.aut -> x.aut.autc), so x.aut and x.regex don't share an output
+// every source goes through load, convert (to dfa), minimize and write, the sources are split by fork/join tasks
+// a source whose content hash (sha-256 of the content and the options) is the same as at the last run and whose
+// outputs exist is skipped, the hashes are kept in the index file of the output directory
+// the outputs of sources that are in the index but not in the tree anymore (deleted or renamed) are removed
+// an error only fails its own source, the outputs of an earlier run of the source are removed, the result of every
+// source and the summary are reported at the end
+public class BatchCompiler {
+    public static final String REGEX_EXTENSION = ".regex";
+    public static final String DOT_EXTENSION = ".dot";
+    public static final String INDEX_FILE = "compile.index";
+    // hash of a failed source in the index, it never matches, but the outputs of the source are removed with it
+    private static final String FAILED_HASH = "failed";
+
+    public enum Status {
+        COMPILED,
+        UNCHANGED,
+        FAILED,
+        // the source was deleted, its outputs were removed
+        REMOVED
+    }
+
+    // times in nanoseconds, states is the number of states of the minimal dfa (-1 if it wasn't compiled)
+    public record Result(Path source, Status status, String error, long loadNanos, long convertNanos, long minimizeNanos,
+                         long writeNanos, int states) {
+        public long totalNanos() {
+            return loadNanos + convertNanos + minimizeNanos + writeNanos;
+        }
+    }
+
+    private final Path sourceDirectory;
+    private final Path outputDirectory;
+    private final boolean writeDot;
+    private final int parallelism;
+
+    private final Map<String, String> previousHashes = new HashMap<>();
+
+    public BatchCompiler(Path sourceDirectory, Path outputDirectory, boolean writeDot, int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("The compiler needs at least one thread!");
+
+        this.sourceDirectory = sourceDirectory;
+        this.outputDirectory = outputDirectory;
+        this.writeDot = writeDot;
+        this.parallelism = parallelism;
+    }
+
+    public static boolean isSource(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".aut") || name.endsWith(REGEX_EXTENSION);
+    }
+
+    // compiles all sources, the results are in the order of the source paths
+    public List<Result> compileAll() throws IOException {
+        List<Path> sources;
+        try (Stream<Path> files = Files.walk(sourceDirectory)) {
+            sources = files.filter(Files::isRegularFile).filter(BatchCompiler::isSource).sorted().collect(Collectors.toList());
+        }
+
+        Files.createDirectories(outputDirectory);
+        readIndex();
+
+        Result[] results = new Result[sources.size()];
+        String[] hashes = new String[sources.size()];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new CompileTask(this, sources, results, hashes, 0, sources.size()));
+        } finally {
+            pool.shutdown();
+        }
+
+        List<Result> all = new ArrayList<>(Arrays.asList(results));
+        all.addAll(removeStaleOutputs(sources));
+        writeIndex(sources, results, hashes);
+        return all;
+    }
+
+    // splits the range of sources until one source is left
+    // the task is never serialized
+    @SuppressWarnings("serial")
+    private static final class CompileTask extends RecursiveAction {
+        private final BatchCompiler compiler;
+        private final List<Path> sources;
+        private final Result[] results;
+        private final String[] hashes;
+        private final int from;
+        private final int to;
+
+        CompileTask(BatchCompiler compiler, List<Path> sources, Result[] results, String[] hashes, int from, int to) {
+            this.compiler = compiler;
+            this.sources = sources;
+            this.results = results;
+            this.hashes = hashes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                results[from] = compiler.compile(sources.get(from), hashes, from);
+                return;
+            }
+            if (to == from) return;
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new CompileTask(compiler, sources, results, hashes, from, middle),
+                    new CompileTask(compiler, sources, results, hashes, middle, to));
+        }
+    }
+
+    // the outputs of the sources of the last run that are not in the tree anymore
+    private List<Result> removeStaleOutputs(List<Path> sources) throws IOException {
+        Set<String> current = new HashSet<>();
+        for (Path source: sources) current.add(relativeName(source));
+
+        List<Result> removed = new ArrayList<>();
+        for (String relative: previousHashes.keySet().stream().sorted().toList()) {
+            if (current.contains(relative)) continue;
+
+            Path source = sourceDirectory.resolve(relative);
+            deleteOutputs(source);
+            removed.add(new Result(source, Status.REMOVED, null, 0, 0, 0, 0, -1));
+        }
+
+        return removed;
+    }
+
+    private void deleteOutputs(Path source) throws IOException {
+        Files.deleteIfExists(outputPath(source, OffHeapTransitionTable.FILE_EXTENSION));
+        Files.deleteIfExists(outputPath(source, DOT_EXTENSION));
+    }
+
+    private String relativeName(Path source) {
+        return sourceDirectory.relativize(source).toString();
+    }
+
+    // the output path of the source with the extension appended
+    private Path outputPath(Path source, String extension) {
+        return outputDirectory.resolve(relativeName(source) + extension);
+    }
+
+    private Result compile(Path source, String[] hashes, int index) {
+        final Path compiledPath = outputPath(source, OffHeapTransitionTable.FILE_EXTENSION);
+        final Path dotPath = outputPath(source, DOT_EXTENSION);
+        long start = System.nanoTime();
+
+        try {
+            byte[] content = Files.readAllBytes(source);
+            String hash = hash(content);
+            hashes[index] = hash;
+
+            if (hash.equals(previousHashes.get(relativeName(source))) && Files.exists(compiledPath) && (!writeDot || Files.exists(dotPath))) {
+                return new Result(source, Status.UNCHANGED, null, System.nanoTime() - start, 0, 0, 0, -1);
+            }
+
+            AutomatonBase automaton;
+            if (source.getFileName().toString().endsWith(REGEX_EXTENSION)) {
+                String regex = new String(content, StandardCharsets.UTF_8).lines().findFirst().orElse("");
+                automaton = ENFA.fromRegex(regex);
+            } else {
+                // the error of the loader is thrown instead of printed, so it is reported with its source
+                automaton = Loader.loadOrThrow(source);
+            }
+            final long loaded = System.nanoTime();
+
+            DFA dfa = automaton.toDFA();
+            final long converted = System.nanoTime();
+
+            DFA minimal = dfa.minimize();
+            final long minimized = System.nanoTime();
+
+            Files.createDirectories(compiledPath.getParent());
+            writeAtomically(compiledPath, path -> OffHeapTransitionTable.write(minimal, path));
+            if (writeDot) writeAtomically(dotPath, path -> DotEncoder.writeOut(minimal, path, List.of(), Integer.MAX_VALUE, true));
+            final long written = System.nanoTime();
+
+            return new Result(source, Status.COMPILED, null, loaded - start, converted - loaded, minimized - converted,
+                    written - minimized, minimal.getStateCount());
+        } catch (IOException e) {
+            return failed(source, e.toString(), hashes, index);
+        } catch (UncheckedIOException e) {
+            return failed(source, e.getCause().toString(), hashes, index);
+        } catch (RuntimeException e) {
+            return failed(source, (e.getMessage() != null) ? e.getMessage() : e.toString(), hashes, index);
+        }
+    }
+
+    // failed sources get a hash that never matches, so they are compiled again by the next run
+    // the outputs of an earlier run are removed, a consumer of the output tree must not keep loading the automaton of a
+    // source that doesn't compile anymore
+    private Result failed(Path source, String error, String[] hashes, int index) {
+        hashes[index] = FAILED_HASH;
+        try {
+            deleteOutputs(source);
+        } catch (IOException e) {
+            error = String.format("%s, the outputs of the last run couldn't be removed: %s", error, e);
+        }
+
+        return new Result(source, Status.FAILED, error, 0, 0, 0, 0, -1);
+    }
+
+    private interface Output {
+        void write(Path path) throws IOException;
+    }
+
+    // a reader of the output (e.g. a server that watches the directory) never sees a partially written file
+    private static void writeAtomically(Path path, Output output) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            output.write(temporary);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    // the options and the version of the compiled format are part of the hash, a change of them compiles everything again
+    private String hash(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.format("autc %d dot %b\n", OffHeapTransitionTable.VERSION, writeDot).getBytes(StandardCharsets.UTF_8));
+            digest.update(content);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 isn't supported by the jvm!", e);
+        }
+    }
+
+    // lines "<hash> <relative source path>"
+    private void readIndex() throws IOException {
+        Path index = outputDirectory.resolve(INDEX_FILE);
+        if (!Files.exists(index)) return;
+
+        for (String line: Files.readAllLines(index)) {
+            String[] entry = line.split(" ", 2);
+            if (entry.length == 2) previousHashes.put(entry[1], entry[0]);
+        }
+    }
+
+    private void writeIndex(List<Path> sources, Result[] results, String[] hashes) throws IOException {
+        StringBuilder index = new StringBuilder();
+        for (int i = 0; i < sources.size(); i++) {
+            index.append(hashes[i]).append(' ').append(relativeName(sources.get(i))).append('\n');
+        }
+
+        writeAtomically(outputDirectory.resolve(INDEX_FILE), path -> Files.writeString(path, index));
+    }
+
+    private static String formatNanos(long nanos) {
+        return String.format("%.3f s", nanos / 1e9);
+    }
+
+    // one line per failed source, the counts, the time of every phase summed over all sources and the slowest sources
+    public static void report(List<Result> results, long wallNanos, PrintStream out) {
+        long compiled = results.stream().filter(r -> r.status() == Status.COMPILED).count();
+        long unchanged = results.stream().filter(r -> r.status() == Status.UNCHANGED).count();
+        long failed = results.stream().filter(r -> r.status() == Status.FAILED).count();
+        long removed = results.stream().filter(r -> r.status() == Status.REMOVED).count();
+
+        for (Result result: results) {
+            if (result.status() == Status.FAILED) out.printf("Failed %s: %s\n", result.source(), result.error());
+        }
+
+        out.printf("%d sources: %d compiled, %d unchanged, %d failed in %s\n", results.size() - removed, compiled, unchanged, failed, formatNanos(wallNanos));
+        if (removed > 0) out.printf("Removed the outputs of %d deleted sources\n", removed);
+        out.printf("load %s, convert %s, minimize %s, write %s (summed over all threads)\n",
+                formatNanos(results.stream().mapToLong(Result::loadNanos).sum()),
+                formatNanos(results.stream().mapToLong(Result::convertNanos).sum()),
+                formatNanos(results.stream().mapToLong(Result::minimizeNanos).sum()),
+                formatNanos(results.stream().mapToLong(Result::writeNanos).sum()));
+
+        results.stream().filter(r -> r.status() == Status.COMPILED)
+                .sorted(Comparator.comparingLong(Result::totalNanos).reversed()).limit(5)
+                .forEach(r -> out.printf("  %s: %s, %d states\n", r.source(), formatNanos(r.totalNanos()), r.states()));
+    }
+}
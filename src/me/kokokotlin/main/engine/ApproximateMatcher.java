@@ -0,0 +1,143 @@
+package me.kokokotlin.main.engine;
+
+import java.util.BitSet;
+
+// approximate matching: the edit distance between a word and the language of an automaton, up to a maximal cost
+// the simulation keeps one set of active states per cost, active[c] contains every state that the automaton can be in
+// after reading the word so far with at most the cost c. reading a character a with the sets of the previous character:
+//   active'[c] = step(active[c], a)                       the character matches
+//              | step(active[c - substitution], any)      the character is replaced by another symbol
+//              | active[c - insertion]                    the character is an additional one, the automaton stays
+// followed by the deletions (a symbol that is missing in the word), from the lowest cost upwards:
+//   active'[c] |= step(active'[c - deletion], any)
+// and the epsilon closure. every set is a bitset, so a step is a few word operations per state
+// the distance of the word is the lowest cost whose set contains a final state, one pass over the word costs
+// O(length * maxCost * transitions)
+public class ApproximateMatcher implements Matcher {
+    public static final int NO_MATCH = -1;
+
+    private final CompactAutomaton compact;
+    private final int maxCost;
+    private final int insertionCost;
+    private final int deletionCost;
+    private final int substitutionCost;
+    // successors of every state over any symbol
+    private final BitSet[] anySymbolSuccessors;
+
+    public ApproximateMatcher(AutomatonBase automaton, int maxCost) {
+        this(automaton, maxCost, 1, 1, 1);
+    }
+
+    public ApproximateMatcher(AutomatonBase automaton, int maxCost, int insertionCost, int deletionCost, int substitutionCost) {
+        if (maxCost < 0) throw new IllegalArgumentException("The maximal cost can't be negative!");
+        if (insertionCost < 1 || deletionCost < 1 || substitutionCost < 1)
+            throw new IllegalArgumentException("The costs of the edit operations have to be positive!");
+
+        this.compact = automaton.toCompact();
+        this.maxCost = maxCost;
+        this.insertionCost = insertionCost;
+        this.deletionCost = deletionCost;
+        this.substitutionCost = substitutionCost;
+
+        anySymbolSuccessors = new BitSet[compact.getStateCount()];
+        for (int q = 0; q < compact.getStateCount(); q++) {
+            anySymbolSuccessors[q] = new BitSet(compact.getStateCount());
+            for (int i = compact.transitionStart(q); i < compact.transitionEnd(q); i++) anySymbolSuccessors[q].set(compact.targetAt(i));
+        }
+    }
+
+    public int getMaxCost() {
+        return maxCost;
+    }
+
+    private void stepAny(BitSet states, BitSet result) {
+        for (int q = states.nextSetBit(0); q >= 0; q = states.nextSetBit(q + 1)) result.or(anySymbolSuccessors[q]);
+    }
+
+    // deletions and epsilon transitions, the sets of lower costs are already closed
+    private void close(BitSet[] active, int[] closureStack) {
+        for (int c = 0; c <= maxCost; c++) {
+            if (c > 0) active[c].or(active[c - 1]);
+            // chains of deletions are complete, active[c - deletion] already contains its own deletions
+            if (c >= deletionCost) stepAny(active[c - deletionCost], active[c]);
+            compact.epsilonClosure(active[c], closureStack);
+        }
+    }
+
+    private BitSet[] initialSets(int[] closureStack) {
+        BitSet[] active = new BitSet[maxCost + 1];
+        for (int c = 0; c <= maxCost; c++) {
+            active[c] = new BitSet(compact.getStateCount());
+            for (int q: compact.getInitialStates()) active[c].set(q);
+        }
+        close(active, closureStack);
+
+        return active;
+    }
+
+    private void step(BitSet[] active, BitSet[] next, char character, int[] closureStack) {
+        final int symbol = compact.getSymbolTable().idOf(character);
+
+        for (int c = 0; c <= maxCost; c++) {
+            next[c].clear();
+            if (symbol != SymbolTable.UNKNOWN) compact.step(active[c], symbol, next[c]);
+            if (c >= substitutionCost) stepAny(active[c - substitutionCost], next[c]);
+            if (c >= insertionCost) next[c].or(active[c - insertionCost]);
+        }
+        close(next, closureStack);
+    }
+
+    private int lowestAcceptingCost(BitSet[] active) {
+        for (int c = 0; c <= maxCost; c++) {
+            if (compact.containsFinal(active[c])) return c;
+        }
+
+        return NO_MATCH;
+    }
+
+    // the minimal cost of the edits that turn the word into an accepted one, NO_MATCH if it is higher than the maximal cost
+    public int distance(String word) {
+        final int[] closureStack = new int[compact.getStateCount()];
+        BitSet[] active = initialSets(closureStack);
+        BitSet[] next = new BitSet[maxCost + 1];
+        for (int c = 0; c <= maxCost; c++) next[c] = new BitSet(compact.getStateCount());
+
+        for (int i = 0; i < word.length(); i++) {
+            // the set of the maximal cost contains all others, if it can't reach a final state no cost can
+            if (compact.isDead(active[maxCost])) return NO_MATCH;
+
+            step(active, next, word.charAt(i), closureStack);
+            BitSet[] tmp = active;
+            active = next;
+            next = tmp;
+        }
+
+        return lowestAcceptingCost(active);
+    }
+
+    @Override
+    public boolean match(String word) {
+        return distance(word) != NO_MATCH;
+    }
+
+    // the longest prefix of text[from..] whose distance is at most the maximal cost
+    @Override
+    public int longestMatch(CharSequence text, int from) {
+        final int[] closureStack = new int[compact.getStateCount()];
+        BitSet[] active = initialSets(closureStack);
+        BitSet[] next = new BitSet[maxCost + 1];
+        for (int c = 0; c <= maxCost; c++) next[c] = new BitSet(compact.getStateCount());
+
+        int longest = compact.containsFinal(active[maxCost]) ? 0 : -1;
+        for (int i = from; i < text.length() && !compact.isDead(active[maxCost]); i++) {
+            step(active, next, text.charAt(i), closureStack);
+            BitSet[] tmp = active;
+            active = next;
+            next = tmp;
+
+            if (compact.containsFinal(active[maxCost])) longest = i - from + 1;
+        }
+
+        return longest;
+    }
+}
@@ -1,41 +1,104 @@
 package me.kokokotlin.main.engine;
 
+import me.kokokotlin.main.engine.trace.ExecutionTrace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static me.kokokotlin.main.engine.graphviz.DotUtils.*;
 
-public abstract class AutomatonBase {
+public abstract class AutomatonBase implements Matcher {
     
     protected final List<State> states;
     protected final List<State> initialStates;
     protected final List<State> finalStates;
 
     protected final List<String> alphabet;
+    protected final SymbolTable symbolTable;
+
+    // built on first use, the engines and conversions work on this representation
+    protected CompactAutomaton compact;
+
+    // only used if tracing is enabled, see ExecutionTrace.ENABLED
+    protected ExecutionTrace tracer;
 
     public AutomatonBase(List<State> states, List<State> initialStates, List<State> finalStates, List<String> alphabet) {
+        this(states, initialStates, finalStates, SymbolTable.of(alphabet));
+    }
+
+    public AutomatonBase(List<State> states, List<State> initialStates, List<State> finalStates, SymbolTable symbolTable) {
         this.states = states;
         this.initialStates = initialStates;
         this.finalStates = finalStates;
-        this.alphabet = alphabet;
+        this.alphabet = symbolTable.getAlphabet();
+        this.symbolTable = symbolTable;
+        // the subclasses record the automaton in the metrics at the end of their constructors, here it isn't built yet
     }
 
+    @Override
     public abstract boolean match(String word);
-    
+
+    @Override
+    public abstract int longestMatch(CharSequence text, int from);
+
     public String toDotRepr() {
+        return toDotRepr(List.of());
+    }
+
+    // highlighted states are filled, e.g. the active states of a step of a trace
+    public String toDotRepr(Collection<State> highlighted) {
         StringBuilder repr = new StringBuilder();
-        
-        repr.append("digraph {\n\trankdir=LR\n");        
-        writeInitialAndFinalStates(repr, getInitialStates(), getFinalStates());
-        writeTransitions(repr, this.getStates());
-        repr.append("}\n");
+
+        try {
+            writeDot(repr, highlighted, Integer.MAX_VALUE, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
         return repr.toString();
     }
+
+    // streams the graph into the sink state by state, so the representation never has to be held in memory
+    // if the automaton has more than maxStates states, only the states closest to the initial states are written
+    // and the transitions to the remaining ones are collapsed into one node (or left out if collapse is false)
+    public void writeDot(Appendable sink, Collection<State> highlighted, int maxStates, boolean collapse) throws IOException {
+        Set<State> selected = (states.size() > maxStates) ? selectStates(getInitialStates(), getStates(), maxStates) : null;
+
+        List<State> initials = getInitialStates();
+        List<State> finals = getFinalStates();
+        if (selected != null) {
+            initials = initials.stream().filter(selected::contains).collect(Collectors.toList());
+            finals = finals.stream().filter(selected::contains).collect(Collectors.toList());
+        }
+
+        sink.append("digraph {\n\trankdir=LR\n");
+        writeInitialAndFinalStates(sink, initials, finals);
+        writeTransitions(sink, this.getStates(), selected, collapse);
+        if (selected != null && collapse) writeCollapsedState(sink, states.size() - selected.size());
+        writeHighlightedStates(sink, (selected == null) ? highlighted : highlighted.stream().filter(selected::contains).toList());
+        sink.append("}\n");
+    }
     
+    // the state graph must not be changed after the automaton is constructed
+    public CompactAutomaton toCompact() {
+        if (compact == null) compact = CompactAutomaton.of(this);
+        return compact;
+    }
+
     public abstract DFA toDFA();
     public abstract NFA toNFA();
     public abstract ENFA toENFA();
 
+    // automaton with the same language without unreachable states and states that can't reach a final state
+    public abstract AutomatonBase trim();
+
+    // automaton with the same language and bisimilar states merged (the minimal automaton for a DFA)
+    public abstract AutomatonBase reduce();
+
     public List<State> getStates() {
         return states;
     }
@@ -51,4 +114,25 @@ public abstract class AutomatonBase {
     public List<String> getAlphabet() {
         return alphabet;
     }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    public ExecutionTrace getTracer() {
+        return tracer;
+    }
+
+    public void setTracer(ExecutionTrace tracer) {
+        this.tracer = tracer;
+    }
+
+    public int getTransitionCount() {
+        int count = 0;
+        for (State s: states) {
+            for (List<State> destStates: s.getTransition().values()) count += destStates.size();
+        }
+
+        return count;
+    }
 }
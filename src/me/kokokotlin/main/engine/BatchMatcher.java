@@ -0,0 +1,188 @@
+package me.kokokotlin.main.engine;
+
+import java.util.BitSet;
+import java.util.List;
+
+// matches many words at once, words that share a prefix only read the prefix once
+// the words are visited in sorted order, so the prefix that a word shares with any word before it is the longest common
+// prefix with its predecessor. the states after every position of the previous word are kept on a stack
+// (one state of a transition table or one set of active states of an nfa per position), the next word continues
+// from the entry at the end of the common prefix
+public final class BatchMatcher {
+    private BatchMatcher() {}
+
+    // the nfas share the prefixes. a step of a transition table is about as expensive as a character comparison of the
+    // sort (or of the check that the words are sorted), so the tables and every other matcher match the words one by one
+    // matchAll(TransitionTable, List) shares the prefixes for tables with an expensive next()
+    public static boolean[] matchAll(Matcher matcher, List<String> words) {
+        if (!(matcher instanceof TransitionTable) && matcher instanceof AutomatonBase automaton) {
+            return matchAll(automaton.toCompact(), words);
+        }
+
+        boolean[] accepted = new boolean[words.size()];
+        for (int i = 0; i < words.size(); i++) accepted[i] = matcher.match(words.get(i));
+        return accepted;
+    }
+
+    private static final int INSERTION_SORT_SIZE = 16;
+
+    // indices of the words in sorted order
+    // the words are sorted by a three way radix quicksort: the range is partitioned by the character at position d,
+    // the part with the pivot character continues with position d + 1, so the characters of a common prefix are
+    // compared only once and not again by every comparison like in a comparison sort
+    private static int[] sortedOrder(List<String> words) {
+        int[] order = new int[words.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        if (!isSorted(words)) sort(words, order, 0, order.length, 0);
+
+        return order;
+    }
+
+    // batch inputs are often already sorted (e.g. file listings), a linear check is cheaper than the sort
+    private static boolean isSorted(List<String> words) {
+        for (int i = 1; i < words.size(); i++) {
+            if (words.get(i - 1).compareTo(words.get(i)) > 0) return false;
+        }
+
+        return true;
+    }
+
+    // -1 after the end of the word, so shorter words come first
+    private static int charAt(String word, int d) {
+        return (d < word.length()) ? word.charAt(d) : -1;
+    }
+
+    private static void swap(int[] order, int i, int j) {
+        int tmp = order[i];
+        order[i] = order[j];
+        order[j] = tmp;
+    }
+
+    // sorts order[lo, hi), all words in the range share the first d characters
+    private static void sort(List<String> words, int[] order, int lo, int hi, int d) {
+        while (hi - lo > INSERTION_SORT_SIZE) {
+            int a = charAt(words.get(order[lo]), d);
+            int b = charAt(words.get(order[(lo + hi) >>> 1]), d);
+            int c = charAt(words.get(order[hi - 1]), d);
+            int pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+
+            int lt = lo, gt = hi - 1, i = lo;
+            while (i <= gt) {
+                int ch = charAt(words.get(order[i]), d);
+                if (ch < pivot) swap(order, lt++, i++);
+                else if (ch > pivot) swap(order, i, gt--);
+                else i++;
+            }
+
+            sort(words, order, lo, lt, d);
+            sort(words, order, gt + 1, hi, d);
+            if (pivot < 0) return;
+
+            lo = lt;
+            hi = gt + 1;
+            d++;
+        }
+
+        for (int i = lo + 1; i < hi; i++) {
+            for (int j = i; j > lo && compareFrom(words.get(order[j]), words.get(order[j - 1]), d) < 0; j--) swap(order, j, j - 1);
+        }
+    }
+
+    private static int compareFrom(String a, String b, int d) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = d; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) return a.charAt(i) - b.charAt(i);
+        }
+
+        return a.length() - b.length();
+    }
+
+    private static int maxLength(List<String> words) {
+        int max = 0;
+        for (String word: words) max = Math.max(max, word.length());
+
+        return max;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) return i;
+        }
+
+        return length;
+    }
+
+    public static boolean[] matchAll(TransitionTable table, List<String> words) {
+        final SymbolTable symbolTable = table.getSymbolTable();
+        // a dfa knows its dead and absorbing states, there the walk down a word can stop
+        final DFA dfa = (table instanceof DFA d) ? d : null;
+        boolean[] accepted = new boolean[words.size()];
+
+        // states[d] is the state after the first d characters of the previous word, valid up to depth
+        int[] states = new int[maxLength(words) + 1];
+        states[0] = table.getInitialStateIndex();
+        int depth = 0;
+        String previous = "";
+
+        for (int index: sortedOrder(words)) {
+            String word = words.get(index);
+            int d = Math.min(commonPrefix(previous, word), depth);
+            int state = states[d];
+
+            for (; d < word.length() && state != TransitionTable.NO_STATE; d++) {
+                if (dfa != null && (dfa.isDead(state) || dfa.isAbsorbing(state))) break;
+
+                int symbol = symbolTable.idOf(word.charAt(d));
+                state = (symbol == SymbolTable.UNKNOWN) ? TransitionTable.NO_STATE : table.next(state, symbol);
+                states[d + 1] = state;
+            }
+
+            if (state == TransitionTable.NO_STATE) accepted[index] = false;
+            else if (dfa != null && dfa.isAbsorbing(state)) accepted[index] = symbolTable.firstUnknown(word, d) == word.length();
+            else accepted[index] = d == word.length() && table.isAccepting(state);
+            depth = d;
+            previous = word;
+        }
+
+        return accepted;
+    }
+
+    // the sets of active states are closed under epsilon transitions, the walk down a word stops in a dead set and
+    // in an absorbing one (then only the rest of the word has to consist of symbols of the alphabet)
+    public static boolean[] matchAll(CompactAutomaton compact, List<String> words) {
+        final SymbolTable symbolTable = compact.getSymbolTable();
+        final int[] closureStack = new int[compact.getStateCount()];
+        boolean[] accepted = new boolean[words.size()];
+
+        BitSet[] states = new BitSet[maxLength(words) + 1];
+        states[0] = new BitSet(compact.getStateCount());
+        for (int q: compact.getInitialStates()) states[0].set(q);
+        compact.epsilonClosure(states[0], closureStack);
+        int depth = 0;
+        String previous = "";
+
+        for (int index: sortedOrder(words)) {
+            String word = words.get(index);
+            int d = Math.min(commonPrefix(previous, word), depth);
+
+            for (; d < word.length() && !compact.isDead(states[d]) && !compact.isAbsorbing(states[d]); d++) {
+                if (states[d + 1] == null) states[d + 1] = new BitSet(compact.getStateCount());
+                BitSet next = states[d + 1];
+                next.clear();
+
+                int symbol = symbolTable.idOf(word.charAt(d));
+                if (symbol != SymbolTable.UNKNOWN) compact.step(states[d], symbol, next);
+                compact.epsilonClosure(next, closureStack);
+            }
+
+            accepted[index] = compact.isAbsorbing(states[d])
+                    ? symbolTable.firstUnknown(word, d) == word.length()
+                    : d == word.length() && compact.containsFinal(states[d]);
+            depth = d;
+            previous = word;
+        }
+
+        return accepted;
+    }
+}
@@ -0,0 +1,295 @@
+package me.kokokotlin.main.engine;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Queue;
+
+// coarsest bisimulation of a labeled graph by the partition refinement of Paige and Tarjan, O(edges * log(states))
+// two states are bisimilar if they agree on the flag and have edges with the same labels into the same blocks
+// besides the partition into blocks there is a coarser partition into compound blocks (unions of blocks), the blocks
+// are stable with respect to every compound block: a state of a block has an edge with a label into a compound block
+// if and only if every other state of the block has one. a compound block that contains more than one block is split:
+// its smaller block B becomes a compound block of its own, and the blocks are split by which states have edges into B
+// and which have edges into the rest of the old compound block only. the second split needs the number of edges of
+// every state and label into every compound block, one counter per (state, label, compound block) is shared by these
+// edges. every state is in a smaller half at most log(states) times, so every edge is looked at log(states) times
+final class BisimulationPartition {
+    // growable list of ints, the order isn't kept on removal
+    private static final class IntList {
+        int[] items = new int[4];
+        int size = 0;
+
+        void add(int item) {
+            if (size == items.length) items = Arrays.copyOf(items, 2 * size);
+            items[size++] = item;
+        }
+
+        int removeAt(int index) {
+            int item = items[index];
+            items[index] = items[--size];
+            return item;
+        }
+    }
+
+    private final int[] sources;
+    private final int[] labels;
+    // the edges that end in state q are incoming[incomingOffsets[q], incomingOffsets[q + 1])
+    private final int[] incomingOffsets;
+    private final int[] incoming;
+
+    // the states of block b are elements[first[b], end[b]), the marked ones of a split are at [first[b], marked[b])
+    private final int[] elements;
+    private final int[] positions;
+    private final int[] blockOf;
+    private final int[] first;
+    private final int[] end;
+    private final int[] marked;
+    private int blockCount = 0;
+
+    private final int[] compoundOf;
+    private final IntList[] compoundBlocks;
+    private int compoundCount = 0;
+    private final Queue<Integer> splittable = new ArrayDeque<>();
+    private final BitSet queued = new BitSet();
+
+    // cellOf[edge] is the counter of the edges with the source and label of the edge into its compound block
+    private final int[] cellOf;
+    private int[] cells;
+    private int cellCount = 0;
+
+    // scratch space of a split, indexed by state
+    private final int[] edgeCounts;
+    private final int[] compoundCells;
+    private final int[] newCells;
+
+    // edges are (sources[e], labels[e], targets[e]) with labels of at least -1
+    // the states with the flag are never bisimilar to the ones without it
+    private BisimulationPartition(int stateCount, int[] sources, int[] labels, int[] targets, BitSet flagged) {
+        this.sources = sources;
+        this.labels = labels;
+
+        incomingOffsets = new int[stateCount + 1];
+        for (int target: targets) incomingOffsets[target + 1]++;
+        for (int q = 0; q < stateCount; q++) incomingOffsets[q + 1] += incomingOffsets[q];
+        incoming = new int[targets.length];
+        int[] fill = Arrays.copyOf(incomingOffsets, stateCount);
+        for (int e = 0; e < targets.length; e++) incoming[fill[targets[e]]++] = e;
+
+        elements = new int[stateCount];
+        positions = new int[stateCount];
+        blockOf = new int[stateCount];
+        first = new int[stateCount];
+        end = new int[stateCount];
+        marked = new int[stateCount];
+        compoundOf = new int[stateCount];
+        compoundBlocks = new IntList[stateCount];
+
+        cellOf = new int[sources.length];
+        cells = new int[Math.max(4, sources.length)];
+        edgeCounts = new int[stateCount];
+        compoundCells = new int[stateCount];
+        newCells = new int[stateCount];
+
+        // one block in one compound block, split by the flag and by the labels of the outgoing edges
+        for (int q = 0; q < stateCount; q++) {
+            elements[q] = q;
+            positions[q] = q;
+        }
+        newBlock(0, stateCount, newCompound());
+
+        IntList flaggedStates = new IntList();
+        for (int q = flagged.nextSetBit(0); q >= 0; q = flagged.nextSetBit(q + 1)) flaggedStates.add(q);
+        split(flaggedStates);
+
+        // the edges by source, the counter of a source and label is created at its first edge
+        int labelCount = 0;
+        for (int label: labels) labelCount = Math.max(labelCount, label + 2);
+        int[] outgoingOffsets = new int[stateCount + 1];
+        for (int source: sources) outgoingOffsets[source + 1]++;
+        for (int q = 0; q < stateCount; q++) outgoingOffsets[q + 1] += outgoingOffsets[q];
+        int[] outgoing = new int[sources.length];
+        fill = Arrays.copyOf(outgoingOffsets, stateCount);
+        for (int e = 0; e < sources.length; e++) outgoing[fill[sources[e]]++] = e;
+
+        IntList[] sourcesByLabel = new IntList[labelCount];
+        int[] labelCells = new int[labelCount];
+        int[] labelSources = new int[labelCount];
+        Arrays.fill(labelSources, -1);
+        for (int q = 0; q < stateCount; q++) {
+            for (int i = outgoingOffsets[q]; i < outgoingOffsets[q + 1]; i++) {
+                int e = outgoing[i];
+                int label = labels[e] + 1;
+                if (labelSources[label] != q) {
+                    labelSources[label] = q;
+                    labelCells[label] = newCell(0);
+                    if (sourcesByLabel[label] == null) sourcesByLabel[label] = new IntList();
+                    sourcesByLabel[label].add(q);
+                }
+                cells[labelCells[label]]++;
+                cellOf[e] = labelCells[label];
+            }
+        }
+        for (IntList labelSourceList: sourcesByLabel) {
+            if (labelSourceList != null) split(labelSourceList);
+        }
+    }
+
+    // the block of every state in the coarsest bisimulation, the blocks are numbered in the order of their first state
+    static int[] blocks(int stateCount, int[] sources, int[] labels, int[] targets, BitSet flagged) {
+        if (stateCount == 0) return new int[0];
+
+        BisimulationPartition partition = new BisimulationPartition(stateCount, sources, labels, targets, flagged);
+        partition.refine();
+
+        int[] numbers = new int[partition.blockCount];
+        Arrays.fill(numbers, -1);
+        int[] result = new int[stateCount];
+        int count = 0;
+        for (int q = 0; q < stateCount; q++) {
+            int block = partition.blockOf[q];
+            if (numbers[block] < 0) numbers[block] = count++;
+            result[q] = numbers[block];
+        }
+
+        return result;
+    }
+
+    private int newCompound() {
+        compoundBlocks[compoundCount] = new IntList();
+        return compoundCount++;
+    }
+
+    private int newBlock(int from, int to, int compound) {
+        int block = blockCount++;
+        first[block] = from;
+        marked[block] = from;
+        end[block] = to;
+        for (int i = from; i < to; i++) blockOf[elements[i]] = block;
+
+        compoundOf[block] = compound;
+        compoundBlocks[compound].add(block);
+        if (compoundBlocks[compound].size > 1 && !queued.get(compound)) {
+            queued.set(compound);
+            splittable.add(compound);
+        }
+
+        return block;
+    }
+
+    private int size(int block) {
+        return end[block] - first[block];
+    }
+
+    private int newCell(int count) {
+        if (cellCount == cells.length) cells = Arrays.copyOf(cells, 2 * cellCount);
+        cells[cellCount] = count;
+        return cellCount++;
+    }
+
+    // splits every block into its states that are in the list and the other ones
+    private void split(IntList states) {
+        IntList touched = new IntList();
+        for (int i = 0; i < states.size; i++) {
+            int q = states.items[i];
+            int block = blockOf[q];
+            int position = positions[q];
+            if (position < marked[block]) continue;
+
+            if (marked[block] == first[block]) touched.add(block);
+            int other = elements[marked[block]];
+            elements[position] = other;
+            positions[other] = position;
+            elements[marked[block]] = q;
+            positions[q] = marked[block];
+            marked[block]++;
+        }
+
+        for (int i = 0; i < touched.size; i++) {
+            int block = touched.items[i];
+            int from = first[block];
+            int to = marked[block];
+            if (to == end[block]) {
+                marked[block] = from;
+                continue;
+            }
+
+            first[block] = to;
+            newBlock(from, to, compoundOf[block]);
+        }
+    }
+
+    private void refine() {
+        while (!splittable.isEmpty()) {
+            int compound = splittable.poll();
+            queued.clear(compound);
+            IntList blocks = compoundBlocks[compound];
+            if (blocks.size < 2) continue;
+
+            int index = (size(blocks.items[0]) <= size(blocks.items[1])) ? 0 : 1;
+            int splitter = blocks.removeAt(index);
+            if (blocks.size > 1 && !queued.get(compound)) {
+                queued.set(compound);
+                splittable.add(compound);
+            }
+            int own = newCompound();
+            compoundOf[splitter] = own;
+            compoundBlocks[own].add(splitter);
+
+            // the edges into the splitter sorted by label, collected before the splitter itself can be split
+            int edgeCount = 0;
+            for (int i = first[splitter]; i < end[splitter]; i++) {
+                edgeCount += incomingOffsets[elements[i] + 1] - incomingOffsets[elements[i]];
+            }
+            long[] edges = new long[edgeCount];
+            edgeCount = 0;
+            for (int i = first[splitter]; i < end[splitter]; i++) {
+                int q = elements[i];
+                for (int j = incomingOffsets[q]; j < incomingOffsets[q + 1]; j++) {
+                    int e = incoming[j];
+                    edges[edgeCount++] = ((long) labels[e] << 32) | e;
+                }
+            }
+            Arrays.sort(edges);
+
+            for (int from = 0, to; from < edges.length; from = to) {
+                to = from;
+                while (to < edges.length && (edges[to] >> 32) == (edges[from] >> 32)) to++;
+                splitByLabel(edges, from, to);
+            }
+        }
+    }
+
+    // edges[from, to) are the edges with one label into the splitter
+    private void splitByLabel(long[] edges, int from, int to) {
+        IntList predecessors = new IntList();
+        for (int i = from; i < to; i++) {
+            int e = (int) edges[i];
+            int q = sources[e];
+            if (edgeCounts[q]++ == 0) {
+                predecessors.add(q);
+                compoundCells[q] = cellOf[e];
+            }
+        }
+        split(predecessors);
+
+        // the predecessors without an edge into the rest of the old compound block
+        IntList onlySplitter = new IntList();
+        for (int i = 0; i < predecessors.size; i++) {
+            int q = predecessors.items[i];
+            if (edgeCounts[q] == cells[compoundCells[q]]) onlySplitter.add(q);
+        }
+        split(onlySplitter);
+
+        for (int i = 0; i < predecessors.size; i++) {
+            int q = predecessors.items[i];
+            newCells[q] = newCell(edgeCounts[q]);
+            cells[compoundCells[q]] -= edgeCounts[q];
+            edgeCounts[q] = 0;
+        }
+        for (int i = from; i < to; i++) {
+            int e = (int) edges[i];
+            cellOf[e] = newCells[sources[e]];
+        }
+    }
+}
@@ -0,0 +1,675 @@
+package me.kokokotlin.main.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// immutable compressed sparse row representation of an automaton
+// the transitions of state q are at the indices [offsets[q], offsets[q + 1]) of the flat arrays symbols and targets,
+// sorted by symbol and target. symbols are the ids of the symbol table of the automaton
+// epsilon transitions are kept in a separate adjacency with the same layout
+public final class CompactAutomaton {
+    private final String[] stateNames;
+    private final SymbolTable symbolTable;
+
+    private final int[] offsets;
+    private final int[] symbols;
+    private final int[] targets;
+
+    private final int[] epsilonOffsets;
+    private final int[] epsilonTargets;
+
+    private final int[] initialStates;
+    private final BitSet finalStates;
+
+    // live states can still reach a final state, every other state is dead and can't lead to an acceptance anymore
+    // accept-absorbing states accept every continuation over the alphabet
+    private final BitSet liveStates;
+    private final BitSet absorbingStates;
+
+    private CompactAutomaton(String[] stateNames, SymbolTable symbolTable, int[] offsets, int[] symbols, int[] targets,
+                             int[] epsilonOffsets, int[] epsilonTargets, int[] initialStates, BitSet finalStates) {
+        this.stateNames = stateNames;
+        this.symbolTable = symbolTable;
+        this.offsets = offsets;
+        this.symbols = symbols;
+        this.targets = targets;
+        this.epsilonOffsets = epsilonOffsets;
+        this.epsilonTargets = epsilonTargets;
+        this.initialStates = initialStates;
+        this.finalStates = finalStates;
+
+        int[][] predecessors = predecessors();
+        this.liveStates = findLiveStates(predecessors);
+        this.absorbingStates = findAbsorbingStates(predecessors);
+    }
+
+    // reverse adjacency in the csr layout: the transitions that end in state q are at [offsets[q], offsets[q + 1]) of
+    // the second array, epsilon transitions are stored as -(index + 1)
+    private int[][] predecessors() {
+        int stateCount = getStateCount();
+        int[] reverseOffsets = new int[stateCount + 1];
+        for (int target: targets) reverseOffsets[target + 1]++;
+        for (int target: epsilonTargets) reverseOffsets[target + 1]++;
+        for (int q = 0; q < stateCount; q++) reverseOffsets[q + 1] += reverseOffsets[q];
+
+        int[] edges = new int[targets.length + epsilonTargets.length];
+        int[] fill = Arrays.copyOf(reverseOffsets, stateCount);
+        for (int i = 0; i < targets.length; i++) edges[fill[targets[i]]++] = i;
+        for (int i = 0; i < epsilonTargets.length; i++) edges[fill[epsilonTargets[i]]++] = -(i + 1);
+
+        int[] sources = new int[targets.length];
+        int[] epsilonSources = new int[epsilonTargets.length];
+        for (int q = 0; q < stateCount; q++) {
+            Arrays.fill(sources, offsets[q], offsets[q + 1], q);
+            Arrays.fill(epsilonSources, epsilonOffsets[q], epsilonOffsets[q + 1], q);
+        }
+
+        return new int[][] { reverseOffsets, edges, sources, epsilonSources };
+    }
+
+    private static int sourceOf(int[][] predecessors, int edge) {
+        return edge >= 0 ? predecessors[2][edge] : predecessors[3][-edge - 1];
+    }
+
+    // backwards breadth first search from the final states, linear in the number of transitions
+    private BitSet findLiveStates(int[][] predecessors) {
+        BitSet live = (BitSet) finalStates.clone();
+        int[] queue = new int[getStateCount()];
+        int tail = 0;
+        for (int q = live.nextSetBit(0); q >= 0; q = live.nextSetBit(q + 1)) queue[tail++] = q;
+
+        for (int head = 0; head < tail; head++) {
+            int q = queue[head];
+            for (int i = predecessors[0][q]; i < predecessors[0][q + 1]; i++) {
+                int source = sourceOf(predecessors, predecessors[1][i]);
+                if (!live.get(source)) {
+                    live.set(source);
+                    queue[tail++] = source;
+                }
+            }
+        }
+
+        return live;
+    }
+
+    // greatest set of final states that have a transition into the set for every symbol
+    // starts with all final states and removes the states that lose their last transition with a symbol into the set,
+    // every transition is looked at once per removed target, so this is linear as well
+    private BitSet findAbsorbingStates(int[][] predecessors) {
+        int symbolCount = symbolTable.size();
+        BitSet absorbing = (BitSet) finalStates.clone();
+        if (absorbing.isEmpty()) return absorbing;
+
+        // one counter per final state and symbol, the final states are numbered by their rank
+        int[] rank = new int[getStateCount()];
+        int finalCount = 0;
+        for (int q = absorbing.nextSetBit(0); q >= 0; q = absorbing.nextSetBit(q + 1)) rank[q] = finalCount++;
+
+        int[] support = new int[finalCount * symbolCount];
+        for (int q = absorbing.nextSetBit(0); q >= 0; q = absorbing.nextSetBit(q + 1)) {
+            for (int i = offsets[q]; i < offsets[q + 1]; i++) {
+                if (absorbing.get(targets[i])) support[rank[q] * symbolCount + symbols[i]]++;
+            }
+        }
+
+        int[] queue = new int[finalCount];
+        int tail = 0;
+        for (int q = absorbing.nextSetBit(0); q >= 0; q = absorbing.nextSetBit(q + 1)) {
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                if (support[rank[q] * symbolCount + symbol] == 0) {
+                    queue[tail++] = q;
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < tail; i++) absorbing.clear(queue[i]);
+
+        for (int head = 0; head < tail; head++) {
+            int q = queue[head];
+            for (int i = predecessors[0][q]; i < predecessors[0][q + 1]; i++) {
+                int edge = predecessors[1][i];
+                if (edge < 0) continue;
+
+                int source = sourceOf(predecessors, edge);
+                if (absorbing.get(source) && --support[rank[source] * symbolCount + symbols[edge]] == 0) {
+                    absorbing.clear(source);
+                    queue[tail++] = source;
+                }
+            }
+        }
+
+        return absorbing;
+    }
+
+    public static CompactAutomaton of(AutomatonBase automaton) {
+        List<State> states = automaton.getStates();
+        SymbolTable symbolTable = automaton.getSymbolTable();
+
+        Map<State, Integer> stateIndices = new IdentityHashMap<>();
+        for (int i = 0; i < states.size(); i++) stateIndices.put(states.get(i), i);
+
+        final Symbol epsilon = Symbol.epsilon();
+        Builder builder = new Builder(states.size(), symbolTable);
+        for (int i = 0; i < states.size(); i++) {
+            State state = states.get(i);
+            builder.setStateName(i, state.getName());
+
+            for (var entry: state.getTransition().entrySet()) {
+                boolean isEpsilon = entry.getKey().equals(epsilon);
+                int symbol = symbolTable.idOf(entry.getKey());
+                if (!isEpsilon && symbol == SymbolTable.UNKNOWN && !entry.getValue().isEmpty())
+                    throw new IllegalArgumentException(String.format("Symbol %s of state %s is not in the alphabet!", entry.getKey(), state.getName()));
+
+                for (State dest: entry.getValue()) {
+                    if (isEpsilon) builder.addEpsilonTransition(i, stateIndices.get(dest));
+                    else builder.addTransition(i, symbol, stateIndices.get(dest));
+                }
+            }
+        }
+
+        for (State s: automaton.getInitialStates()) builder.addInitialState(stateIndices.get(s));
+        for (State s: automaton.getFinalStates()) builder.addFinalState(stateIndices.get(s));
+
+        return builder.build();
+    }
+
+    // creates the state graph that is used by the automaton classes
+    public List<State> toStates() {
+        List<State> states = new ArrayList<>(getStateCount());
+        for (int i = 0; i < getStateCount(); i++) states.add(new State(stateNames[i], getAlphabet()));
+
+        final Symbol epsilon = Symbol.epsilon();
+        for (int q = 0; q < getStateCount(); q++) {
+            State state = states.get(q);
+            for (int i = offsets[q]; i < offsets[q + 1]; i++) state.addTransition(symbolTable.symbol(symbols[i]), states.get(targets[i]));
+            for (int i = epsilonOffsets[q]; i < epsilonOffsets[q + 1]; i++) state.addTransition(epsilon, states.get(epsilonTargets[i]));
+        }
+
+        return states;
+    }
+
+    public List<State> selectStates(List<State> states, int[] indices) {
+        List<State> selected = new ArrayList<>(indices.length);
+        for (int idx: indices) selected.add(states.get(idx));
+
+        return selected;
+    }
+
+    public List<State> selectStates(List<State> states, BitSet indices) {
+        return selectStates(states, indices.stream().toArray());
+    }
+
+    public int getStateCount() {
+        return stateNames.length;
+    }
+
+    public int getTransitionCount() {
+        return targets.length;
+    }
+
+    public int getEpsilonTransitionCount() {
+        return epsilonTargets.length;
+    }
+
+    public boolean hasEpsilons() {
+        return epsilonTargets.length != 0;
+    }
+
+    public String getStateName(int state) {
+        return stateNames[state];
+    }
+
+    public List<String> getAlphabet() {
+        return symbolTable.getAlphabet();
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    public int[] getInitialStates() {
+        return initialStates.clone();
+    }
+
+    public boolean isFinal(int state) {
+        return finalStates.get(state);
+    }
+
+    public boolean containsFinal(BitSet states) {
+        return finalStates.intersects(states);
+    }
+
+    public BitSet getFinalStates() {
+        return (BitSet) finalStates.clone();
+    }
+
+    // transitions of a state are at the indices [transitionStart(q), transitionEnd(q))
+    public int transitionStart(int state) {
+        return offsets[state];
+    }
+
+    public int transitionEnd(int state) {
+        return offsets[state + 1];
+    }
+
+    public int symbolAt(int transition) {
+        return symbols[transition];
+    }
+
+    public int targetAt(int transition) {
+        return targets[transition];
+    }
+
+    // first transition of the state with the given symbol (or with a bigger symbol if there is none)
+    public int lowerBound(int state, int symbol) {
+        int lo = offsets[state];
+        int hi = offsets[state + 1];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (symbols[mid] < symbol) lo = mid + 1;
+            else hi = mid;
+        }
+
+        return lo;
+    }
+
+    public int upperBound(int state, int symbol) {
+        return lowerBound(state, symbol + 1);
+    }
+
+    public int epsilonStart(int state) {
+        return epsilonOffsets[state];
+    }
+
+    public int epsilonEnd(int state) {
+        return epsilonOffsets[state + 1];
+    }
+
+    public int epsilonTargetAt(int transition) {
+        return epsilonTargets[transition];
+    }
+
+    // forward breadth first search from the initial states over all transitions including the epsilon transitions
+    public BitSet getReachableStates() {
+        BitSet reachable = new BitSet(getStateCount());
+        int[] queue = new int[getStateCount()];
+        int tail = 0;
+        for (int q: initialStates) {
+            if (!reachable.get(q)) {
+                reachable.set(q);
+                queue[tail++] = q;
+            }
+        }
+
+        for (int head = 0; head < tail; head++) {
+            int q = queue[head];
+            for (int i = offsets[q]; i < offsets[q + 1]; i++) {
+                if (!reachable.get(targets[i])) {
+                    reachable.set(targets[i]);
+                    queue[tail++] = targets[i];
+                }
+            }
+            for (int i = epsilonOffsets[q]; i < epsilonOffsets[q + 1]; i++) {
+                if (!reachable.get(epsilonTargets[i])) {
+                    reachable.set(epsilonTargets[i]);
+                    queue[tail++] = epsilonTargets[i];
+                }
+            }
+        }
+
+        return reachable;
+    }
+
+    public BitSet getLiveStates() {
+        return (BitSet) liveStates.clone();
+    }
+
+    public boolean isDead(int state) {
+        return !liveStates.get(state);
+    }
+
+    // no state of the set can reach a final state anymore, so no continuation of the input is accepted
+    public boolean isDead(BitSet states) {
+        return !states.intersects(liveStates);
+    }
+
+    public boolean isAbsorbing(int state) {
+        return absorbingStates.get(state);
+    }
+
+    // the set contains a state that accepts every continuation of the input over the alphabet
+    public boolean isAbsorbing(BitSet states) {
+        return states.intersects(absorbingStates);
+    }
+
+    public BitSet getAbsorbingStates() {
+        return (BitSet) absorbingStates.clone();
+    }
+
+    // removes the states that are unreachable from the initial states or can't reach a final state
+    // the accepted language stays the same, an automaton without an accepted word ends up without states
+    public CompactAutomaton trim() {
+        BitSet useful = getReachableStates();
+        useful.and(liveStates);
+        if (useful.cardinality() == getStateCount()) return this;
+
+        return restrict(useful);
+    }
+
+    // merges bisimilar states, the accepted language stays the same
+    // forward bisimilar states agree on being final and have transitions with the same symbols (epsilon included) into
+    // the same blocks, so they accept the same words. backward bisimilar states agree on being initial and have
+    // transitions with the same symbols from the same blocks, so the same words lead into them
+    // merging in one direction can make states bisimilar in the other one, so both are repeated until nothing changes
+    // one pass is O(transitions * log(states)), every repetition merges states, an automaton without bisimilar states
+    // (e.g. the epsilon-nfa of a regex) takes one forward and one backward pass
+    public CompactAutomaton reduce() {
+        CompactAutomaton current = this;
+        while (true) {
+            int stateCount = current.getStateCount();
+            current = current.reducePass();
+
+            if (current.getStateCount() == stateCount) return current;
+        }
+    }
+
+    // one forward and one backward pass of reduce
+    CompactAutomaton reducePass() {
+        CompactAutomaton forward = quotient(bisimulationBlocks(true));
+        return forward.quotient(forward.bisimulationBlocks(false));
+    }
+
+    // the block of every state in the coarsest bisimulation (see BisimulationPartition), the labels are the symbols and
+    // -1 for epsilon. the backward bisimulation is the forward one of the reversed transitions
+    private int[] bisimulationBlocks(boolean forward) {
+        final int transitionCount = targets.length + epsilonTargets.length;
+        int[] sources = new int[transitionCount];
+        int[] labels = new int[transitionCount];
+        int[] ends = new int[transitionCount];
+
+        int e = 0;
+        for (int q = 0; q < getStateCount(); q++) {
+            for (int i = offsets[q]; i < offsets[q + 1]; i++, e++) {
+                sources[e] = q;
+                labels[e] = symbols[i];
+                ends[e] = targets[i];
+            }
+            for (int i = epsilonOffsets[q]; i < epsilonOffsets[q + 1]; i++, e++) {
+                sources[e] = q;
+                labels[e] = -1;
+                ends[e] = epsilonTargets[i];
+            }
+        }
+
+        if (forward) return BisimulationPartition.blocks(getStateCount(), sources, labels, ends, finalStates);
+
+        BitSet initial = new BitSet(getStateCount());
+        for (int q: initialStates) initial.set(q);
+        return BisimulationPartition.blocks(getStateCount(), ends, labels, sources, initial);
+    }
+
+    // automaton with one state per block, a block is initial (final) if one of its states is
+    // the state keeps the name of the first state of its block
+    private CompactAutomaton quotient(int[] block) {
+        int blockCount = 0;
+        for (int b: block) blockCount = Math.max(blockCount, b + 1);
+        if (blockCount == getStateCount()) return this;
+
+        Builder builder = new Builder(blockCount, symbolTable);
+        boolean[] named = new boolean[blockCount];
+        for (int q = 0; q < getStateCount(); q++) {
+            if (!named[block[q]]) {
+                builder.setStateName(block[q], stateNames[q]);
+                named[block[q]] = true;
+            }
+
+            for (int i = offsets[q]; i < offsets[q + 1]; i++) builder.addTransition(block[q], symbols[i], block[targets[i]]);
+            for (int i = epsilonOffsets[q]; i < epsilonOffsets[q + 1]; i++) {
+                // an epsilon loop doesn't change the language
+                if (block[epsilonTargets[i]] != block[q]) builder.addEpsilonTransition(block[q], block[epsilonTargets[i]]);
+            }
+            if (finalStates.get(q)) builder.addFinalState(block[q]);
+        }
+        for (int q: initialStates) builder.addInitialState(block[q]);
+
+        return builder.build();
+    }
+
+    // sub automaton with only the given states, the states keep their order
+    public CompactAutomaton restrict(BitSet kept) {
+        int[] indices = new int[getStateCount()];
+        int count = 0;
+        for (int q = 0; q < getStateCount(); q++) indices[q] = kept.get(q) ? count++ : -1;
+
+        Builder builder = new Builder(count, symbolTable);
+        for (int q = kept.nextSetBit(0); q >= 0; q = kept.nextSetBit(q + 1)) {
+            builder.setStateName(indices[q], stateNames[q]);
+            for (int i = offsets[q]; i < offsets[q + 1]; i++) {
+                if (kept.get(targets[i])) builder.addTransition(indices[q], symbols[i], indices[targets[i]]);
+            }
+            for (int i = epsilonOffsets[q]; i < epsilonOffsets[q + 1]; i++) {
+                if (kept.get(epsilonTargets[i])) builder.addEpsilonTransition(indices[q], indices[epsilonTargets[i]]);
+            }
+            if (finalStates.get(q)) builder.addFinalState(indices[q]);
+        }
+        for (int q: initialStates) {
+            if (kept.get(q)) builder.addInitialState(indices[q]);
+        }
+
+        return builder.build();
+    }
+
+    // adds all targets of the transitions of the given states with the given symbol to result
+    public void step(BitSet states, int symbol, BitSet result) {
+        for (int q = states.nextSetBit(0); q >= 0; q = states.nextSetBit(q + 1)) {
+            int end = upperBound(q, symbol);
+            for (int i = lowerBound(q, symbol); i < end; i++) result.set(targets[i]);
+        }
+    }
+
+    // extends the set of states to its epsilon closure in place
+    public void epsilonClosure(BitSet states) {
+        if (hasEpsilons()) epsilonClosure(states, new int[getStateCount()]);
+    }
+
+    // stack needs room for every state, the engines reuse it for all steps of a match
+    public void epsilonClosure(BitSet states, int[] stack) {
+        if (!hasEpsilons()) return;
+
+        int top = 0;
+        for (int q = states.nextSetBit(0); q >= 0; q = states.nextSetBit(q + 1)) stack[top++] = q;
+
+        while (top > 0) {
+            int q = stack[--top];
+            for (int i = epsilonOffsets[q]; i < epsilonOffsets[q + 1]; i++) {
+                int dest = epsilonTargets[i];
+                if (!states.get(dest)) {
+                    states.set(dest);
+                    stack[top++] = dest;
+                }
+            }
+        }
+    }
+
+    public BitSet epsilonClosure(int state) {
+        BitSet closure = new BitSet(getStateCount());
+        closure.set(state);
+        epsilonClosure(closure);
+
+        return closure;
+    }
+
+    // collects the transitions in growable arrays and sorts them into the csr layout on build()
+    public static class Builder {
+        private final String[] stateNames;
+        private final SymbolTable symbolTable;
+
+        private int[] sources = new int[16];
+        private int[] symbols = new int[16];
+        private int[] targets = new int[16];
+        private int transitionCount = 0;
+
+        private int[] epsilonSources = new int[16];
+        private int[] epsilonTargets = new int[16];
+        private int epsilonCount = 0;
+
+        private final BitSet initialStates = new BitSet();
+        private final BitSet finalStates = new BitSet();
+
+        public Builder(int stateCount, SymbolTable symbolTable) {
+            this.stateNames = new String[stateCount];
+            this.symbolTable = symbolTable;
+
+            for (int i = 0; i < stateCount; i++) stateNames[i] = String.valueOf(i);
+        }
+
+        private void checkState(int state) {
+            if (state < 0 || state >= stateNames.length)
+                throw new IllegalArgumentException(String.format("State index %d is out of bounds of [0, %d]!", state, stateNames.length - 1));
+        }
+
+        public Builder setStateName(int state, String name) {
+            checkState(state);
+            stateNames[state] = name;
+            return this;
+        }
+
+        public Builder addTransition(int source, int symbol, int target) {
+            checkState(source);
+            checkState(target);
+            if (symbol < 0 || symbol >= symbolTable.size())
+                throw new IllegalArgumentException(String.format("Symbol index %d is out of bounds of [0, %d]!", symbol, symbolTable.size() - 1));
+
+            if (transitionCount == targets.length) {
+                sources = Arrays.copyOf(sources, 2 * transitionCount);
+                symbols = Arrays.copyOf(symbols, 2 * transitionCount);
+                targets = Arrays.copyOf(targets, 2 * transitionCount);
+            }
+
+            sources[transitionCount] = source;
+            symbols[transitionCount] = symbol;
+            targets[transitionCount] = target;
+            transitionCount++;
+            return this;
+        }
+
+        // bulk version of addTransition for the first count entries of the arrays
+        public Builder addTransitions(int[] sources, int[] symbols, int[] targets, int count) {
+            for (int i = 0; i < count; i++) {
+                checkState(sources[i]);
+                checkState(targets[i]);
+                if (symbols[i] < 0 || symbols[i] >= symbolTable.size())
+                    throw new IllegalArgumentException(String.format("Symbol index %d is out of bounds of [0, %d]!", symbols[i], symbolTable.size() - 1));
+            }
+
+            if (transitionCount + count > this.targets.length) {
+                int capacity = Math.max(transitionCount + count, 2 * this.targets.length);
+                this.sources = Arrays.copyOf(this.sources, capacity);
+                this.symbols = Arrays.copyOf(this.symbols, capacity);
+                this.targets = Arrays.copyOf(this.targets, capacity);
+            }
+
+            System.arraycopy(sources, 0, this.sources, transitionCount, count);
+            System.arraycopy(symbols, 0, this.symbols, transitionCount, count);
+            System.arraycopy(targets, 0, this.targets, transitionCount, count);
+            transitionCount += count;
+            return this;
+        }
+
+        public Builder addEpsilonTransitions(int[] sources, int[] targets, int count) {
+            for (int i = 0; i < count; i++) {
+                checkState(sources[i]);
+                checkState(targets[i]);
+            }
+
+            if (epsilonCount + count > epsilonTargets.length) {
+                int capacity = Math.max(epsilonCount + count, 2 * epsilonTargets.length);
+                epsilonSources = Arrays.copyOf(epsilonSources, capacity);
+                epsilonTargets = Arrays.copyOf(epsilonTargets, capacity);
+            }
+
+            System.arraycopy(sources, 0, epsilonSources, epsilonCount, count);
+            System.arraycopy(targets, 0, epsilonTargets, epsilonCount, count);
+            epsilonCount += count;
+            return this;
+        }
+
+        public Builder addEpsilonTransition(int source, int target) {
+            checkState(source);
+            checkState(target);
+
+            if (epsilonCount == epsilonTargets.length) {
+                epsilonSources = Arrays.copyOf(epsilonSources, 2 * epsilonCount);
+                epsilonTargets = Arrays.copyOf(epsilonTargets, 2 * epsilonCount);
+            }
+
+            epsilonSources[epsilonCount] = source;
+            epsilonTargets[epsilonCount] = target;
+            epsilonCount++;
+            return this;
+        }
+
+        public Builder addInitialState(int state) {
+            checkState(state);
+            initialStates.set(state);
+            return this;
+        }
+
+        public Builder addFinalState(int state) {
+            checkState(state);
+            finalStates.set(state);
+            return this;
+        }
+
+        // counting sort by source state, then every row is sorted by (symbol, target) and duplicates are dropped
+        private static int[][] toRows(int stateCount, int[] sources, long[] keys, int count) {
+            int[] offsets = new int[stateCount + 1];
+            for (int i = 0; i < count; i++) offsets[sources[i] + 1]++;
+            for (int q = 0; q < stateCount; q++) offsets[q + 1] += offsets[q];
+
+            long[] sorted = new long[count];
+            int[] fill = Arrays.copyOf(offsets, stateCount);
+            for (int i = 0; i < count; i++) sorted[fill[sources[i]]++] = keys[i];
+
+            int[] compacted = new int[stateCount + 1];
+            int write = 0;
+            for (int q = 0; q < stateCount; q++) {
+                Arrays.sort(sorted, offsets[q], offsets[q + 1]);
+                compacted[q] = write;
+                for (int i = offsets[q]; i < offsets[q + 1]; i++) {
+                    if (i > offsets[q] && sorted[i] == sorted[i - 1]) continue;
+                    sorted[write++] = sorted[i];
+                }
+            }
+            compacted[stateCount] = write;
+
+            int[] high = new int[write];
+            int[] low = new int[write];
+            for (int i = 0; i < write; i++) {
+                high[i] = (int) (sorted[i] >>> 32);
+                low[i] = (int) sorted[i];
+            }
+
+            return new int[][] { compacted, high, low };
+        }
+
+        public CompactAutomaton build() {
+            int stateCount = stateNames.length;
+
+            long[] keys = new long[transitionCount];
+            for (int i = 0; i < transitionCount; i++) keys[i] = ((long) symbols[i] << 32) | targets[i];
+            int[][] rows = toRows(stateCount, sources, keys, transitionCount);
+
+            long[] epsilonKeys = new long[epsilonCount];
+            for (int i = 0; i < epsilonCount; i++) epsilonKeys[i] = epsilonTargets[i];
+            int[][] epsilonRows = toRows(stateCount, epsilonSources, epsilonKeys, epsilonCount);
+
+            return new CompactAutomaton(stateNames.clone(), symbolTable, rows[0], rows[1], rows[2],
+                    epsilonRows[0], epsilonRows[2], initialStates.stream().toArray(), (BitSet) finalStates.clone());
+        }
+    }
+}
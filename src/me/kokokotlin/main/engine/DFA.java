@@ -1,23 +1,59 @@
 package me.kokokotlin.main.engine;
 
+import me.kokokotlin.main.engine.metrics.Metrics;
+import me.kokokotlin.main.engine.trace.ExecutionTrace;
+
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.stream.Collectors;
 
-public class DFA extends AutomatonBase {
-    private State currentState;
+public class DFA extends AutomatonBase implements TransitionTable {
+    // dense transition table: table[state * symbolCount + symbol id] is the index of the next state
+    private final int[] table;
+    private final boolean[] accepting;
+    // a match stops early in a dead state (it rejects every continuation) or an absorbing one (it accepts every continuation)
+    private final boolean[] halting;
+    private final int symbolCount;
+    private final int initialState;
+    // skips the characters a state loops on, null if no state loops on almost every symbol
+    private final SelfLoopAccelerator accelerator;
 
     public DFA(List<State> states, List<State> initialStates, List<State> finalStates, List<String> alphabet) {
-        super(states, initialStates, finalStates, alphabet);
+        this(states, initialStates, finalStates, SymbolTable.of(alphabet));
+    }
+
+    public DFA(List<State> states, List<State> initialStates, List<State> finalStates, SymbolTable symbolTable) {
+        this(states, initialStates, finalStates, symbolTable, null);
+    }
+
+    // source is the compact representation the states were created from, or null if it still has to be built from the states
+    private DFA(List<State> states, List<State> initialStates, List<State> finalStates, SymbolTable symbolTable, CompactAutomaton source) {
+        super(states, initialStates, finalStates, symbolTable);
+        this.compact = source;
 
         if (!isValidDFA())
             throw new IllegalArgumentException("DFA needs states with unique transitions and only one initial state!");
-    }
 
-    private void reset() {
-        currentState = initialStates.get(0);
+        final CompactAutomaton compact = toCompact();
+        symbolCount = symbolTable.size();
+        table = new int[states.size() * symbolCount];
+        accepting = new boolean[states.size()];
+        halting = new boolean[states.size()];
+
+        for (int q = 0; q < states.size(); q++) {
+            for (int i = compact.transitionStart(q); i < compact.transitionEnd(q); i++) {
+                table[q * symbolCount + compact.symbolAt(i)] = compact.targetAt(i);
+            }
+            accepting[q] = compact.isFinal(q);
+            halting[q] = compact.isDead(q) || compact.isAbsorbing(q);
+        }
+        initialState = compact.getInitialStates()[0];
+        accelerator = SelfLoopAccelerator.of(symbolTable, table, halting);
+        if (Metrics.ENABLED) Metrics.recordAutomaton(this);
     }
 
     private boolean isValidDFA() {
@@ -26,14 +62,68 @@ public class DFA extends AutomatonBase {
 
     @Override
     public boolean match(String word) {
-        reset();
+        final long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+        int currentState = initialState;
+        final boolean traced = ExecutionTrace.ENABLED && tracer != null;
+        if (traced) {
+            tracer.beginMatch();
+            tracer.record(ExecutionTrace.INITIAL_POSITION, '\0', currentState);
+        }
+
+        // a symbol that is not in the alphabet can't be read by any state
+        boolean rejected = false;
+        // a traced match records every step, so it isn't accelerated
+        final int[] memo = (accelerator != null && !traced) ? accelerator.newMemo() : null;
+        int i = 0;
+        for (; i < word.length() && !halting[currentState]; i++) {
+            if (memo != null && accelerator.isAccelerated(currentState)) {
+                i = accelerator.skip(word, i, currentState, memo);
+                if (i == word.length()) break;
+            }
 
-        for (int i = 0; i < word.length(); i++) {
             char c = word.charAt(i);
-            currentState = currentState.getNextStates(new Symbol(String.valueOf(c))).get(0);
+            int symbol = symbolTable.idOf(c);
+            if (symbol == SymbolTable.UNKNOWN) {
+                rejected = true;
+                break;
+            }
+
+            currentState = table[currentState * symbolCount + symbol];
+            if (traced) tracer.record(i, c, currentState);
         }
 
-        return finalStates.stream().anyMatch((State s) -> s == currentState);
+        // after an absorbing state the rest of the word only has to consist of symbols of the alphabet
+        if (!rejected && i < word.length() && accepting[currentState]) rejected = symbolTable.firstUnknown(word, i) != word.length();
+        boolean accepted = !rejected && accepting[currentState];
+        if (Metrics.ENABLED) Metrics.recordMatch(this, System.nanoTime() - start, word.length(), accepted);
+
+        return accepted;
+    }
+
+    @Override
+    public int longestMatch(CharSequence text, int from) {
+        int currentState = initialState;
+        int longest = accepting[currentState] ? 0 : -1;
+        final int[] memo = (accelerator != null) ? accelerator.newMemo() : null;
+
+        for (int i = from; i < text.length(); i++) {
+            if (halting[currentState]) return accepting[currentState] ? symbolTable.firstUnknown(text, i) - from : longest;
+
+            // the state accepts after every skipped character
+            if (memo != null && accelerator.isAccelerated(currentState)) {
+                i = accelerator.skip(text, i, currentState, memo);
+                if (accepting[currentState]) longest = i - from;
+                if (i == text.length()) break;
+            }
+
+            int symbol = symbolTable.idOf(text.charAt(i));
+            if (symbol == SymbolTable.UNKNOWN) break;
+
+            currentState = table[currentState * symbolCount + symbol];
+            if (accepting[currentState]) longest = i - from + 1;
+        }
+
+        return longest;
     }
 
     @Override
@@ -43,111 +133,281 @@ public class DFA extends AutomatonBase {
 
     @Override
     public NFA toNFA() {
-        return new NFA(states, initialStates, finalStates, alphabet);
+        NFA nfa = new NFA(states, initialStates, finalStates, symbolTable);
+        nfa.compact = compact;
+        return nfa;
     }
 
     @Override
     public ENFA toENFA() {
-        return new ENFA(states, initialStates, finalStates, alphabet, false);
+        ENFA eNFA = new ENFA(states, initialStates, finalStates, symbolTable, false);
+        eNFA.compact = compact;
+        return eNFA;
     }
     
-    // remove not reachable states
-    // that has to be done multiple times, because after the every deletion round there could be new unreachable states
-    // that were reachable only be states, that were unreachable and are now deleted
-    private static List<State> removeUnreachableStates(List<State> states, State initialState) {
-        int lastStateCount = 0;
-        int currentStateCount = states.size();
-
-        while (lastStateCount != currentStateCount) {
-            final Set<State> reachableStates = new HashSet<>();
-
-            for (State s: states) {
-                for(List<State> sReachable: s.getTransition().values()) {
-                    List<State> copy = new ArrayList<> (sReachable);
-                    copy.remove(s);
-                    reachableStates.addAll(copy);
-                }
-            }
-
-            states = states.stream().filter(state -> reachableStates.contains(state) || state.equals(initialState)).collect(Collectors.toList());
-            lastStateCount = currentStateCount;
-            currentStateCount = states.size();
-        }
+    public static DFA fromCompact(CompactAutomaton compact) {
+        List<State> states = compact.toStates();
+        return new DFA(states, compact.selectStates(states, compact.getInitialStates()),
+                compact.selectStates(states, compact.getFinalStates()), compact.getSymbolTable(), compact);
+    }
 
-        return states;
+    private static String subsetName(BitSet subset) {
+        if (subset.isEmpty()) return "∅";
+        return subset.stream().mapToObj(String::valueOf).collect(Collectors.joining("_"));
     }
 
-    // generate the transition table delta'' for the DFA
-    // this can introduce new states
-    // the initial states are grouped into one state
-    // every state that contains at least one final state is a new final state
+    // generate the transition table delta'' for the DFA by the subset construction on the compact representation of the nfa
+    // every dfa state is a set of nfa states, only the sets that are reachable from the set of initial states are created
+    // every set that contains at least one final state is a new final state
     // at the end of the conversion, every state needs a transition for every symbol in the alphabet
     // and there can only be one initial state
-    // there can also be states that are not reachable. They can be safely removed without changing the behavior of the automaton
     public static DFA constructDFA(NFA nfa) {
-        List<List<Integer>> states = new ArrayList<>();     // symbolic states as sets to keep track of the state indices
-        List<State> dfaStates = new ArrayList<>();          // actual dfa states
+        final long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+        DFA dfa = determinize(nfa.toCompact().reduce(), false, Integer.MAX_VALUE);
+        if (Metrics.ENABLED) Metrics.recordConversion(Metrics.Conversion.NFA_TO_DFA, System.nanoTime() - start, nfa, dfa);
 
-        for (int i = 0; i < nfa.getStateCount(); i++) {
-            states.add(List.of(i));
-            dfaStates.add(new State(String.valueOf(i), nfa.getAlphabet(), false));
-        }
-        int currentStateIndex = 0;
+        return dfa;
+    }
 
-        while (currentStateIndex < states.size()) {
-            List<Integer> currentState = states.get(currentStateIndex);
-            State currentDfaState = dfaStates.get(currentStateIndex);
+    // the same subset construction directly on the epsilon-nfa, the intermediate nfa isn't built
+    // every subset is closed under epsilon transitions: delta''(S, sigma) = e-Cl(delta(S, sigma))
+    // the closure of a single state is computed once when it is needed first, the closure of a set is the union of them
+    public static DFA constructDFA(ENFA eNFA) {
+        final long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+        final CompactAutomaton compact = eNFA.toCompact().reduce();
+        DFA dfa = determinize(compact, compact.hasEpsilons(), Integer.MAX_VALUE);
+        if (Metrics.ENABLED) Metrics.recordConversion(Metrics.Conversion.ENFA_TO_DFA, System.nanoTime() - start, eNFA, dfa);
 
-            for (String symbol: nfa.getAlphabet()) {
-                Symbol currentSymbol = new Symbol(symbol);
+        return dfa;
+    }
 
-                List<State> resultState_ = nfa.makeTransitionIdx(currentState, currentSymbol);
-                List<Integer> resultState = resultState_.stream().map(nfa::getStateIndex).collect(Collectors.toList());
+    // the subset construction of the nfa or epsilon-nfa, aborted as soon as it creates more than maxStates subsets
+    // null if it was aborted, the subset construction until then takes at most maxStates times the size of the alphabet
+    // steps. the bisimilar states are merged before by one pass of the reduction (about transitions * log2(states)
+    // steps) only if that costs at most half as much, so the whole work is bounded by one and a half times that
+    public static DFA tryConstructDFA(AutomatonBase automaton, int maxStates) {
+        if (automaton instanceof DFA dfa) return (dfa.getStateCount() <= maxStates) ? dfa : null;
 
-                if (!states.contains(resultState)) {
-                    states.add(resultState);
-                    String stateName;
-                    if (resultState.size() == 0) stateName = "∅";
-                    else stateName = resultState.stream().map(String::valueOf).collect(Collectors.joining(""));
+        CompactAutomaton compact = automaton.toCompact();
+        final long budget = (long) maxStates * Math.max(1, compact.getSymbolTable().size());
+        final long reductionCost = (long) (compact.getTransitionCount() + compact.getEpsilonTransitionCount())
+                * (Integer.SIZE - Integer.numberOfLeadingZeros(compact.getStateCount()));
+        if (2 * reductionCost <= budget) compact = compact.reducePass();
 
-                    dfaStates.add(new State(stateName, nfa.getAlphabet(), false));
+        return determinize(compact, compact.hasEpsilons(), maxStates);
+    }
+
+    // bisimilar states of the nfa are merged first (see CompactAutomaton.reduce), fewer nfa states mean fewer possible subsets
+    // the subsets are bitsets over the nfa states, a bitset doesn't depend on the order in which the states were added,
+    // so it can be used directly as the key of the subset index
+    // the transitions are written into the compact builder, no state objects are created for the intermediate subsets
+    private static DFA determinize(CompactAutomaton compact, boolean closeEpsilons, int maxStates) {
+        final int stateCount = compact.getStateCount();
+        final SymbolTable symbolTable = compact.getSymbolTable();
+        final BitSet[] closures = new BitSet[closeEpsilons ? stateCount : 0];
+
+        List<BitSet> subsets = new ArrayList<>();
+        Map<BitSet, Integer> subsetIndices = new HashMap<>();
+        IntList sources = new IntList();
+        IntList symbols = new IntList();
+        IntList targets = new IntList();
+
+        BitSet initialSubset = new BitSet(stateCount);
+        for (int q: compact.getInitialStates()) initialSubset.set(q);
+        if (closeEpsilons) initialSubset = close(compact, closures, initialSubset);
+        subsets.add(initialSubset);
+        subsetIndices.put(initialSubset, 0);
+
+        BitSet reached = new BitSet(stateCount);
+        for (int currentStateIndex = 0; currentStateIndex < subsets.size(); currentStateIndex++) {
+            BitSet currentSubset = subsets.get(currentStateIndex);
+
+            for (int symbol = 0; symbol < symbolTable.size(); symbol++) {
+                reached.clear();
+                compact.step(currentSubset, symbol, reached);
+                BitSet resultSubset = closeEpsilons ? close(compact, closures, reached) : (BitSet) reached.clone();
+
+                Integer index = subsetIndices.get(resultSubset);
+                if (index == null) {
+                    if (subsets.size() == maxStates) return null;
+
+                    index = subsets.size();
+                    subsets.add(resultSubset);
+                    subsetIndices.put(resultSubset, index);
                 }
 
-                int index = states.indexOf(resultState);
-                currentDfaState.addTransition(currentSymbol, dfaStates.get(index));
+                sources.add(currentStateIndex);
+                symbols.add(symbol);
+                targets.add(index);
             }
-
-            currentStateIndex++;
         }
 
         // get final states
-        List<State> finalStates = new ArrayList<>();
-        final int finalStateIndex = nfa.getStateCount() - 1;
+        final BitSet nfaFinalStates = compact.getFinalStates();
+        CompactAutomaton.Builder builder = new CompactAutomaton.Builder(subsets.size(), symbolTable);
+        for (int i = 0; i < subsets.size(); i++) {
+            builder.setStateName(i, subsetName(subsets.get(i)));
+            if (subsets.get(i).intersects(nfaFinalStates)) builder.addFinalState(i);
+        }
+        builder.addTransitions(sources.values, symbols.values, targets.values, sources.size);
+        builder.addInitialState(0);
 
-        for (int i = 0; i < states.size(); i++) {
-            List<Integer> state = states.get(i);
-            State currentState = dfaStates.get(i);
-            if (state.contains(finalStateIndex)) finalStates.add(currentState);
+        // every subset that can't reach a final set anymore is merged into one dead sink
+        return fromCompact(builder.build()).trim();
+    }
+
+    private static BitSet close(CompactAutomaton compact, BitSet[] closures, BitSet states) {
+        BitSet closed = new BitSet(compact.getStateCount());
+        for (int q = states.nextSetBit(0); q >= 0; q = states.nextSetBit(q + 1)) {
+            if (closed.get(q)) continue;
+            if (closures[q] == null) closures[q] = compact.epsilonClosure(q);
+            closed.or(closures[q]);
         }
 
-        // find initial state
-        int startingStateIndex = -1;
-        List<Integer> nfaInitialState = nfa.getInitialStatesIdx();
-        for (int i = 0; i < states.size(); i++) {
-            var state = states.get(i);
-            if (nfaInitialState.size() == state.size() && nfaInitialState.containsAll(state)) {
-                startingStateIndex = i;
-                break;
+        return closed;
+    }
+
+    // growable int array for the transitions of the subset construction
+    private static final class IntList {
+        int[] values = new int[16];
+        int size = 0;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+    }
+
+    // Moore's partition refinement on the reachable part of the transition table
+    // two states stay in the same block as long as they agree on being final and their successors are in the same blocks
+    // the blocks of the final partition are the states of the minimal DFA
+    public DFA minimize() {
+        final int stateCount = states.size();
+
+        int[] order = new int[stateCount];
+        boolean[] reachable = new boolean[stateCount];
+        int reachableCount = 0;
+        order[reachableCount++] = initialState;
+        reachable[initialState] = true;
+        for (int i = 0; i < reachableCount; i++) {
+            int q = order[i];
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int dest = table[q * symbolCount + symbol];
+                if (!reachable[dest]) {
+                    reachable[dest] = true;
+                    order[reachableCount++] = dest;
+                }
+            }
+        }
+
+        int[] block = new int[stateCount];
+        for (int i = 0; i < reachableCount; i++) block[order[i]] = accepting[order[i]] ? 1 : 0;
+        int blockCount = -1;
+
+        while (true) {
+            Map<List<Integer>, Integer> signatures = new HashMap<>();
+            int[] nextBlock = new int[stateCount];
+
+            for (int i = 0; i < reachableCount; i++) {
+                int q = order[i];
+                List<Integer> signature = new ArrayList<>(symbolCount + 1);
+                signature.add(block[q]);
+                for (int symbol = 0; symbol < symbolCount; symbol++) signature.add(block[table[q * symbolCount + symbol]]);
+
+                nextBlock[q] = signatures.computeIfAbsent(signature, k -> signatures.size());
             }
+
+            block = nextBlock;
+            if (signatures.size() == blockCount) break;
+            blockCount = signatures.size();
         }
 
-        State initialState = dfaStates.get(startingStateIndex);
-        dfaStates = removeUnreachableStates(dfaStates, initialState);
+        CompactAutomaton.Builder builder = new CompactAutomaton.Builder(blockCount, symbolTable);
+        boolean[] written = new boolean[blockCount];
+        for (int i = 0; i < reachableCount; i++) {
+            int q = order[i];
+            if (written[block[q]]) continue;
+            written[block[q]] = true;
+
+            builder.setStateName(block[q], states.get(q).getName());
+            for (int symbol = 0; symbol < symbolCount; symbol++) builder.addTransition(block[q], symbol, block[table[q * symbolCount + symbol]]);
+            if (accepting[q]) builder.addFinalState(block[q]);
+        }
+        builder.addInitialState(block[initialState]);
 
-        // remove unreachable states from final states
-        finalStates = finalStates.stream().filter(dfaStates::contains).collect(Collectors.toList());
+        return fromCompact(builder.build());
+    }
 
-        return new DFA(dfaStates, List.of(initialState), finalStates, nfa.getAlphabet());
+    @Override
+    public DFA reduce() {
+        return minimize();
+    }
+
+    // keeps the reachable states and merges all reachable dead states into one canonical dead sink
+    // the sink keeps the transition table complete and is the only state that can't reach a final state
+    @Override
+    public DFA trim() {
+        final CompactAutomaton compact = toCompact();
+        final BitSet reachable = compact.getReachableStates();
+
+        int[] indices = new int[states.size()];
+        int count = 0;
+        int deadCount = 0;
+        for (int q = reachable.nextSetBit(0); q >= 0; q = reachable.nextSetBit(q + 1)) {
+            if (compact.isDead(q)) deadCount++;
+            else indices[q] = count++;
+        }
+        if (deadCount <= 1 && count + deadCount == states.size()) return this;
+
+        final int sink = count;
+        for (int q = reachable.nextSetBit(0); q >= 0; q = reachable.nextSetBit(q + 1)) {
+            if (compact.isDead(q)) indices[q] = sink;
+        }
+
+        CompactAutomaton.Builder builder = new CompactAutomaton.Builder(count + (deadCount > 0 ? 1 : 0), symbolTable);
+        for (int q = reachable.nextSetBit(0); q >= 0; q = reachable.nextSetBit(q + 1)) {
+            if (compact.isDead(q)) continue;
+
+            builder.setStateName(indices[q], states.get(q).getName());
+            for (int symbol = 0; symbol < symbolCount; symbol++) builder.addTransition(indices[q], symbol, indices[table[q * symbolCount + symbol]]);
+            if (accepting[q]) builder.addFinalState(indices[q]);
+        }
+        if (deadCount > 0) {
+            builder.setStateName(sink, subsetName(new BitSet()));
+            for (int symbol = 0; symbol < symbolCount; symbol++) builder.addTransition(sink, symbol, sink);
+        }
+        builder.addInitialState(indices[initialState]);
+
+        return fromCompact(builder.build());
+    }
+
+    public boolean isDead(int state) {
+        return halting[state] && !accepting[state];
+    }
+
+    public boolean isAbsorbing(int state) {
+        return halting[state] && accepting[state];
+    }
+
+    @Override
+    public int getStateCount() {
+        return states.size();
+    }
+
+    @Override
+    public boolean isAccepting(int state) {
+        return accepting[state];
+    }
+
+    @Override
+    public int getInitialStateIndex() {
+        return initialState;
+    }
+
+    // index of the state that is reached from state with the symbol id
+    @Override
+    public int next(int state, int symbol) {
+        return table[state * symbolCount + symbol];
     }
 
     private String getTransitionRepr() {
@@ -0,0 +1,350 @@
+package me.kokokotlin.main.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// builds the minimal acyclic dfa (dawg) of a list of words incrementally, without a trie or an nfa in between
+// (Daciuk, Mihov, Watson, Watson: Incremental Construction of Minimal Acyclic Finite-State Automata)
+// the register maps the content of a state (final flag and transitions) to the one state with that content, two states
+// with the same content have the same language, so every registered state is unique and the registered part is minimal
+// sorted words: the states of the last word that are not shared with the next word can't change anymore, they are
+// replaced by their registered equivalent (or registered) as soon as the next word diverges from them. only the path of
+// the last word is not registered
+// unsorted words: the word can go through states that are shared by other words (confluence states), these are cloned
+// before the new suffix is added, every state of the path is registered again afterwards from the end to the start
+// both can be mixed, a word that diverges from the last word in a registered state or at an existing transition (it
+// comes before the last word in order) takes the unsorted path
+// the memory stays proportional to the minimal automaton, states that become unreachable are released
+// the result is a dfa with one dead sink for the missing transitions, it works with every engine and can be compiled
+public class DawgBuilder {
+    // word lists (one word per line) with this extension are loaded as automaton by the Loader
+    public static final String FILE_EXTENSION = ".dict";
+
+    private static final class Node {
+        boolean isFinal = false;
+        char[] labels = new char[2];
+        Node[] targets = new Node[2];
+        int size = 0;
+        int inDegree = 0;
+        // 0 if not computed since the last change
+        int hash = 0;
+
+        // index of the transition with the label, or -(insertion point) - 1
+        int indexOf(char label) {
+            return Arrays.binarySearch(labels, 0, size, label);
+        }
+
+        Node target(char label) {
+            int index = indexOf(label);
+            return (index >= 0) ? targets[index] : null;
+        }
+
+        // the states are compared by their content, the targets by identity (they are registered, so unique)
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Node other) || isFinal != other.isFinal || size != other.size) return false;
+            for (int i = 0; i < size; i++) {
+                if (labels[i] != other.labels[i] || targets[i] != other.targets[i]) return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            if (hash == 0) {
+                int h = isFinal ? 1 : 0;
+                for (int i = 0; i < size; i++) h = 31 * (31 * h + labels[i]) + System.identityHashCode(targets[i]);
+                hash = (h == 0) ? 1 : h;
+            }
+
+            return hash;
+        }
+    }
+
+    private final Node root = new Node();
+    private final Map<Node, Node> register = new HashMap<>();
+
+    // path[1..pendingDepth] are the unregistered states of the last word, path[0] is the root (never registered)
+    private Node[] path = new Node[16];
+    private int pendingDepth = 0;
+    private String lastWord;
+
+    private int stateCount = 1;
+    private int wordCount = 0;
+
+    public DawgBuilder() {
+        path[0] = root;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    // false if the word was added before
+    public boolean add(CharSequence word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Symbol.EPSILON.charAt(0) == word.charAt(i))
+                throw new IllegalArgumentException("A word can't contain the epsilon symbol \\0!");
+        }
+        if (lastWord != null && CharSequence.compare(word, lastWord) == 0) return false;
+
+        int prefix = (lastWord == null) ? 0 : commonPrefix(word, lastWord);
+        if (prefix <= pendingDepth && prefix < word.length() && path[prefix].target(word.charAt(prefix)) == null) {
+            registerPending(prefix);
+            appendPending(word, prefix);
+        } else {
+            registerPending(0);
+            if (!addUnsorted(word)) return false;
+        }
+
+        lastWord = word.toString();
+        wordCount++;
+        return true;
+    }
+
+    public void addAll(Iterable<? extends CharSequence> words) {
+        for (CharSequence word: words) add(word);
+    }
+
+    private static int commonPrefix(CharSequence a, CharSequence b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) i++;
+
+        return i;
+    }
+
+    private Node newNode() {
+        stateCount++;
+        return new Node();
+    }
+
+    private Node copyOf(Node node) {
+        Node copy = newNode();
+        copy.isFinal = node.isFinal;
+        copy.labels = Arrays.copyOf(node.labels, Math.max(2, node.size));
+        copy.targets = Arrays.copyOf(node.targets, Math.max(2, node.size));
+        copy.size = node.size;
+        for (int i = 0; i < copy.size; i++) copy.targets[i].inDegree++;
+
+        return copy;
+    }
+
+    // the node must not be registered, its content changes
+    private void setTransition(Node node, char label, Node target) {
+        node.hash = 0;
+        int index = node.indexOf(label);
+        if (index >= 0) {
+            Node previous = node.targets[index];
+            if (previous == target) return;
+
+            node.targets[index] = target;
+            target.inDegree++;
+            if (--previous.inDegree == 0) release(previous);
+            return;
+        }
+
+        index = -index - 1;
+        if (node.size == node.labels.length) {
+            node.labels = Arrays.copyOf(node.labels, 2 * node.size);
+            node.targets = Arrays.copyOf(node.targets, 2 * node.size);
+        }
+        System.arraycopy(node.labels, index, node.labels, index + 1, node.size - index);
+        System.arraycopy(node.targets, index, node.targets, index + 1, node.size - index);
+        node.labels[index] = label;
+        node.targets[index] = target;
+        node.size++;
+        target.inDegree++;
+    }
+
+    // the registered equivalent of the node, or the node itself after registering it
+    // a new node that has an equivalent is released directly, a node that still has a predecessor is released as soon as
+    // the predecessor points to the equivalent
+    private Node replaceOrRegister(Node node) {
+        Node registered = register.putIfAbsent(node, node);
+        if (registered == null) return node;
+
+        if (node.inDegree == 0) release(node);
+        return registered;
+    }
+
+    private void unregister(Node node) {
+        if (register.get(node) == node) register.remove(node);
+    }
+
+    // the node is unreachable, so are its targets that have no other predecessor
+    private void release(Node node) {
+        ArrayDeque<Node> unreachable = new ArrayDeque<>();
+        unreachable.push(node);
+
+        while (!unreachable.isEmpty()) {
+            Node current = unreachable.pop();
+            unregister(current);
+            stateCount--;
+
+            for (int i = 0; i < current.size; i++) {
+                if (--current.targets[i].inDegree == 0) unreachable.push(current.targets[i]);
+            }
+        }
+    }
+
+    // replaces the states of the last word below the depth by their registered equivalents, from the end
+    private void registerPending(int depth) {
+        for (int i = pendingDepth; i > depth; i--) {
+            Node registered = replaceOrRegister(path[i]);
+            if (registered != path[i]) setTransition(path[i - 1], lastWord.charAt(i - 1), registered);
+        }
+
+        pendingDepth = Math.min(pendingDepth, depth);
+    }
+
+    // the suffix of the word after the prefix as new unregistered states after the last state of the prefix
+    private void appendPending(CharSequence word, int prefix) {
+        if (path.length <= word.length()) path = Arrays.copyOf(path, Math.max(2 * path.length, word.length() + 1));
+
+        for (int i = prefix; i < word.length(); i++) {
+            Node next = newNode();
+            setTransition(path[i], word.charAt(i), next);
+            path[i + 1] = next;
+        }
+
+        path[word.length()].isFinal = true;
+        path[word.length()].hash = 0;
+        pendingDepth = word.length();
+    }
+
+    // every state except the root is registered, the states of the prefix of the word that is already in the automaton
+    // change. they can be changed in place as long as only this path leads to them, from the first confluence state on
+    // they are cloned
+    private boolean addUnsorted(CharSequence word) {
+        List<Node> prefix = new ArrayList<>();
+        prefix.add(root);
+        Node current = root;
+        while (prefix.size() <= word.length() && (current = current.target(word.charAt(prefix.size() - 1))) != null) {
+            prefix.add(current);
+        }
+
+        final int prefixLength = prefix.size() - 1;
+        if (prefixLength == word.length() && prefix.get(prefixLength).isFinal) return false;
+
+        int confluence = 1;
+        while (confluence <= prefixLength && prefix.get(confluence).inDegree == 1) confluence++;
+        for (int i = 1; i < confluence; i++) unregister(prefix.get(i));
+
+        // the new suffix from its end
+        Node suffix = null;
+        if (prefixLength < word.length()) {
+            suffix = newNode();
+            suffix.isFinal = true;
+            suffix = replaceOrRegister(suffix);
+
+            for (int i = word.length() - 1; i > prefixLength; i--) {
+                Node node = newNode();
+                setTransition(node, word.charAt(i), suffix);
+                suffix = replaceOrRegister(node);
+            }
+        }
+
+        Node node = (prefixLength >= confluence) ? copyOf(prefix.get(prefixLength)) : prefix.get(prefixLength);
+        if (suffix != null) setTransition(node, word.charAt(prefixLength), suffix);
+        else {
+            node.isFinal = true;
+            node.hash = 0;
+        }
+
+        for (int i = prefixLength; i > 0; i--) {
+            Node registered = replaceOrRegister(node);
+            Node parent = (i - 1 >= confluence) ? copyOf(prefix.get(i - 1)) : prefix.get(i - 1);
+            setTransition(parent, word.charAt(i - 1), registered);
+            node = parent;
+        }
+
+        return true;
+    }
+
+    // the states are numbered in breadth first order from the root, the last state is the dead sink
+    public DFA build() {
+        registerPending(0);
+
+        List<Node> nodes = new ArrayList<>();
+        Map<Node, Integer> indices = new IdentityHashMap<>();
+        TreeSet<Character> characters = new TreeSet<>();
+        nodes.add(root);
+        indices.put(root, 0);
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            for (int t = 0; t < node.size; t++) {
+                characters.add(node.labels[t]);
+                if (indices.putIfAbsent(node.targets[t], nodes.size()) == null) nodes.add(node.targets[t]);
+            }
+        }
+
+        List<String> alphabet = new ArrayList<>();
+        for (char c: characters) alphabet.add(String.valueOf(c));
+        final SymbolTable symbolTable = SymbolTable.of(alphabet);
+        // without symbols (no word or only the empty word) there is no transition that could lead to the sink
+        final int sink = nodes.size();
+        final int stateCount = (symbolTable.size() > 0) ? nodes.size() + 1 : nodes.size();
+
+        CompactAutomaton.Builder builder = new CompactAutomaton.Builder(stateCount, symbolTable);
+        int[] targets = new int[symbolTable.size()];
+        int[] sources = new int[symbolTable.size()];
+        int[] symbols = new int[symbolTable.size()];
+        for (int symbol = 0; symbol < symbols.length; symbol++) symbols[symbol] = symbol;
+
+        for (int q = 0; q < stateCount; q++) {
+            Arrays.fill(sources, q);
+            Arrays.fill(targets, sink);
+            if (q < sink) {
+                Node node = nodes.get(q);
+                for (int t = 0; t < node.size; t++) targets[symbolTable.idOf(node.labels[t])] = indices.get(node.targets[t]);
+                if (node.isFinal) builder.addFinalState(q);
+            }
+            builder.addTransitions(sources, symbols, targets, symbols.length);
+        }
+        if (sink < stateCount) builder.setStateName(sink, "dead");
+        builder.addInitialState(0);
+
+        return DFA.fromCompact(builder.build());
+    }
+
+    public static DFA fromWords(Iterable<? extends CharSequence> words) {
+        DawgBuilder builder = new DawgBuilder();
+        builder.addAll(words);
+        return builder.build();
+    }
+
+    // one word per line, the file is read as a stream
+    // a word that can't be added is thrown as IllegalArgumentException with its line like the errors of the Loader
+    public static DFA load(Path path) throws IOException {
+        DawgBuilder builder = new DawgBuilder();
+
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            int lineCount = 1;
+            for (String line = reader.readLine(); line != null; line = reader.readLine(), lineCount++) {
+                try {
+                    builder.add(line);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(String.format("Error while parsing line %d! %s", lineCount, e.getMessage()));
+                }
+            }
+        }
+
+        return builder.build();
+    }
+}
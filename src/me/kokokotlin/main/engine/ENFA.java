@@ -3,17 +3,33 @@ package me.kokokotlin.main.engine;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import me.kokokotlin.main.engine.metrics.Metrics;
+import me.kokokotlin.main.engine.trace.ExecutionTrace;
 import me.kokokotlin.main.engine.regex.RegexStack;
 import me.kokokotlin.main.engine.regex.RegexState;
 import me.kokokotlin.main.engine.regex.SymbolFrequency;
+import me.kokokotlin.main.engine.regex.Type;
 
 public class ENFA extends AutomatonBase {
 
     private boolean hasEpsilons = false;
 
     public ENFA(List<State> states, List<State> initialStates, List<State> finalStates, List<String> alphabet, boolean hasEpsilons) {
-        super(states, initialStates, finalStates, alphabet);
+        this(states, initialStates, finalStates, SymbolTable.of(alphabet), hasEpsilons);
+    }
+
+    public ENFA(List<State> states, List<State> initialStates, List<State> finalStates, SymbolTable symbolTable, boolean hasEpsilons) {
+        super(states, initialStates, finalStates, symbolTable);
         this.hasEpsilons = hasEpsilons;
+        if (Metrics.ENABLED) Metrics.recordAutomaton(this);
+    }
+
+    public static ENFA fromCompact(CompactAutomaton compact) {
+        List<State> states = compact.toStates();
+        ENFA eNFA = new ENFA(states, compact.selectStates(states, compact.getInitialStates()),
+                compact.selectStates(states, compact.getFinalStates()), compact.getSymbolTable(), compact.hasEpsilons());
+        eNFA.compact = compact;
+        return eNFA;
     }
 
     public List<Integer> getEpsilonClojureIdx(List<Integer> stateIndices) {
@@ -77,9 +93,23 @@ public class ENFA extends AutomatonBase {
         nfaState.put(symbol, transition);
     }
 
+    private static void addTransition(List<Symbol> symbols, Map<Symbol, List<Integer>> nfaState, Integer destStateIndex) {
+        for (Symbol symbol: symbols) addTransition(symbol, nfaState, destStateIndex);
+    }
+
+    // the wildcard is a transition for every symbol of the table, the table contains OTHER for the remaining characters
+    private static List<Symbol> symbolsOf(RegexState s, SymbolTable symbolTable) {
+        if (s.type != Type.WILDCARD) return List.of(s.toSymbol(symbolTable));
+
+        List<Symbol> symbols = new ArrayList<>(symbolTable.size());
+        for (int id = 0; id < symbolTable.size(); id++) symbols.add(symbolTable.symbol(id));
+        return symbols;
+    }
+
     public static ENFA fromRegex(String regex) {
         RegexStack stack = new RegexStack(regex);
-        List<String> alphabet = stack.getAlphabet();
+        SymbolTable symbolTable = stack.getSymbolTable();
+        List<String> alphabet = symbolTable.getAlphabet();
 
         // starting state is implicitly defined as the first state in the list
         // final state is implicitly defined as the first state in the list
@@ -93,7 +123,7 @@ public class ENFA extends AutomatonBase {
         while (!stack.getStack().isEmpty()) {
             if (currentNFAState == null) currentNFAState = new HashMap<>();
             RegexState s = stack.getStack().pollLast();
-            Symbol symbol = s.toSymbol();
+            List<Symbol> symbols = symbolsOf(s, symbolTable);
 
             // add empty transition to state itself
             addTransition(Symbol.epsilon(), currentNFAState, stateCount);
@@ -101,14 +131,14 @@ public class ENFA extends AutomatonBase {
             switch (s.frequency) {
                 case EXACTLY_ONE -> {
                     // add a transition to the next state
-                    addTransition(symbol, currentNFAState, ++stateCount);
+                    addTransition(symbols, currentNFAState, ++stateCount);
                     transitions.add(currentNFAState);
                     currentNFAState = null;
                 }
 
                 case NONE_OR_MORE -> {
                     // add transition to state itself
-                    addTransition(symbol, currentNFAState, stateCount);
+                    addTransition(symbols, currentNFAState, stateCount);
 
                     RegexState nextState = stack.getStack().peekLast();
                     if (nextState != null && nextState.frequency == SymbolFrequency.NONE_OR_MORE) {
@@ -125,7 +155,7 @@ public class ENFA extends AutomatonBase {
                     // add an epsilon transition and a constant transition to the next state
                     stateCount++;
                     addTransition(Symbol.epsilon(), currentNFAState, stateCount);
-                    addTransition(symbol, currentNFAState, stateCount);
+                    addTransition(symbols, currentNFAState, stateCount);
                     transitions.add(currentNFAState);
 
                     currentNFAState = null;
@@ -150,7 +180,7 @@ public class ENFA extends AutomatonBase {
 
         // convert the transition table to a list of states
         for (int i = 0; i < transitions.size(); i++) {
-            states.add(new State(String.valueOf(i), alphabet, true));
+            states.add(new State(String.valueOf(i), alphabet));
         }
 
         for (int i = 0; i < transitions.size(); i++) {
@@ -162,27 +192,100 @@ public class ENFA extends AutomatonBase {
             }
         }
 
-        return new ENFA(states, List.of(states.get(0)), List.of(states.get(states.size() - 1)), alphabet, hasEpsilons);
+        return new ENFA(states, List.of(states.get(0)), List.of(states.get(states.size() - 1)), symbolTable, hasEpsilons);
     }
 
     // idea: like nfa only that after the transition the next states will be the epsilon clojure of the current states
-    // and also you have to check that after the last iteration the state is contained in the epsilon clojure of final states
     // and you start the algorithm with the epsilon clojure of the initial states
+    // the word is accepted if the (closed) set of current states contains a final state
     @Override
     public boolean match(String word) {
-        List<State> currentStates = getEpsilonClojure(getInitialStates());
+        final long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+        final CompactAutomaton compact = toCompact();
+        final int[] closureStack = new int[compact.getStateCount()];
+
+        BitSet currentStates = new BitSet(compact.getStateCount());
+        BitSet nextStates = new BitSet(compact.getStateCount());
+        for (int q: compact.getInitialStates()) currentStates.set(q);
+        compact.epsilonClosure(currentStates, closureStack);
+        if (ExecutionTrace.ENABLED && tracer != null) {
+            tracer.beginMatch();
+            tracer.record(ExecutionTrace.INITIAL_POSITION, '\0', currentStates);
+        }
         
-        for (String symbol: word.split("")) {
-            currentStates = getEpsilonClojure(makeTransition(currentStates, new Symbol(symbol)));
+        // stop as soon as no state can reach a final state anymore or a state accepts every continuation
+        int i = 0;
+        for (; i < word.length() && !compact.isDead(currentStates) && !compact.isAbsorbing(currentStates); i++) {
+            char c = word.charAt(i);
+            int symbol = symbolTable.idOf(c);
+
+            nextStates.clear();
+            if (symbol != SymbolTable.UNKNOWN) compact.step(currentStates, symbol, nextStates);
+            compact.epsilonClosure(nextStates, closureStack);
+
+            BitSet tmp = currentStates;
+            currentStates = nextStates;
+            nextStates = tmp;
+
+            if (ExecutionTrace.ENABLED && tracer != null) tracer.record(i, c, currentStates);
+            if (Metrics.ENABLED) Metrics.recordActiveStates(this, currentStates.cardinality());
+        }
+
+        // the rest of the word only has to consist of symbols of the alphabet after an absorbing state
+        boolean accepted = compact.isAbsorbing(currentStates)
+                ? symbolTable.firstUnknown(word, i) == word.length()
+                : compact.containsFinal(currentStates);
+        if (Metrics.ENABLED) Metrics.recordMatch(this, System.nanoTime() - start, word.length(), accepted);
+
+        return accepted;
+    }
+
+    @Override
+    public int longestMatch(CharSequence text, int from) {
+        final CompactAutomaton compact = toCompact();
+        final int[] closureStack = new int[compact.getStateCount()];
+
+        BitSet currentStates = new BitSet(compact.getStateCount());
+        BitSet nextStates = new BitSet(compact.getStateCount());
+        for (int q: compact.getInitialStates()) currentStates.set(q);
+        compact.epsilonClosure(currentStates, closureStack);
+        int longest = compact.containsFinal(currentStates) ? 0 : -1;
+
+        for (int i = from; i < text.length() && !compact.isDead(currentStates); i++) {
+            if (compact.isAbsorbing(currentStates)) return symbolTable.firstUnknown(text, i) - from;
+
+            int symbol = symbolTable.idOf(text.charAt(i));
+            if (symbol == SymbolTable.UNKNOWN) break;
+
+            nextStates.clear();
+            compact.step(currentStates, symbol, nextStates);
+            compact.epsilonClosure(nextStates, closureStack);
+
+            BitSet tmp = currentStates;
+            currentStates = nextStates;
+            nextStates = tmp;
+
+            if (compact.containsFinal(currentStates)) longest = i - from + 1;
         }
 
-        final List<State> finalEpsilonClojure = getEpsilonClojure(getFinalStates());
-        return currentStates.stream().anyMatch(s -> finalEpsilonClojure.contains(s));
+        return longest;
+    }
+
+    @Override
+    public ENFA trim() {
+        CompactAutomaton trimmed = toCompact().trim();
+        return (trimmed == compact) ? this : fromCompact(trimmed);
+    }
+
+    @Override
+    public ENFA reduce() {
+        CompactAutomaton reduced = toCompact().reduce();
+        return (reduced == compact) ? this : fromCompact(reduced);
     }
 
     @Override
     public DFA toDFA() {
-        return NFA.constructFromENFA(this).toDFA();
+        return DFA.constructDFA(this);
     }
 
     @Override
@@ -0,0 +1,262 @@
+package me.kokokotlin.main.engine;
+
+import me.kokokotlin.main.engine.regex.RegexStack;
+import me.kokokotlin.main.engine.regex.RegexState;
+import me.kokokotlin.main.engine.regex.ShiftAndMatcher;
+import me.kokokotlin.main.engine.regex.SymbolFrequency;
+import me.kokokotlin.main.engine.regex.Type;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// chooses the engine that matches the input of an automaton or a regex the fastest
+// the engines:
+//   DENSE_DFA      the full subset construction, one table lookup per character
+//   MINIMAL_DFA    the dense dfa minimized, worth it if the table doesn't fit into the cache
+//   LAZY_DFA       the subset construction on demand (LazyDFA), only the subsets the input visits are built
+//   BIT_PARALLEL   no construction: the bitset simulation of the automaton (the ShiftAndMatcher for a regex)
+// the cost model counts table lookups: building one dfa state costs about two simulation steps per symbol (the step and
+// the hash of the subset), so the full dfa only pays off if it has at most (expected input length / (2 * alphabet size))
+// states, the simulation of the input would be cheaper than its construction. whether it has is found out by the subset
+// construction itself, aborted after that many states (DFA.tryConstructDFA). the probe merges bisimilar states first
+// only if that costs at most half of the construction budget, so an aborted probe costs at most one and a half times
+// the table lookups of simulating the input (plus building the automaton, which is linear in its size). the lazy dfa
+// that may be chosen afterwards reduces the automaton completely, O(transitions * log(states)) per pass
+// the cost of a simulation step depends on the shape of the automaton
+// (number of states, nondeterminism, epsilon density), see Shape.simulationStep
+// bytecode generation isn't an engine: the jdk has no public api to generate classes without an additional library
+// the decision and its reason are kept in the plan, an override skips the cost model
+public class EnginePlanner {
+    public enum Engine {
+        DENSE_DFA("dense"),
+        MINIMAL_DFA("minimal"),
+        LAZY_DFA("lazy"),
+        BIT_PARALLEL("bit-parallel");
+
+        private final String optionName;
+
+        Engine(String optionName) {
+            this.optionName = optionName;
+        }
+
+        public String getOptionName() {
+            return optionName;
+        }
+
+        public static Engine of(String name) {
+            for (Engine engine: values()) {
+                if (engine.optionName.equalsIgnoreCase(name)) return engine;
+            }
+
+            throw new IllegalArgumentException(String.format("Unknown engine %s! Expected dense, minimal, lazy or bit-parallel.", name));
+        }
+    }
+
+    public record Plan(Engine engine, Matcher matcher, String reason) {
+        @Override
+        public String toString() {
+            return String.format("%s (%s)", engine.getOptionName(), reason);
+        }
+    }
+
+    // the shape of the automaton the cost model looks at
+    public record Shape(int states, int transitions, int epsilonTransitions, int alphabetSize, double nondeterminism) {
+        static Shape of(CompactAutomaton compact) {
+            // transitions per (state, symbol) pair that has at least one, 1 for a deterministic automaton
+            int pairs = 0;
+            for (int q = 0; q < compact.getStateCount(); q++) {
+                for (int i = compact.transitionStart(q); i < compact.transitionEnd(q); i++) {
+                    if (i == compact.transitionStart(q) || compact.symbolAt(i) != compact.symbolAt(i - 1)) pairs++;
+                }
+            }
+
+            return new Shape(compact.getStateCount(), compact.getTransitionCount(), compact.getEpsilonTransitionCount(),
+                    compact.getSymbolTable().size(), (pairs == 0) ? 1.0 : (double) compact.getTransitionCount() / pairs);
+        }
+
+        // the shape of the epsilon-nfa that ENFA.fromRegex builds, without building it: the same steps over the elements
+        // of the regex, only the targets of every (state, symbol) pair are collected
+        static Shape of(RegexStack regex) {
+            final int symbolCount = regex.getSymbolTable().size();
+            List<List<Set<Integer>>> targets = new ArrayList<>();
+            List<Set<Integer>> epsilonTargets = new ArrayList<>();
+
+            int state = 0;
+            Iterator<RegexState> elements = regex.getStack().descendingIterator();
+            RegexState next = elements.hasNext() ? elements.next() : null;
+            while (next != null) {
+                RegexState element = next;
+                next = elements.hasNext() ? elements.next() : null;
+                while (targets.size() <= state + 1) {
+                    List<Set<Integer>> row = new ArrayList<>(symbolCount);
+                    for (int symbol = 0; symbol < symbolCount; symbol++) row.add(new HashSet<>());
+                    targets.add(row);
+                    epsilonTargets.add(new HashSet<>());
+                }
+
+                epsilonTargets.get(state).add(state);
+                int target = (element.frequency == SymbolFrequency.NONE_OR_MORE) ? state : state + 1;
+                if (element.type == Type.WILDCARD) {
+                    for (int symbol = 0; symbol < symbolCount; symbol++) targets.get(state).get(symbol).add(target);
+                } else {
+                    targets.get(state).get(regex.getSymbolTable().idOf(element.symbol)).add(target);
+                }
+
+                // a star followed by a star gets its own state, connected by an epsilon transition
+                boolean starChain = element.frequency == SymbolFrequency.NONE_OR_MORE && next != null && next.frequency == SymbolFrequency.NONE_OR_MORE;
+                if (element.frequency == SymbolFrequency.NONE_OR_ONE || starChain) epsilonTargets.get(state).add(state + 1);
+                if (element.frequency != SymbolFrequency.NONE_OR_MORE || starChain) state++;
+            }
+            if (epsilonTargets.size() <= state) epsilonTargets.add(new HashSet<>());
+            epsilonTargets.get(state).add(state);
+
+            int transitions = 0;
+            int pairs = 0;
+            for (List<Set<Integer>> row: targets) {
+                for (Set<Integer> pair: row) {
+                    transitions += pair.size();
+                    if (!pair.isEmpty()) pairs++;
+                }
+            }
+            int epsilonTransitions = epsilonTargets.stream().mapToInt(Set::size).sum();
+
+            return new Shape(state + 1, transitions, epsilonTransitions, symbolCount, (pairs == 0) ? 1.0 : (double) transitions / pairs);
+        }
+
+        public double epsilonDensity() {
+            return (states == 0) ? 0.0 : (double) epsilonTransitions / states;
+        }
+
+        public boolean isDeterministic(int initialStates) {
+            return initialStates <= 1 && epsilonTransitions == 0 && nondeterminism == 1.0;
+        }
+
+        // cost of one character of the bitset simulation in table lookups: the scans of the set (clear, dead check,
+        // final check) and the transitions of the active states, about nondeterminism * (1 + epsilon density) of them
+        // per state
+        double simulationStep() {
+            int words = (states + Long.SIZE - 1) / Long.SIZE;
+            return 3.0 * words + nondeterminism * (1.0 + epsilonDensity());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d states, %d transitions, %d epsilon transitions, %d symbols, nondeterminism %.2f, epsilon density %.2f",
+                    states, transitions, epsilonTransitions, alphabetSize, nondeterminism, epsilonDensity());
+        }
+    }
+
+    // used if the length of the input is not known in advance, e.g. for interactive input or a server
+    public static final long UNKNOWN_INPUT_LENGTH = -1;
+    public static final long DEFAULT_INPUT_LENGTH = 1L << 20;
+
+    // a table of more entries (4 bytes each) doesn't fit into a typical L2 cache
+    static final int CACHE_TABLE_ENTRIES = 1 << 18;
+    // larger dfas are matched lazily, the subset construction would need too much memory
+    static final int MAX_DENSE_STATES = 1 << 16;
+
+    private final long expectedInputLength;
+    private final Engine override;
+
+    public EnginePlanner(long expectedInputLength) {
+        this(expectedInputLength, null);
+    }
+
+    // override is null if the cost model decides
+    public EnginePlanner(long expectedInputLength, Engine override) {
+        this.expectedInputLength = (expectedInputLength < 0) ? DEFAULT_INPUT_LENGTH : expectedInputLength;
+        this.override = override;
+    }
+
+    public long getExpectedInputLength() {
+        return expectedInputLength;
+    }
+
+    public Plan plan(AutomatonBase automaton) {
+        final CompactAutomaton compact = automaton.toCompact();
+        final Shape shape = Shape.of(compact);
+
+        if (override != null) return forced(() -> automaton, null, shape);
+
+        if (automaton instanceof DFA dfa) return planTable(dfa, "the automaton is deterministic", shape);
+        if (shape.isDeterministic(compact.getInitialStates().length)) {
+            return planTable(automaton.toDFA(), "the automaton is deterministic, the dfa has the same states", shape);
+        }
+
+        return planNondeterministic(() -> automaton, null, shape.simulationStep(), shape);
+    }
+
+    // the simulation of a regex is the ShiftAndMatcher, it doesn't need the epsilon-nfa
+    // the shape is derived from the regex, the epsilon-nfa is only built (once) if the subset construction is tried or
+    // the plan needs it
+    public Plan plan(String regex) {
+        final RegexStack stack = new RegexStack(regex);
+        final Shape shape = Shape.of(stack);
+        final ENFA[] built = new ENFA[1];
+        final Supplier<AutomatonBase> eNFA = () -> (built[0] != null) ? built[0] : (built[0] = ENFA.fromRegex(regex));
+
+        if (override != null) return forced(eNFA, stack, shape);
+
+        // one word of shifts and masks per 64 elements, about as much as two table lookups
+        int words = stack.getStack().size() / Long.SIZE + 1;
+        return planNondeterministic(eNFA, stack, 2.0 * words, shape);
+    }
+
+    // a lazy dfa pays for every subset it visits with about two simulation steps as well, every further visit costs one
+    // lookup. if the input visits at most as many subsets as the cache holds:
+    //   lazy = length + 2 * step * cached states < length * step = simulation
+    private Plan planNondeterministic(Supplier<AutomatonBase> automaton, RegexStack regex, double simulationStep, Shape shape) {
+        final long budget = Math.min(MAX_DENSE_STATES, expectedInputLength / (2L * Math.max(1, shape.alphabetSize)));
+
+        if (budget < 2) {
+            return bitParallel(automaton, regex, String.format("an input of %d characters doesn't pay for the construction of dfa states, %s",
+                    expectedInputLength, shape));
+        }
+
+        DFA dfa = DFA.tryConstructDFA(automaton.get(), (int) budget);
+        if (dfa != null) {
+            return planTable(dfa, String.format("the dfa has %d states, at most %d pay off", dfa.getStateCount(), budget), shape);
+        }
+
+        double lazyCost = expectedInputLength + 2.0 * simulationStep * LazyDFA.DEFAULT_MAX_STATES;
+        if (lazyCost < expectedInputLength * simulationStep) {
+            return new Plan(Engine.LAZY_DFA, new LazyDFA(automaton.get()), String.format(
+                    "the dfa has more than %d states, a simulation step costs %.1f lookups, the visited subsets are cached, %s",
+                    budget, simulationStep, shape));
+        }
+
+        return bitParallel(automaton, regex, String.format("the dfa has more than %d states, a simulation step costs only %.1f lookups, %s",
+                budget, simulationStep, shape));
+    }
+
+    private Plan bitParallel(Supplier<AutomatonBase> automaton, RegexStack regex, String reason) {
+        Matcher matcher = (regex != null) ? ShiftAndMatcher.compile(regex) : automaton.get();
+        return new Plan(Engine.BIT_PARALLEL, matcher, reason);
+    }
+
+    // minimization only makes the steps faster if the table shrinks into the cache,
+    // it costs a few passes over the table, so the input has to be longer than the table
+    private Plan planTable(DFA dfa, String reason, Shape shape) {
+        long entries = (long) dfa.getStateCount() * Math.max(1, shape.alphabetSize);
+        if (entries > CACHE_TABLE_ENTRIES && expectedInputLength >= entries) {
+            return new Plan(Engine.MINIMAL_DFA, dfa.minimize(), String.format("%s, the table of %d entries doesn't fit into the cache", reason, entries));
+        }
+
+        return new Plan(Engine.DENSE_DFA, dfa, String.format("%s, %s", reason, shape));
+    }
+
+    private Plan forced(Supplier<AutomatonBase> automaton, RegexStack regex, Shape shape) {
+        final String reason = String.format("chosen by override, %s", shape);
+
+        return switch (override) {
+            case DENSE_DFA -> new Plan(override, automaton.get().toDFA(), reason);
+            case MINIMAL_DFA -> new Plan(override, automaton.get().toDFA().minimize(), reason);
+            case LAZY_DFA -> new Plan(override, new LazyDFA(automaton.get()), reason);
+            case BIT_PARALLEL -> bitParallel(() -> (automaton.get() instanceof DFA dfa) ? dfa.toNFA() : automaton.get(), regex, reason);
+        };
+    }
+}
@@ -0,0 +1,264 @@
+package me.kokokotlin.main.engine;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// statistics of the language of a DFA, computed by dynamic programming over its transition table
+// counts[l][q] is the number of words of length l that lead from state q into an accepting state:
+//   counts[0][q] = 1 if q is accepting, otherwise 0
+//   counts[l][q] = sum of weight(a) * counts[l - 1][next(q, a)] over all symbols a
+// the number of accepted words of length l is counts[l][initial state], one length costs O(states * symbols)
+// the words are words of chars: a symbol has the weight 1, OTHER (the wildcard of a regex) has the number of chars it
+// stands for (every char without a symbol of its own), so .* has 65536^l words of length l
+public class LanguageStatistics {
+    // above this many states the matrix power needs too much memory, the dynamic programming is used instead
+    private static final int MAX_MATRIX_STATES = 512;
+
+    private final DFA dfa;
+    private final int stateCount;
+    private final int symbolCount;
+    // number of chars every symbol stands for
+    private final int[] weights;
+    private final BigInteger[] bigWeights;
+    private final int otherId;
+    // the text of every symbol in the shortest witness, OTHER is written as a character that is not in the alphabet
+    private final String[] symbolTexts;
+
+    public LanguageStatistics(DFA dfa) {
+        this.dfa = dfa;
+        this.stateCount = dfa.getStates().size();
+        this.symbolCount = dfa.getSymbolTable().size();
+
+        SymbolTable symbolTable = dfa.getSymbolTable();
+        this.otherId = symbolTable.idOf(SymbolTable.OTHER);
+        this.weights = new int[symbolCount];
+        this.bigWeights = new BigInteger[symbolCount];
+        this.symbolTexts = new String[symbolCount];
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            weights[symbol] = (symbol == otherId) ? symbolTable.otherCharacterCount() : 1;
+            bigWeights[symbol] = BigInteger.valueOf(weights[symbol]);
+            symbolTexts[symbol] = (symbol == otherId)
+                    ? String.valueOf(symbolTable.otherCharacter()) : symbolTable.symbol(symbol).getSymbol();
+        }
+    }
+
+    private BigInteger[] initialCounts() {
+        BigInteger[] counts = new BigInteger[stateCount];
+        for (int q = 0; q < stateCount; q++) counts[q] = dfa.isAccepting(q) ? BigInteger.ONE : BigInteger.ZERO;
+
+        return counts;
+    }
+
+    private BigInteger[] nextCounts(BigInteger[] counts) {
+        BigInteger[] next = new BigInteger[stateCount];
+        for (int q = 0; q < stateCount; q++) {
+            BigInteger sum = BigInteger.ZERO;
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                BigInteger count = counts[dfa.next(q, symbol)];
+                sum = sum.add((weights[symbol] == 1) ? count : count.multiply(bigWeights[symbol]));
+            }
+            next[q] = sum;
+        }
+
+        return next;
+    }
+
+    private static void checkLength(long length) {
+        if (length < 0) throw new IllegalArgumentException("The word length can't be negative!");
+    }
+
+    public BigInteger countAccepted(int length) {
+        checkLength(length);
+
+        BigInteger[] counts = initialCounts();
+        for (int l = 0; l < length; l++) counts = nextCounts(counts);
+
+        return counts[dfa.getInitialStateIndex()];
+    }
+
+    // the number of accepted words for every length from 0 to maxLength
+    public List<BigInteger> countAcceptedUpTo(int maxLength) {
+        checkLength(maxLength);
+
+        List<BigInteger> result = new ArrayList<>(maxLength + 1);
+        BigInteger[] counts = initialCounts();
+        result.add(counts[dfa.getInitialStateIndex()]);
+        for (int l = 0; l < maxLength; l++) {
+            counts = nextCounts(counts);
+            result.add(counts[dfa.getInitialStateIndex()]);
+        }
+
+        return result;
+    }
+
+    // number of accepted words modulo the modulus, for lengths where the exact count gets too large
+    // small automata use the power of the transition count matrix (O(states^3 * log(length))),
+    // larger ones the dynamic programming (O(length * states * symbols))
+    // the modulus is at most Integer.MAX_VALUE, so that every product fits into a long
+    public long countAcceptedModulo(long length, int modulus) {
+        checkLength(length);
+        if (modulus < 1) throw new IllegalArgumentException("The modulus has to be positive!");
+
+        if (stateCount <= MAX_MATRIX_STATES && length > stateCount) return countByMatrixPower(length, modulus);
+
+        long[] counts = new long[stateCount];
+        for (int q = 0; q < stateCount; q++) counts[q] = dfa.isAccepting(q) ? 1 % modulus : 0;
+        long[] next = new long[stateCount];
+        for (long l = 0; l < length; l++) {
+            for (int q = 0; q < stateCount; q++) {
+                long sum = 0;
+                for (int symbol = 0; symbol < symbolCount; symbol++) {
+                    sum = (sum + counts[dfa.next(q, symbol)] * (weights[symbol] % modulus)) % modulus;
+                }
+                next[q] = sum;
+            }
+
+            long[] tmp = counts;
+            counts = next;
+            next = tmp;
+        }
+
+        return counts[dfa.getInitialStateIndex()];
+    }
+
+    // matrix[p][q] is the number of chars that lead from p to q, matrix^length counts the paths of that length
+    private long countByMatrixPower(long length, int modulus) {
+        long[][] matrix = new long[stateCount][stateCount];
+        for (int q = 0; q < stateCount; q++) {
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int dest = dfa.next(q, symbol);
+                matrix[q][dest] = (matrix[q][dest] + weights[symbol]) % modulus;
+            }
+        }
+
+        // only the row of the initial state is needed, so the vector is multiplied with the squared matrices
+        long[] row = new long[stateCount];
+        row[dfa.getInitialStateIndex()] = 1 % modulus;
+        for (long remaining = length; remaining > 0; remaining >>= 1) {
+            if ((remaining & 1) == 1) row = multiply(row, matrix, modulus);
+            if (remaining > 1) matrix = multiply(matrix, matrix, modulus);
+        }
+
+        long count = 0;
+        for (int q = 0; q < stateCount; q++) {
+            if (dfa.isAccepting(q)) count = (count + row[q]) % modulus;
+        }
+
+        return count;
+    }
+
+    private long[] multiply(long[] row, long[][] matrix, int modulus) {
+        long[] result = new long[stateCount];
+        for (int p = 0; p < stateCount; p++) {
+            if (row[p] == 0) continue;
+            for (int q = 0; q < stateCount; q++) result[q] = (result[q] + row[p] * matrix[p][q]) % modulus;
+        }
+
+        return result;
+    }
+
+    private long[][] multiply(long[][] a, long[][] b, int modulus) {
+        long[][] result = new long[stateCount][];
+        for (int p = 0; p < stateCount; p++) result[p] = multiply(a[p], b, modulus);
+
+        return result;
+    }
+
+    public String sample(int length, Random random) {
+        List<String> samples = sample(length, 1, random);
+        return samples.isEmpty() ? null : samples.get(0);
+    }
+
+    // uniformly distributed accepted words of the given length (drawn with replacement)
+    // every symbol is chosen with the probability weight(a) * counts[remaining - 1][next(q, a)] / counts[remaining][q],
+    // so every accepted word has the same probability. all chars of OTHER have the same continuations, one of them is
+    // chosen uniformly
+    // returns an empty list if no word of this length is accepted
+    public List<String> sample(int length, int count, Random random) {
+        checkLength(length);
+
+        BigInteger[][] counts = new BigInteger[length + 1][];
+        counts[0] = initialCounts();
+        for (int l = 1; l <= length; l++) counts[l] = nextCounts(counts[l - 1]);
+
+        final SymbolTable symbolTable = dfa.getSymbolTable();
+        List<String> samples = new ArrayList<>(count);
+        BigInteger total = counts[length][dfa.getInitialStateIndex()];
+        if (total.signum() == 0) return samples;
+
+        for (int i = 0; i < count; i++) {
+            StringBuilder word = new StringBuilder(length);
+            int state = dfa.getInitialStateIndex();
+            for (int remaining = length; remaining > 0; remaining--) {
+                BigInteger choice = uniform(counts[remaining][state], random);
+                for (int symbol = 0; symbol < symbolCount; symbol++) {
+                    int dest = dfa.next(state, symbol);
+                    BigInteger continuations = counts[remaining - 1][dest];
+                    BigInteger words = (weights[symbol] == 1) ? continuations : continuations.multiply(bigWeights[symbol]);
+                    if (choice.compareTo(words) < 0) {
+                        if (symbol != otherId) word.append(symbolTexts[symbol]);
+                        else word.append(symbolTable.otherCharacter(choice.divide(continuations).intValue()));
+                        state = dest;
+                        break;
+                    }
+                    choice = choice.subtract(words);
+                }
+            }
+            samples.add(word.toString());
+        }
+
+        return samples;
+    }
+
+    // uniform number in [0, bound)
+    private static BigInteger uniform(BigInteger bound, Random random) {
+        BigInteger value;
+        do {
+            value = new BigInteger(bound.bitLength(), random);
+        } while (value.compareTo(bound) >= 0);
+
+        return value;
+    }
+
+    // one of the shortest accepted words (the smallest by symbol order), found by a breadth first search
+    // returns null if the language is empty
+    public String shortestWitness() {
+        int[] parents = new int[stateCount];
+        int[] parentSymbols = new int[stateCount];
+        Arrays.fill(parents, -1);
+
+        int[] queue = new int[stateCount];
+        int tail = 0;
+        int initial = dfa.getInitialStateIndex();
+        queue[tail++] = initial;
+        parents[initial] = initial;
+
+        for (int head = 0; head < tail; head++) {
+            int q = queue[head];
+            if (dfa.isAccepting(q)) {
+                List<String> symbols = new ArrayList<>();
+                for (int state = q; state != initial; state = parents[state]) {
+                    symbols.add(symbolTexts[parentSymbols[state]]);
+                }
+                Collections.reverse(symbols);
+
+                return String.join("", symbols);
+            }
+
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int dest = dfa.next(q, symbol);
+                if (parents[dest] == -1) {
+                    parents[dest] = q;
+                    parentSymbols[dest] = symbol;
+                    queue[tail++] = dest;
+                }
+            }
+        }
+
+        return null;
+    }
+}
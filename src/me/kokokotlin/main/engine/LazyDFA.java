@@ -0,0 +1,153 @@
+package me.kokokotlin.main.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// the subset construction on demand: a dfa state (a set of nfa states closed under epsilon transitions) and a transition
+// are only created when the input reaches them, the following reads of the same transition are one table lookup
+// useful if the full dfa would be too large, the input only visits a small part of it
+// at most maxStates subsets are cached, if the cache is full it is flushed and filled again from the current subset
+// the cache is shared by all matches, so match and longestMatch are synchronized
+public class LazyDFA implements Matcher {
+    public static final int DEFAULT_MAX_STATES = 1 << 14;
+
+    private static final int NOT_BUILT = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final CompactAutomaton compact;
+    private final SymbolTable symbolTable;
+    private final int symbolCount;
+    private final int maxStates;
+    private final BitSet initialSubset;
+    private final int[] closureStack;
+
+    private final List<BitSet> subsets = new ArrayList<>();
+    private final Map<BitSet, Integer> subsetIndices = new HashMap<>();
+    // table[state * symbolCount + symbol] is the index of the next state or NOT_BUILT
+    private int[] table;
+    private int capacity;
+    private final BitSet accepting = new BitSet();
+    private final BitSet dead = new BitSet();
+    private int flushes = 0;
+
+    public LazyDFA(AutomatonBase automaton) {
+        this(automaton, DEFAULT_MAX_STATES);
+    }
+
+    public LazyDFA(AutomatonBase automaton, int maxStates) {
+        if (maxStates < 2) throw new IllegalArgumentException("A lazy DFA needs room for at least two states!");
+
+        this.compact = automaton.toCompact().reduce();
+        this.symbolTable = compact.getSymbolTable();
+        this.symbolCount = symbolTable.size();
+        this.maxStates = maxStates;
+        this.closureStack = new int[compact.getStateCount()];
+
+        initialSubset = new BitSet(compact.getStateCount());
+        for (int q: compact.getInitialStates()) initialSubset.set(q);
+        compact.epsilonClosure(initialSubset, closureStack);
+
+        capacity = Math.min(INITIAL_CAPACITY, maxStates);
+        table = new int[capacity * symbolCount];
+        add(initialSubset);
+    }
+
+    public int getMaxStates() {
+        return maxStates;
+    }
+
+    public synchronized int getCachedStateCount() {
+        return subsets.size();
+    }
+
+    // number of times the cache was full and had to be dropped
+    public synchronized int getFlushCount() {
+        return flushes;
+    }
+
+    private int add(BitSet subset) {
+        final int index = subsets.size();
+        subsets.add(subset);
+        subsetIndices.put(subset, index);
+
+        if (index == capacity) {
+            capacity = Math.min(2 * capacity, maxStates);
+            table = Arrays.copyOf(table, capacity * symbolCount);
+        }
+        Arrays.fill(table, index * symbolCount, (index + 1) * symbolCount, NOT_BUILT);
+
+        if (compact.containsFinal(subset)) accepting.set(index);
+        if (compact.isDead(subset)) dead.set(index);
+
+        return index;
+    }
+
+    // the initial subset is added again first, so it always has the index 0
+    private void flush() {
+        subsets.clear();
+        subsetIndices.clear();
+        accepting.clear();
+        dead.clear();
+        flushes++;
+
+        add(initialSubset);
+    }
+
+    private int next(int state, int symbol) {
+        final int transition = state * symbolCount + symbol;
+        if (table[transition] != NOT_BUILT) return table[transition];
+
+        BitSet reached = new BitSet(compact.getStateCount());
+        compact.step(subsets.get(state), symbol, reached);
+        compact.epsilonClosure(reached, closureStack);
+
+        Integer index = subsetIndices.get(reached);
+        if (index != null) {
+            table[transition] = index;
+            return index;
+        }
+
+        // after a flush the index of the current state is no longer valid, only the new state is kept
+        if (subsets.size() == maxStates) {
+            flush();
+            return add(reached);
+        }
+
+        int target = add(reached);
+        table[transition] = target;
+        return target;
+    }
+
+    @Override
+    public synchronized boolean match(String word) {
+        int state = 0;
+        for (int i = 0; i < word.length(); i++) {
+            if (dead.get(state)) return false;
+
+            int symbol = symbolTable.idOf(word.charAt(i));
+            if (symbol == SymbolTable.UNKNOWN) return false;
+            state = next(state, symbol);
+        }
+
+        return accepting.get(state);
+    }
+
+    @Override
+    public synchronized int longestMatch(CharSequence text, int from) {
+        int state = 0;
+        int longest = accepting.get(state) ? 0 : -1;
+        for (int i = from; i < text.length() && !dead.get(state); i++) {
+            int symbol = symbolTable.idOf(text.charAt(i));
+            if (symbol == SymbolTable.UNKNOWN) break;
+
+            state = next(state, symbol);
+            if (accepting.get(state)) longest = i - from + 1;
+        }
+
+        return longest;
+    }
+}
@@ -0,0 +1,353 @@
+package me.kokokotlin.main.engine;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// splits a text into tokens by maximal munch: at every position the longest prefix that one of the token automata
+// accepts becomes the next token, if several automata accept it the first one in the list wins
+// the automata are combined into one dfa: the union of the automata (over the union of their alphabets) is determinized,
+// a dfa state accepts the token of the first automaton that has a final state in its subset
+// one pass reads every character once, only the characters after the last accepting position are read again when the
+// scan fails. that lookahead is bounded by maxLookahead, so the backtracking and the buffer of a reader are bounded too
+// (a token that needs a longer run of characters without an accepting prefix is not found)
+// characters that start no token are reported as NO_TOKEN tokens, a run of them is one token
+public class Lexer {
+    public static final int NO_TOKEN = -1;
+    public static final int DEFAULT_MAX_LOOKAHEAD = 4096;
+
+    private static final int READ_SIZE = 8192;
+
+    // type is the index of the token automaton, offset and length refer to the text, no characters are copied
+    // the length is a long like the offset: a run of unmatched characters (or a long token) of a stream can be longer
+    // than an int
+    public record Token(int type, long offset, long length) {}
+
+    private final List<String> names;
+    private final SymbolTable symbolTable;
+    private final int symbolCount;
+    private final int maxLookahead;
+    // table[state * symbolCount + symbol] is the next state, the initial state is 0
+    private final int[] table;
+    // type of the token a state accepts, NO_TOKEN if it doesn't accept
+    private final int[] tokens;
+    // states from which no token can be accepted anymore
+    private final BitSet dead = new BitSet();
+
+    public Lexer(List<String> names, List<? extends AutomatonBase> automata) {
+        this(names, automata, DEFAULT_MAX_LOOKAHEAD);
+    }
+
+    public Lexer(List<String> names, List<? extends AutomatonBase> automata, int maxLookahead) {
+        if (names.size() != automata.size()) throw new IllegalArgumentException("Every token automaton needs a name!");
+        if (automata.isEmpty()) throw new IllegalArgumentException("A lexer needs at least one token automaton!");
+        if (maxLookahead < 1) throw new IllegalArgumentException("The lookahead of a lexer has to be positive!");
+
+        this.names = List.copyOf(names);
+        this.maxLookahead = maxLookahead;
+
+        List<CompactAutomaton> compacts = automata.stream().map(a -> a.toCompact().reduce()).toList();
+        this.symbolTable = unionSymbolTable(compacts);
+        this.symbolCount = symbolTable.size();
+
+        int[] offsets = new int[compacts.size() + 1];
+        for (int i = 0; i < compacts.size(); i++) offsets[i + 1] = offsets[i] + compacts.get(i).getStateCount();
+        CompactAutomaton union = union(compacts, offsets);
+
+        // the token of every final state of the union
+        int[] finalTokens = new int[union.getStateCount()];
+        Arrays.fill(finalTokens, NO_TOKEN);
+        for (int i = 0; i < compacts.size(); i++) {
+            BitSet finals = compacts.get(i).getFinalStates();
+            for (int q = finals.nextSetBit(0); q >= 0; q = finals.nextSetBit(q + 1)) finalTokens[offsets[i] + q] = i;
+        }
+
+        // the subset construction, closed under epsilon transitions like DFA.constructDFA(ENFA)
+        final int[] closureStack = new int[union.getStateCount()];
+        List<BitSet> subsets = new ArrayList<>();
+        Map<BitSet, Integer> subsetIndices = new HashMap<>();
+        BitSet initialSubset = new BitSet(union.getStateCount());
+        for (int q: union.getInitialStates()) initialSubset.set(q);
+        union.epsilonClosure(initialSubset, closureStack);
+        subsets.add(initialSubset);
+        subsetIndices.put(initialSubset, 0);
+
+        int[] transitions = new int[16 * Math.max(1, symbolCount)];
+        for (int current = 0; current < subsets.size(); current++) {
+            if (transitions.length < subsets.size() * symbolCount) transitions = Arrays.copyOf(transitions, 2 * subsets.size() * symbolCount);
+
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                BitSet reached = new BitSet(union.getStateCount());
+                union.step(subsets.get(current), symbol, reached);
+                union.epsilonClosure(reached, closureStack);
+
+                Integer index = subsetIndices.get(reached);
+                if (index == null) {
+                    index = subsets.size();
+                    subsets.add(reached);
+                    subsetIndices.put(reached, index);
+                }
+                transitions[current * symbolCount + symbol] = index;
+            }
+        }
+
+        this.table = Arrays.copyOf(transitions, subsets.size() * symbolCount);
+        this.tokens = new int[subsets.size()];
+        for (int s = 0; s < subsets.size(); s++) {
+            BitSet subset = subsets.get(s);
+            // the states of an automaton are contiguous, so the first final state of the subset belongs to the first token
+            int token = NO_TOKEN;
+            for (int q = subset.nextSetBit(0); q >= 0 && token == NO_TOKEN; q = subset.nextSetBit(q + 1)) token = finalTokens[q];
+            tokens[s] = token;
+            if (union.isDead(subset)) dead.set(s);
+        }
+    }
+
+    // every symbol of every automaton, OTHER if one of them has a wildcard
+    private static SymbolTable unionSymbolTable(List<CompactAutomaton> compacts) {
+        List<String> alphabet = new ArrayList<>();
+        for (CompactAutomaton compact: compacts) alphabet.addAll(compact.getAlphabet());
+
+        return SymbolTable.of(alphabet);
+    }
+
+    // the automata side by side, automaton i uses the states [offsets[i], offsets[i + 1])
+    // OTHER of an automaton are all characters that are not in its alphabet: the symbols of the other automata and OTHER
+    private CompactAutomaton union(List<CompactAutomaton> compacts, int[] offsets) {
+        CompactAutomaton.Builder builder = new CompactAutomaton.Builder(offsets[compacts.size()], symbolTable);
+
+        for (int i = 0; i < compacts.size(); i++) {
+            CompactAutomaton compact = compacts.get(i);
+            SymbolTable ownSymbols = compact.getSymbolTable();
+
+            int[][] symbolMap = new int[ownSymbols.size()][];
+            for (int id = 0; id < ownSymbols.size(); id++) {
+                String symbol = ownSymbols.getAlphabet().get(id);
+                if (!symbol.equals(SymbolTable.OTHER)) {
+                    symbolMap[id] = new int[] { symbolTable.idOf(symbol) };
+                    continue;
+                }
+
+                symbolMap[id] = symbolTable.getAlphabet().stream()
+                        .filter(s -> s.equals(SymbolTable.OTHER) || !ownSymbols.contains(s))
+                        .mapToInt(symbolTable::idOf).toArray();
+            }
+
+            for (int q = 0; q < compact.getStateCount(); q++) {
+                final int source = offsets[i] + q;
+                builder.setStateName(source, names.get(i) + ":" + compact.getStateName(q));
+
+                for (int t = compact.transitionStart(q); t < compact.transitionEnd(q); t++) {
+                    for (int symbol: symbolMap[compact.symbolAt(t)]) builder.addTransition(source, symbol, offsets[i] + compact.targetAt(t));
+                }
+                for (int t = compact.epsilonStart(q); t < compact.epsilonEnd(q); t++) {
+                    builder.addEpsilonTransition(source, offsets[i] + compact.epsilonTargetAt(t));
+                }
+                if (compact.isFinal(q)) builder.addFinalState(source);
+            }
+            for (int q: compact.getInitialStates()) builder.addInitialState(offsets[i] + q);
+        }
+
+        return builder.build();
+    }
+
+    // definitions are lines "<name> regex <regular expression>" or "<name> aut <path of a .aut file>" separated by single
+    // spaces, paths are relative to the definition file, the order of the lines is the priority of the tokens
+    // returns null and prints the error if a line or an automaton can't be loaded
+    public static Lexer load(Path path) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path);
+        } catch (IOException e) {
+            System.err.printf("Cant open file %s: %s!\n", path, e.getMessage());
+            return null;
+        }
+
+        List<String> names = new ArrayList<>();
+        List<AutomatonBase> automata = new ArrayList<>();
+        for (int lineCount = 1; lineCount <= lines.size(); lineCount++) {
+            String line = lines.get(lineCount - 1);
+            if (line.isBlank()) continue;
+
+            // the source is the rest of the line, so a regex can contain spaces
+            String[] definition = line.split(" ", 3);
+            if (definition.length != 3) {
+                System.err.printf("Error while parsing line %d! Not enough arguments. Expected 3 got %d!\n", lineCount, definition.length);
+                return null;
+            }
+
+            AutomatonBase automaton;
+            switch (definition[1]) {
+                case "regex" -> {
+                    try {
+                        automaton = ENFA.fromRegex(definition[2]);
+                    } catch (IllegalArgumentException e) {
+                        System.err.printf("Error while parsing line %d! %s\n", lineCount, e.getMessage());
+                        return null;
+                    }
+                }
+                case "aut" -> {
+                    Path source = (path.getParent() != null) ? path.getParent().resolve(definition[2]) : Path.of(definition[2]);
+                    automaton = Loader.loadFromFile(source);
+                    if (automaton == null) return null;
+                }
+                default -> {
+                    System.err.printf("Error while parsing line %d! Expected regex or aut, got %s.\n", lineCount, definition[1]);
+                    return null;
+                }
+            }
+
+            names.add(definition[0]);
+            automata.add(automaton);
+        }
+
+        if (automata.isEmpty()) {
+            System.err.printf("No tokens defined in %s!\n", path);
+            return null;
+        }
+
+        return new Lexer(names, automata);
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    public String nameOf(int type) {
+        return (type == NO_TOKEN) ? "<none>" : names.get(type);
+    }
+
+    public int getStateCount() {
+        return tokens.length;
+    }
+
+    public int getMaxLookahead() {
+        return maxLookahead;
+    }
+
+    // characters of the text by their absolute offset, characters before the last released offset aren't needed anymore
+    private interface Input {
+        // the character or -1 after the end of the text
+        int read(long offset) throws IOException;
+
+        void release(long offset);
+    }
+
+    public List<Token> tokenize(CharSequence text) {
+        List<Token> result = new ArrayList<>();
+        try {
+            tokenize(new Input() {
+                @Override
+                public int read(long offset) {
+                    return (offset < text.length()) ? text.charAt((int) offset) : -1;
+                }
+
+                @Override
+                public void release(long offset) {}
+            }, result::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return result;
+    }
+
+    // streams the tokens of the reader into the sink, the buffer only keeps the characters after the last accepting
+    // position of the current scan, at most maxLookahead characters plus one read
+    public void tokenize(Reader reader, Consumer<Token> sink) throws IOException {
+        tokenize(new Input() {
+            private char[] buffer = new char[READ_SIZE];
+            // buffer[0, length) are the characters at [base, base + length)
+            private long base = 0;
+            private int length = 0;
+            private long released = 0;
+            private boolean end = false;
+
+            @Override
+            public int read(long offset) throws IOException {
+                while (offset >= base + length && !end) {
+                    if (length == buffer.length) {
+                        compact();
+                        if (length == buffer.length) buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                    }
+
+                    int read = reader.read(buffer, length, buffer.length - length);
+                    if (read < 0) end = true;
+                    else length += read;
+                }
+
+                return (offset < base + length) ? buffer[(int) (offset - base)] : -1;
+            }
+
+            // the released characters are only dropped when the buffer is full, so every character is moved at most
+            // once per read
+            private void compact() {
+                int dropped = (int) Math.min(released - base, length);
+                if (dropped <= 0) return;
+
+                System.arraycopy(buffer, dropped, buffer, 0, length - dropped);
+                length -= dropped;
+                base += dropped;
+            }
+
+            @Override
+            public void release(long offset) {
+                released = Math.max(released, offset);
+            }
+        }, sink);
+    }
+
+    private void tokenize(Input input, Consumer<Token> sink) throws IOException {
+        long start = 0;
+        // start of the current run of characters that start no token, -1 if there is none
+        long unmatched = -1;
+
+        while (input.read(start) >= 0) {
+            int state = 0;
+            int token = NO_TOKEN;
+            long acceptEnd = start;
+
+            // the empty word is never a token, the scan stops in a dead state or after maxLookahead characters without
+            // an accepting state
+            for (long offset = start; offset - acceptEnd < maxLookahead && !dead.get(state); offset++) {
+                int c = input.read(offset);
+                if (c < 0) break;
+
+                int symbol = symbolTable.idOf((char) c);
+                if (symbol == SymbolTable.UNKNOWN) break;
+
+                state = table[state * symbolCount + symbol];
+                if (tokens[state] != NO_TOKEN) {
+                    token = tokens[state];
+                    acceptEnd = offset + 1;
+                    // the next scan starts here or later
+                    input.release(acceptEnd);
+                }
+            }
+
+            if (token == NO_TOKEN) {
+                if (unmatched < 0) unmatched = start;
+                start++;
+            } else {
+                if (unmatched >= 0) sink.accept(new Token(NO_TOKEN, unmatched, start - unmatched));
+                unmatched = -1;
+
+                sink.accept(new Token(token, start, acceptEnd - start));
+                start = acceptEnd;
+            }
+
+            input.release(start);
+        }
+
+        if (unmatched >= 0) sink.accept(new Token(NO_TOKEN, unmatched, start - unmatched));
+    }
+}
@@ -10,11 +10,18 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 
+// parses one .aut file, every load uses its own Loader, so files can be loaded concurrently
+// files of at least PARALLEL_THRESHOLD bytes are parsed in parallel by the ParallelLoader
+// word lists (.dict) are built into their minimal dfa by the DawgBuilder
 public class Loader {
-    private static boolean error = false;
-    private static boolean hasEpsilons = false;
+    public static final long PARALLEL_THRESHOLD = 64L << 20;
 
-    private static enum AutomatonType {
+    private boolean error = false;
+    // message of the first error, the load stops at it
+    private String errorMessage;
+    private boolean hasEpsilons = false;
+
+    enum AutomatonType {
         DFA,
         NFA,
         ENFA;
@@ -29,7 +36,7 @@ public class Loader {
         }
     } 
 
-    static private class Header {
+    static class Header {
         int stateCount = 0;
         int transitionCount = 0;
         List<Integer> initialStates = new ArrayList<>();
@@ -38,15 +45,23 @@ public class Loader {
         AutomatonType type;
     }
 
-    private static List<Integer> parseStates(String stateRepr) {
+    private void fail(String format, Object... args) {
+        if (!error) errorMessage = String.format(format, args).strip();
+        error = true;
+    }
+
+    String getErrorMessage() {
+        return errorMessage;
+    }
+
+    private List<Integer> parseStates(String stateRepr) {
         List<Integer> stateIdx = new ArrayList<>();
         
         for (String idx: stateRepr.replace("(", "").replace(")", "").replace(" ", "").split(",")) {
             try {
                 stateIdx.add(Integer.valueOf(idx));
             } catch (NumberFormatException e) {
-                System.err.printf("Error while parsing state indices in header! %s\n", e.getMessage());
-                error = true;
+                fail("Error while parsing state indices in header! %s", e.getMessage());
                 return null;
             }
         }
@@ -54,13 +69,12 @@ public class Loader {
         return stateIdx;
     }
 
-    private static Header parseHeader(String line) {
+    Header parseHeader(String line) {
         Header header = new Header();
 
         String[] data = line.split(" ");
         if (data.length < 6) {
-            System.err.printf("Error while parsing header! Not enough arguments. Expected 6 or more got %d!\n", data.length);
-            error = true;
+            fail("Error while parsing header! Not enough arguments. Expected 6 or more got %d!", data.length);
             return null;
         }
 
@@ -88,48 +102,42 @@ public class Loader {
 
             header.alphabet = data[current];
         } catch (IllegalArgumentException e) {
-            System.err.printf("Error while parsing header: %s!\n", e.getMessage());
-            error = true;
+            fail("Error while parsing header: %s!", e.getMessage());
             return null;
         } catch (IndexOutOfBoundsException e) {
-            System.err.println("Malformed header! Probably something is wrong with your paranthesis.");
-            error = true;
+            fail("Malformed header! Probably something is wrong with your paranthesis.");
             return null;
         }
 
         return header;
     }
 
-    private static String parseState(String line, int lineCount) {
+    private String parseState(String line, int lineCount) {
         String[] lineData = line.split(" ");
 
         if (lineData.length != 2) {
-            System.err.printf("Error while parsing line %d! Not enough arguments. Expected 2 got %d!\n", lineCount, lineData.length);
-            error = true;
+            fail("Error while parsing line %d! Not enough arguments. Expected 2 got %d!", lineCount, lineData.length);
             return null;
         }
 
         if (!lineData[0].equals("s")) {
-            System.err.printf("Error while parsing line %d! Expected state.\n", lineCount);
-            error = true;
+            fail("Error while parsing line %d! Expected state.", lineCount);
             return null;
         }
 
         return lineData[1];
     }
 
-    private static void parseTransition(String line, int lineCount, List<String> stateNames, List<State> states, Header header) {
+    private void parseTransition(String line, int lineCount, Map<String, State> statesByName, Header header, SymbolTable symbolTable) {
         String[] transitionData = line.split(" ");
 
         if (transitionData.length != 4) {
-            System.err.printf("Error while parsing line %d! Not enough arguments. Expected 4 got %d!\n", lineCount, transitionData.length);
-            error = true;
+            fail("Error while parsing line %d! Not enough arguments. Expected 4 got %d!", lineCount, transitionData.length);
             return;
         }
 
         if (!transitionData[0].equals("t")) {
-            System.err.printf("Error while parsing line %d! Expected transition.\n", lineCount);
-            error = true;
+            fail("Error while parsing line %d! Expected transition.", lineCount);
             return;
         }
 
@@ -138,34 +146,27 @@ public class Loader {
         String finalStateName = transitionData[2];
 
         if (symbol.length() != 1 && !symbol.equals("\"\"")) {
-            System.err.printf("Error while parsing line %d! Second argument has to be character! Got %s.\n", lineCount, transitionData[3]);
-            error = true;
+            fail("Error while parsing line %d! Second argument has to be character! Got %s.", lineCount, transitionData[3]);
             return;
         }
         
-        if (!stateNames.contains(startStateName)) {
-            System.err.printf("Error while parsing line %d! Starting state %s not defined!", lineCount, startStateName);
-            error = true;
+        if (!statesByName.containsKey(startStateName)) {
+            fail("Error while parsing line %d! Starting state %s not defined!", lineCount, startStateName);
             return;
         }
 
-        if (!stateNames.contains(finalStateName)) {
-            System.err.printf("Error while parsing line %d! Final state %s not defined!", lineCount, finalStateName);
-            error = true;
+        if (!statesByName.containsKey(finalStateName)) {
+            fail("Error while parsing line %d! Final state %s not defined!", lineCount, finalStateName);
             return;
         }
 
         if (!header.alphabet.contains(transitionData[3]) && !symbol.equals("\"\"")) {
-            System.err.printf("Error while parsing line %d! Symbol %s not in alphabet!", lineCount, transitionData[3]);
-            error = true;
+            fail("Error while parsing line %d! Symbol %s not in alphabet!", lineCount, transitionData[3]);
             return;
         }
 
-        Optional<State> startState = states.stream().filter(state -> state.getName().equals(startStateName)).findFirst();
-        Optional<State> finalState = states.stream().filter(state -> state.getName().equals(finalStateName)).findFirst();
-
-        if (startState.isEmpty() || finalState.isEmpty()) 
-            throw new IllegalStateException("Internal error!");
+        State startState = statesByName.get(startStateName);
+        State finalState = statesByName.get(finalStateName);
 
         if (symbol.equals("\"\"")) {
             if (header.type != AutomatonType.ENFA) 
@@ -174,43 +175,75 @@ public class Loader {
             symbol = Symbol.EPSILON;
             hasEpsilons = true;
         }
-        startState.get().addTransition(new Symbol(String.valueOf(symbol)), finalState.get());
+        startState.addTransition(symbolTable.intern(symbol), finalState);
     }
 
+    // prints the error to stderr and returns null if the file can't be loaded
     public static AutomatonBase loadFromFile(Path path) {
-        error = false;
+        try {
+            return loadOrThrow(path);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+
+    // throws an IllegalArgumentException with the error message instead of printing it, so that loads of several files
+    // at the same time (e.g. by the BatchCompiler) can report the error of every file separately
+    public static AutomatonBase loadOrThrow(Path path) {
+        try {
+            if (path.toString().endsWith(DawgBuilder.FILE_EXTENSION)) return DawgBuilder.load(path);
+            if (Files.size(path) >= PARALLEL_THRESHOLD) return ParallelLoader.getDefault().load(path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Cant open file %s: %s!", path, e.getMessage()));
+        }
 
+        Loader loader = new Loader();
+        AutomatonBase automaton = loader.load(path);
+        if (automaton == null) throw new IllegalArgumentException((loader.errorMessage != null) ? loader.errorMessage : String.format("Couldn't load %s!", path));
+
+        return automaton;
+    }
+
+    private AutomatonBase load(Path path) {
         BufferedReader bReader;
 
         try {
             bReader = Files.newBufferedReader(path);
         } catch (IOException e) {
-            System.err.printf("Cant open file %s: %s!\n", path, e.getMessage());
+            fail("Cant open file %s: %s!", path, e.getMessage());
             return null;
         }
 
         Header header = new Header();
         List<State> states = new ArrayList<>();
-        List<String> stateNames = new ArrayList<>();
-        try {
+        Map<String, State> statesByName = new HashMap<>();
+        List<String> alphabet = List.of();
+        SymbolTable symbolTable = SymbolTable.of(alphabet);
+        try (bReader) {
             int i = 0;
             for(String line = bReader.readLine(); line != null; line = bReader.readLine()) {
 
                 // parse the header
                 if (i == 0) header = parseHeader(line);
                 if(error) return null;
+                if (i == 0) {
+                    alphabet = Arrays.asList(header.alphabet.split(""));
+                    symbolTable = SymbolTable.of(alphabet);
+                }
 
                 // parse the states
                 if (i > 0 && (i - 1) < header.stateCount) {
                     String stateName = parseState(line, i);
-                    stateNames.add(stateName);
-                    states.add(new State(stateName, Arrays.asList(header.alphabet.split("")), header.type == AutomatonType.ENFA));
+                    State state = new State(stateName, alphabet);
+                    statesByName.putIfAbsent(stateName, state);
+                    states.add(state);
                 }
                 if (error) return null;
 
                 // parse the transitions
                 if (i > header.stateCount && (i - 1 - header.stateCount) < header.transitionCount) {
-                    parseTransition(line, i, stateNames, states, header);
+                    parseTransition(line, i, statesByName, header, symbolTable);
                 }
                 if (error) return null;
 
@@ -221,7 +254,7 @@ public class Loader {
             List<String> missing = states.stream().map(State::missingChars).collect(Collectors.toList());
             if (header.type == AutomatonType.DFA) {
                 if (missing.stream().anyMatch(s -> s.length() != 0)) {
-                    var notSaturated = Tuple.zip(states, missing).stream()
+                    var notSaturated = Tuple.zip(states.stream().map(State::getName).toList(), missing).stream()
                             .filter(t -> t.getSecond().length() != 0)
                             .collect(Collectors.toList());
 
@@ -250,22 +283,22 @@ public class Loader {
             }
 
             switch (header.type) {
-                case DFA:  return new DFA(states, initialStates, finalStates, Arrays.asList(header.alphabet.split("")));
-                case NFA:  return new NFA(states, initialStates, finalStates, Arrays.asList(header.alphabet.split("")));
-                case ENFA: return new ENFA(states, initialStates, finalStates, Arrays.asList(header.alphabet.split("")), hasEpsilons);
+                case DFA:  return new DFA(states, initialStates, finalStates, symbolTable);
+                case NFA:  return new NFA(states, initialStates, finalStates, symbolTable);
+                case ENFA: return new ENFA(states, initialStates, finalStates, symbolTable, hasEpsilons);
             }
         } catch (IOException e) {
-            System.err.println("Error while reading!");
+            fail("Error while reading %s: %s!", path, e.getMessage());
         }
 
         return null;
     }
 
-    private static String errorForNonSaturatedStates(List<Tuple<State, String>> notSaturated) {
+    static String errorForNonSaturatedStates(List<Tuple<String, String>> notSaturated) {
         StringBuilder errorMsg = new StringBuilder();
         for (int j = 0; j < notSaturated.size(); j++) {
             var data = notSaturated.get(j);
-            String stateName = data.getFirst().getName();
+            String stateName = data.getFirst();
             String missingStates = String.join(", ", data.getSecond().split(""));
 
             if (data.getSecond().length() == 1)
@@ -0,0 +1,35 @@
+package me.kokokotlin.main.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// everything that can decide if a word is in a language: the automata and the bit parallel regex matchers
+public interface Matcher {
+    boolean match(String word);
+
+    // length of the longest prefix of text[from..] that is accepted, -1 if no prefix (not even the empty one) is accepted
+    int longestMatch(CharSequence text, int from);
+
+    // accepted[i] is the result of match(words.get(i)), the automata read prefixes shared by several words only once
+    default boolean[] matchAll(List<String> words) {
+        return BatchMatcher.matchAll(this, words);
+    }
+
+    // leftmost longest non empty matches that don't overlap as pairs (start, length)
+    default List<int[]> search(CharSequence text) {
+        List<int[]> matches = new ArrayList<>();
+
+        int from = 0;
+        while (from < text.length()) {
+            int length = longestMatch(text, from);
+            if (length > 0) {
+                matches.add(new int[] { from, length });
+                from += length;
+            } else {
+                from++;
+            }
+        }
+
+        return matches;
+    }
+}
@@ -0,0 +1,424 @@
+package me.kokokotlin.main.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+// automaton that can be edited after its construction
+// the derived structures are updated with every edit and only in the part of the automaton that is affected by it:
+// - the transition table (one cell per edit), which is used for matching as long as the automaton is deterministic
+// - the set of reachable states (only the states whose reachability can change are visited)
+//   adding a transition visits only the newly reachable states. removing a transition from a reachable state (or an
+//   initial state) walks the forward region of its target twice, which is the whole reachable part in the worst case,
+//   e.g. for the transition that leads into a strongly connected automaton. a removal is O(reachable states +
+//   transitions) then, the same as recomputing the reachable set. removals from unreachable states, self loops and
+//   removals of transitions into initial states don't walk at all
+// - the cached epsilon closures (only the closures of states that can reach the changed transition are dropped)
+// the minimal DFA is cached until the next edit, it is built from the current snapshot
+// removed states keep their index, so indices that were handed out stay valid
+// the generator.EditSequenceChecker applies random edits and compares the derived structures with the ones of a snapshot
+public class MutableAutomaton {
+    public static final int EPSILON = -1;
+    public static final int NO_STATE = -1;
+    private static final int MULTIPLE_STATES = -2;
+
+    private final SymbolTable symbolTable;
+    private final int symbolCount;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Map<Integer, Set<Integer>>> outgoing = new ArrayList<>();
+    private final List<Map<Integer, Set<Integer>>> incoming = new ArrayList<>();
+    private final BitSet removed = new BitSet();
+    private final BitSet initialStates = new BitSet();
+    private final BitSet finalStates = new BitSet();
+
+    // table[state * symbolCount + symbol]: the only target, NO_STATE or MULTIPLE_STATES
+    private int[] table;
+    private int nondeterministicCells = 0;
+    private int missingCells = 0;
+    private int epsilonTransitions = 0;
+
+    private final BitSet reachable = new BitSet();
+    private final Map<Integer, BitSet> closures = new HashMap<>();
+    private DFA minimalDFA;
+
+    public MutableAutomaton(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+        this.symbolCount = symbolTable.size();
+        this.table = new int[16 * Math.max(1, symbolCount)];
+    }
+
+    public static MutableAutomaton of(AutomatonBase automaton) {
+        CompactAutomaton compact = automaton.toCompact();
+        MutableAutomaton mutable = new MutableAutomaton(compact.getSymbolTable());
+
+        for (int q = 0; q < compact.getStateCount(); q++) mutable.addState(compact.getStateName(q));
+        for (int q = 0; q < compact.getStateCount(); q++) {
+            for (int i = compact.transitionStart(q); i < compact.transitionEnd(q); i++) mutable.addTransition(q, compact.symbolAt(i), compact.targetAt(i));
+            for (int i = compact.epsilonStart(q); i < compact.epsilonEnd(q); i++) mutable.addTransition(q, EPSILON, compact.epsilonTargetAt(i));
+            if (compact.isFinal(q)) mutable.setFinal(q, true);
+        }
+        for (int q: compact.getInitialStates()) mutable.setInitial(q, true);
+
+        return mutable;
+    }
+
+    private void checkState(int state) {
+        if (state < 0 || state >= names.size() || removed.get(state))
+            throw new IllegalArgumentException(String.format("State %d doesn't exist!", state));
+    }
+
+    private int symbolId(String symbol) {
+        if (symbol.equals(Symbol.EPSILON)) return EPSILON;
+
+        int id = symbolTable.idOf(symbol);
+        if (id == SymbolTable.UNKNOWN) throw new IllegalArgumentException(String.format("Symbol %s is not in the alphabet!", symbol));
+
+        return id;
+    }
+
+    private void changed() {
+        minimalDFA = null;
+    }
+
+    public int addState(String name) {
+        int state = names.size();
+        names.add(name);
+        outgoing.add(new HashMap<>());
+        incoming.add(new HashMap<>());
+
+        if (table.length < (state + 1) * symbolCount) table = Arrays.copyOf(table, 2 * table.length);
+        Arrays.fill(table, state * symbolCount, (state + 1) * symbolCount, NO_STATE);
+        missingCells += symbolCount;
+
+        changed();
+        return state;
+    }
+
+    public void removeState(int state) {
+        checkState(state);
+
+        for (var entry: new ArrayList<>(outgoing.get(state).entrySet())) {
+            for (int target: new ArrayList<>(entry.getValue())) removeTransition(state, entry.getKey(), target);
+        }
+        for (var entry: new ArrayList<>(incoming.get(state).entrySet())) {
+            for (int source: new ArrayList<>(entry.getValue())) removeTransition(source, entry.getKey(), state);
+        }
+
+        setInitial(state, false);
+        finalStates.clear(state);
+        removed.set(state);
+        missingCells -= symbolCount;
+        changed();
+    }
+
+    public void setInitial(int state, boolean initial) {
+        checkState(state);
+        if (initialStates.get(state) == initial) return;
+
+        if (initial) {
+            initialStates.set(state);
+            markReachableFrom(state);
+        } else {
+            initialStates.clear(state);
+            unmarkReachableFrom(state);
+        }
+        changed();
+    }
+
+    public void setFinal(int state, boolean isFinal) {
+        checkState(state);
+        finalStates.set(state, isFinal);
+        changed();
+    }
+
+    public boolean addTransition(int source, String symbol, int target) {
+        return addTransition(source, symbolId(symbol), target);
+    }
+
+    public boolean removeTransition(int source, String symbol, int target) {
+        return removeTransition(source, symbolId(symbol), target);
+    }
+
+    // symbol is a symbol id of the symbol table or EPSILON
+    public boolean addTransition(int source, int symbol, int target) {
+        checkState(source);
+        checkState(target);
+        if (!outgoing.get(source).computeIfAbsent(symbol, k -> new HashSet<>()).add(target)) return false;
+        incoming.get(target).computeIfAbsent(symbol, k -> new HashSet<>()).add(source);
+
+        if (symbol == EPSILON) {
+            epsilonTransitions++;
+            invalidateClosures(source);
+        } else {
+            updateCell(source, symbol);
+        }
+
+        if (reachable.get(source)) markReachableFrom(target);
+        changed();
+        return true;
+    }
+
+    public boolean removeTransition(int source, int symbol, int target) {
+        checkState(source);
+        checkState(target);
+        Set<Integer> targets = outgoing.get(source).get(symbol);
+        if (targets == null || !targets.remove(target)) return false;
+        if (targets.isEmpty()) outgoing.get(source).remove(symbol);
+
+        Set<Integer> sources = incoming.get(target).get(symbol);
+        sources.remove(source);
+        if (sources.isEmpty()) incoming.get(target).remove(symbol);
+
+        if (symbol == EPSILON) {
+            epsilonTransitions--;
+            invalidateClosures(source);
+        } else {
+            updateCell(source, symbol);
+        }
+
+        if (source != target && reachable.get(source) && reachable.get(target)) unmarkReachableFrom(target);
+        changed();
+        return true;
+    }
+
+    private void updateCell(int state, int symbol) {
+        int cell = state * symbolCount + symbol;
+        int old = table[cell];
+        if (old == NO_STATE) missingCells--;
+        else if (old == MULTIPLE_STATES) nondeterministicCells--;
+
+        Set<Integer> targets = outgoing.get(state).getOrDefault(symbol, Set.of());
+        if (targets.isEmpty()) {
+            table[cell] = NO_STATE;
+            missingCells++;
+        } else if (targets.size() == 1) {
+            table[cell] = targets.iterator().next();
+        } else {
+            table[cell] = MULTIPLE_STATES;
+            nondeterministicCells++;
+        }
+    }
+
+    // the states that can reach the changed transition by epsilon transitions have a different closure now
+    private void invalidateClosures(int source) {
+        if (closures.isEmpty()) return;
+
+        BitSet affected = new BitSet();
+        Queue<Integer> queue = new ArrayDeque<>();
+        affected.set(source);
+        queue.add(source);
+
+        while (!queue.isEmpty()) {
+            int q = queue.poll();
+            closures.remove(q);
+            for (int pred: incoming.get(q).getOrDefault(EPSILON, Set.of())) {
+                if (!affected.get(pred)) {
+                    affected.set(pred);
+                    queue.add(pred);
+                }
+            }
+        }
+    }
+
+    // marks the states that become reachable through state, only the newly reachable states are visited
+    private void markReachableFrom(int state) {
+        if (reachable.get(state) || (!initialStates.get(state) && !hasReachablePredecessor(state, null))) return;
+
+        Queue<Integer> queue = new ArrayDeque<>();
+        reachable.set(state);
+        queue.add(state);
+        visitSuccessors(queue, reachable, null);
+    }
+
+    // a transition or initial state that made state reachable is gone
+    // only the states that were reachable through state can lose their reachability:
+    // they are unmarked and then marked again from the ones that still have a reachable predecessor outside of them
+    private void unmarkReachableFrom(int state) {
+        if (initialStates.get(state)) return;
+
+        BitSet region = new BitSet();
+        Queue<Integer> queue = new ArrayDeque<>();
+        region.set(state);
+        queue.add(state);
+        while (!queue.isEmpty()) {
+            int q = queue.poll();
+            for (Set<Integer> targets: outgoing.get(q).values()) {
+                for (int dest: targets) {
+                    if (reachable.get(dest) && !region.get(dest)) {
+                        region.set(dest);
+                        queue.add(dest);
+                    }
+                }
+            }
+        }
+
+        reachable.andNot(region);
+        for (int q = region.nextSetBit(0); q >= 0; q = region.nextSetBit(q + 1)) {
+            if (initialStates.get(q) || hasReachablePredecessor(q, region)) {
+                reachable.set(q);
+                queue.add(q);
+            }
+        }
+        visitSuccessors(queue, reachable, region);
+    }
+
+    private boolean hasReachablePredecessor(int state, BitSet excluded) {
+        for (Set<Integer> sources: incoming.get(state).values()) {
+            for (int source: sources) {
+                if (reachable.get(source) && (excluded == null || !excluded.get(source))) return true;
+            }
+        }
+
+        return false;
+    }
+
+    // breadth first search that marks every successor (inside of the region if one is given)
+    private void visitSuccessors(Queue<Integer> queue, BitSet marked, BitSet region) {
+        while (!queue.isEmpty()) {
+            int q = queue.poll();
+            for (Set<Integer> targets: outgoing.get(q).values()) {
+                for (int dest: targets) {
+                    if (!marked.get(dest) && (region == null || region.get(dest))) {
+                        marked.set(dest);
+                        queue.add(dest);
+                    }
+                }
+            }
+        }
+    }
+
+    public BitSet epsilonClosure(int state) {
+        checkState(state);
+
+        BitSet closure = closures.get(state);
+        if (closure != null) return (BitSet) closure.clone();
+
+        closure = new BitSet();
+        Queue<Integer> queue = new ArrayDeque<>();
+        closure.set(state);
+        queue.add(state);
+        while (!queue.isEmpty()) {
+            int q = queue.poll();
+            for (int dest: outgoing.get(q).getOrDefault(EPSILON, Set.of())) {
+                if (!closure.get(dest)) {
+                    closure.set(dest);
+                    queue.add(dest);
+                }
+            }
+        }
+
+        closures.put(state, closure);
+        return (BitSet) closure.clone();
+    }
+
+    public boolean isReachable(int state) {
+        return reachable.get(state);
+    }
+
+    public BitSet getReachableStates() {
+        return (BitSet) reachable.clone();
+    }
+
+    // deterministic: at most one transition per state and symbol, no epsilon transitions and one initial state
+    // missing transitions lead to a rejection
+    public boolean isDeterministic() {
+        return nondeterministicCells == 0 && epsilonTransitions == 0 && initialStates.cardinality() == 1;
+    }
+
+    public boolean isComplete() {
+        return missingCells == 0;
+    }
+
+    public boolean match(String word) {
+        if (isDeterministic()) {
+            int state = initialStates.nextSetBit(0);
+            for (int i = 0; i < word.length() && state != NO_STATE; i++) {
+                int symbol = symbolTable.idOf(word.charAt(i));
+                state = (symbol == SymbolTable.UNKNOWN) ? NO_STATE : table[state * symbolCount + symbol];
+            }
+
+            return state != NO_STATE && finalStates.get(state);
+        }
+
+        BitSet currentStates = closureOf(initialStates);
+        for (int i = 0; i < word.length() && !currentStates.isEmpty(); i++) {
+            int symbol = symbolTable.idOf(word.charAt(i));
+            BitSet nextStates = new BitSet();
+            if (symbol != SymbolTable.UNKNOWN) {
+                for (int q = currentStates.nextSetBit(0); q >= 0; q = currentStates.nextSetBit(q + 1)) {
+                    for (int dest: outgoing.get(q).getOrDefault(symbol, Set.of())) nextStates.set(dest);
+                }
+            }
+            currentStates = closureOf(nextStates);
+        }
+
+        return currentStates.intersects(finalStates);
+    }
+
+    private BitSet closureOf(BitSet states) {
+        if (epsilonTransitions == 0) return states;
+
+        BitSet closure = new BitSet();
+        for (int q = states.nextSetBit(0); q >= 0; q = states.nextSetBit(q + 1)) closure.or(epsilonClosure(q));
+
+        return closure;
+    }
+
+    // snapshot of the current automaton, removed states are left out
+    public CompactAutomaton toCompact() {
+        int[] indices = new int[names.size()];
+        int count = 0;
+        for (int q = 0; q < names.size(); q++) indices[q] = removed.get(q) ? NO_STATE : count++;
+
+        CompactAutomaton.Builder builder = new CompactAutomaton.Builder(count, symbolTable);
+        for (int q = 0; q < names.size(); q++) {
+            if (removed.get(q)) continue;
+
+            builder.setStateName(indices[q], names.get(q));
+            for (var entry: outgoing.get(q).entrySet()) {
+                for (int dest: entry.getValue()) {
+                    if (entry.getKey() == EPSILON) builder.addEpsilonTransition(indices[q], indices[dest]);
+                    else builder.addTransition(indices[q], entry.getKey(), indices[dest]);
+                }
+            }
+            if (initialStates.get(q)) builder.addInitialState(indices[q]);
+            if (finalStates.get(q)) builder.addFinalState(indices[q]);
+        }
+
+        return builder.build();
+    }
+
+    public AutomatonBase toAutomaton() {
+        CompactAutomaton compact = toCompact();
+
+        if (epsilonTransitions != 0) return ENFA.fromCompact(compact);
+        if (isDeterministic() && isComplete()) return DFA.fromCompact(compact);
+        return NFA.fromCompact(compact);
+    }
+
+    public DFA toMinimalDFA() {
+        if (minimalDFA == null) minimalDFA = toAutomaton().toDFA().minimize();
+        return minimalDFA;
+    }
+
+    public int getStateCount() {
+        return names.size() - removed.cardinality();
+    }
+
+    public String getStateName(int state) {
+        checkState(state);
+        return names.get(state);
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+}
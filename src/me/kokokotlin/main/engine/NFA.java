@@ -1,5 +1,8 @@
 package me.kokokotlin.main.engine;
 
+import me.kokokotlin.main.engine.metrics.Metrics;
+import me.kokokotlin.main.engine.trace.ExecutionTrace;
+
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -12,33 +15,60 @@ public class NFA extends AutomatonBase {
     } */ 
 
     public NFA(List<State> states, List<State> initialStates, List<State> finalStates, List<String> alphabet) {
-        super(states, initialStates, finalStates, alphabet);
+        this(states, initialStates, finalStates, SymbolTable.of(alphabet));
+    }
+
+    public NFA(List<State> states, List<State> initialStates, List<State> finalStates, SymbolTable symbolTable) {
+        super(states, initialStates, finalStates, symbolTable);
+        if (Metrics.ENABLED) Metrics.recordAutomaton(this);
+    }
+
+    public static NFA fromCompact(CompactAutomaton compact) {
+        List<State> states = compact.toStates();
+        NFA nfa = new NFA(states, compact.selectStates(states, compact.getInitialStates()),
+                compact.selectStates(states, compact.getFinalStates()), compact.getSymbolTable());
+        nfa.compact = compact;
+        return nfa;
     }
 
     // Converting epsilon-NFA to NFA Formula: delta'(q, sigma) = e-Cl(delta(e-Cl(q), sigma))
     // e-Cl(q): epsilon closure of q, delta: transition relation of epsilon-NFA, delta': transition relation of NFA
     // q: state, sigma: input symbol from the alphabet
+    // the initial states of the NFA are the epsilon closure of the initial states, the final states stay the same
     public static NFA constructFromENFA(ENFA eNFA) {
+        final long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+        final CompactAutomaton compact = eNFA.toCompact();
+        final int stateCount = compact.getStateCount();
 
-        List<State> states = new ArrayList<>();
+        // the closures are needed for every state multiple times
+        BitSet[] closures = new BitSet[stateCount];
+        for (int q = 0; q < stateCount; q++) closures[q] = compact.epsilonClosure(q);
 
-        // construct a new transition table without epsilon transitions
-        // this can introduce and initial states
-        // the states could be a set of integers, so we need to keep track of them in a separate list
-        for (int i = 0; i < eNFA.getStates().size(); i++) {
-            State currentState = states.get(i);
+        CompactAutomaton.Builder builder = new CompactAutomaton.Builder(stateCount, compact.getSymbolTable());
+        for (int q = 0; q < stateCount; q++) {
+            builder.setStateName(q, compact.getStateName(q));
 
-            for (String symbol: eNFA.getAlphabet()) {
-                Symbol currentSymbol = new Symbol(symbol);
+            for (int symbol = 0; symbol < compact.getSymbolTable().size(); symbol++) {
                 // Formula from above
-                List<Integer> resultingStates = eNFA.getEpsilonClojureIdx(eNFA.makeTransitionIdx(eNFA.getEpsilonClojureIdx(List.of(i)), currentSymbol));
-                for (Integer idx: resultingStates) {
-                    currentState.addTransition(currentSymbol, states.get(idx));
-                }
+                BitSet reached = new BitSet(stateCount);
+                compact.step(closures[q], symbol, reached);
+
+                BitSet resultingStates = new BitSet(stateCount);
+                for (int r = reached.nextSetBit(0); r >= 0; r = reached.nextSetBit(r + 1)) resultingStates.or(closures[r]);
+                for (int r = resultingStates.nextSetBit(0); r >= 0; r = resultingStates.nextSetBit(r + 1)) builder.addTransition(q, symbol, r);
             }
+
+            if (compact.isFinal(q)) builder.addFinalState(q);
+        }
+
+        for (int q: compact.getInitialStates()) {
+            for (int r = closures[q].nextSetBit(0); r >= 0; r = closures[q].nextSetBit(r + 1)) builder.addInitialState(r);
         }
 
-        return new NFA(states, eNFA.getEpsilonClojureIdx(List.of(0)).stream().map(states::get).collect(Collectors.toList()), List.of(), eNFA.alphabet);
+        NFA nfa = fromCompact(builder.build());
+        if (Metrics.ENABLED) Metrics.recordConversion(Metrics.Conversion.ENFA_TO_NFA, System.nanoTime() - start, eNFA, nfa);
+
+        return nfa;
     }
 
     public List<State> makeTransitionIdx(List<Integer> statesIndices, Symbol symbol) {
@@ -57,19 +87,88 @@ public class NFA extends AutomatonBase {
         return state.getNextStates(symbol);
     }
 
-    // idea: save a list with all states the automaton could currently be in
-    // and update the list which the automaton could reach next given the current states
-    // the word is accepted if this list contains at least one final state after the last symbol is read
-    // this list is initilized with the list of initial states 
+    // idea: save a set with all states the automaton could currently be in
+    // and update the set which the automaton could reach next given the current states
+    // the word is accepted if this set contains at least one final state after the last symbol is read
+    // this set is initilized with the set of initial states
+    // the sets are bitsets over the state indices of the compact representation, two of them are swapped every step
     @Override
     public boolean match(String word) {
-        List<State> currentStates = getInitialStates();
+        final long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+        final CompactAutomaton compact = toCompact();
+
+        BitSet currentStates = new BitSet(compact.getStateCount());
+        BitSet nextStates = new BitSet(compact.getStateCount());
+        for (int q: compact.getInitialStates()) currentStates.set(q);
+        if (ExecutionTrace.ENABLED && tracer != null) {
+            tracer.beginMatch();
+            tracer.record(ExecutionTrace.INITIAL_POSITION, '\0', currentStates);
+        }
         
-        for (String symbol: word.split("")) {
-            currentStates = makeTransition(currentStates, new Symbol(symbol));
+        // stop as soon as no state can reach a final state anymore or a state accepts every continuation
+        int i = 0;
+        for (; i < word.length() && !compact.isDead(currentStates) && !compact.isAbsorbing(currentStates); i++) {
+            char c = word.charAt(i);
+            int symbol = symbolTable.idOf(c);
+
+            nextStates.clear();
+            if (symbol != SymbolTable.UNKNOWN) compact.step(currentStates, symbol, nextStates);
+
+            BitSet tmp = currentStates;
+            currentStates = nextStates;
+            nextStates = tmp;
+
+            if (ExecutionTrace.ENABLED && tracer != null) tracer.record(i, c, currentStates);
+            if (Metrics.ENABLED) Metrics.recordActiveStates(this, currentStates.cardinality());
+        }
+
+        // the rest of the word only has to consist of symbols of the alphabet after an absorbing state
+        boolean accepted = compact.isAbsorbing(currentStates)
+                ? symbolTable.firstUnknown(word, i) == word.length()
+                : compact.containsFinal(currentStates);
+        if (Metrics.ENABLED) Metrics.recordMatch(this, System.nanoTime() - start, word.length(), accepted);
+
+        return accepted;
+    }
+
+    @Override
+    public int longestMatch(CharSequence text, int from) {
+        final CompactAutomaton compact = toCompact();
+
+        BitSet currentStates = new BitSet(compact.getStateCount());
+        BitSet nextStates = new BitSet(compact.getStateCount());
+        for (int q: compact.getInitialStates()) currentStates.set(q);
+        int longest = compact.containsFinal(currentStates) ? 0 : -1;
+
+        for (int i = from; i < text.length() && !compact.isDead(currentStates); i++) {
+            if (compact.isAbsorbing(currentStates)) return symbolTable.firstUnknown(text, i) - from;
+
+            int symbol = symbolTable.idOf(text.charAt(i));
+            if (symbol == SymbolTable.UNKNOWN) break;
+
+            nextStates.clear();
+            compact.step(currentStates, symbol, nextStates);
+
+            BitSet tmp = currentStates;
+            currentStates = nextStates;
+            nextStates = tmp;
+
+            if (compact.containsFinal(currentStates)) longest = i - from + 1;
         }
 
-        return currentStates.stream().anyMatch(s -> finalStates.contains(s));
+        return longest;
+    }
+
+    @Override
+    public NFA trim() {
+        CompactAutomaton trimmed = toCompact().trim();
+        return (trimmed == compact) ? this : fromCompact(trimmed);
+    }
+
+    @Override
+    public NFA reduce() {
+        CompactAutomaton reduced = toCompact().reduce();
+        return (reduced == compact) ? this : fromCompact(reduced);
     }
 
     @Override
@@ -84,7 +183,9 @@ public class NFA extends AutomatonBase {
 
     @Override
     public ENFA toENFA() {
-        return new ENFA(states, initialStates, finalStates, alphabet, false);
+        ENFA eNFA = new ENFA(states, initialStates, finalStates, symbolTable, false);
+        eNFA.compact = compact;
+        return eNFA;
     }
 
     public int getStateCount() {
@@ -0,0 +1,249 @@
+package me.kokokotlin.main.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// transition table and accepting states outside of the java heap, in direct buffers or in a memory mapped file
+// the garbage collector only sees the buffer objects, and every jvm that maps the same file shares its pages
+// a buffer can't be larger than 2 GiB, so the table is split into segments of SEGMENT_SIZE cells
+//
+// file format of a compiled automaton (little endian):
+//   int magic, int version, int stateCount, int symbolCount, int initialState, int alphabetBytes
+//   long tableOffset, long acceptingOffset
+//   alphabet: for every symbol its length in bytes (short) and its utf-8 bytes
+//   table at tableOffset: stateCount * symbolCount ints, the cell of state q and symbol a is at q * symbolCount + a
+//   accepting states at acceptingOffset: (stateCount + 63) / 64 longs, bit q % 64 of long q / 64
+// both sections start at a multiple of 8 bytes
+public final class OffHeapTransitionTable implements TransitionTable {
+    public static final int MAGIC = 0x41555443; // "AUTC"
+    public static final int VERSION = 1;
+    public static final String FILE_EXTENSION = ".autc";
+
+    private static final int HEADER_SIZE = 6 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int SEGMENT_SHIFT = 28;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final SymbolTable symbolTable;
+    private final int stateCount;
+    private final int symbolCount;
+    private final int initialState;
+    private final IntBuffer[] segments;
+    private final LongBuffer accepting;
+
+    private OffHeapTransitionTable(SymbolTable symbolTable, int stateCount, int initialState, IntBuffer[] segments, LongBuffer accepting) {
+        this.symbolTable = symbolTable;
+        this.stateCount = stateCount;
+        this.symbolCount = symbolTable.size();
+        this.initialState = initialState;
+        this.segments = segments;
+        this.accepting = accepting;
+    }
+
+    private static long cellCount(int stateCount, int symbolCount) {
+        return (long) stateCount * symbolCount;
+    }
+
+    private static int segmentCount(long cells) {
+        return (int) ((cells + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+    }
+
+    private static int segmentLength(long cells, int segment) {
+        return (int) Math.min(SEGMENT_SIZE, cells - ((long) segment << SEGMENT_SHIFT));
+    }
+
+    private static int acceptingWords(int stateCount) {
+        return (stateCount + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    // copies the table into direct buffers
+    public static OffHeapTransitionTable of(TransitionTable table) {
+        final int stateCount = table.getStateCount();
+        final int symbolCount = table.getSymbolTable().size();
+        final long cells = cellCount(stateCount, symbolCount);
+
+        IntBuffer[] segments = new IntBuffer[segmentCount(cells)];
+        for (int s = 0; s < segments.length; s++) {
+            segments[s] = ByteBuffer.allocateDirect(segmentLength(cells, s) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        LongBuffer accepting = ByteBuffer.allocateDirect(acceptingWords(stateCount) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+
+        for (int q = 0; q < stateCount; q++) {
+            long cell = cellCount(q, symbolCount);
+            for (int symbol = 0; symbol < symbolCount; symbol++, cell++) {
+                segments[(int) (cell >>> SEGMENT_SHIFT)].put((int) (cell & SEGMENT_MASK), table.next(q, symbol));
+            }
+            if (table.isAccepting(q)) accepting.put(q / Long.SIZE, accepting.get(q / Long.SIZE) | (1L << (q % Long.SIZE)));
+        }
+
+        return new OffHeapTransitionTable(table.getSymbolTable(), stateCount, table.getInitialStateIndex(), segments, accepting);
+    }
+
+    // builds the table directly from the compact representation without creating the state graph
+    // the automaton has to be deterministic: one initial state, no epsilon transitions and at most one target per
+    // state and symbol, missing transitions become NO_STATE
+    public static OffHeapTransitionTable of(CompactAutomaton automaton) {
+        if (automaton.getInitialStates().length != 1 || automaton.hasEpsilons())
+            throw new IllegalArgumentException("Only deterministic automata with exactly one initial state can be stored as transition table!");
+
+        final int stateCount = automaton.getStateCount();
+        final int symbolCount = automaton.getSymbolTable().size();
+        final long cells = cellCount(stateCount, symbolCount);
+
+        IntBuffer[] segments = new IntBuffer[segmentCount(cells)];
+        for (int s = 0; s < segments.length; s++) {
+            segments[s] = ByteBuffer.allocateDirect(segmentLength(cells, s) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        LongBuffer accepting = ByteBuffer.allocateDirect(acceptingWords(stateCount) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+
+        for (int q = 0; q < stateCount; q++) {
+            long rowStart = cellCount(q, symbolCount);
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                long cell = rowStart + symbol;
+                segments[(int) (cell >>> SEGMENT_SHIFT)].put((int) (cell & SEGMENT_MASK), NO_STATE);
+            }
+
+            for (int i = automaton.transitionStart(q); i < automaton.transitionEnd(q); i++) {
+                if (i > automaton.transitionStart(q) && automaton.symbolAt(i) == automaton.symbolAt(i - 1))
+                    throw new IllegalArgumentException(String.format("State %s has more than one transition with the same symbol!", automaton.getStateName(q)));
+
+                long cell = rowStart + automaton.symbolAt(i);
+                segments[(int) (cell >>> SEGMENT_SHIFT)].put((int) (cell & SEGMENT_MASK), automaton.targetAt(i));
+            }
+            if (automaton.isFinal(q)) accepting.put(q / Long.SIZE, accepting.get(q / Long.SIZE) | (1L << (q % Long.SIZE)));
+        }
+
+        return new OffHeapTransitionTable(automaton.getSymbolTable(), stateCount, automaton.getInitialStates()[0], segments, accepting);
+    }
+
+    private static long align(long offset) {
+        return (offset + Long.BYTES - 1) & ~(long) (Long.BYTES - 1);
+    }
+
+    // writes the table in the compiled format, the rows are streamed through a small buffer
+    public static void write(TransitionTable table, Path path) throws IOException {
+        final SymbolTable symbolTable = table.getSymbolTable();
+        final int stateCount = table.getStateCount();
+        final int symbolCount = symbolTable.size();
+
+        List<byte[]> symbols = new ArrayList<>(symbolCount);
+        int alphabetBytes = 0;
+        for (String symbol: symbolTable.getAlphabet()) {
+            byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+            symbols.add(bytes);
+            alphabetBytes += Short.BYTES + bytes.length;
+        }
+
+        final long tableOffset = align(HEADER_SIZE + alphabetBytes);
+        final long acceptingOffset = align(tableOffset + cellCount(stateCount, symbolCount) * Integer.BYTES);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate((int) tableOffset).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(stateCount).putInt(symbolCount)
+                    .putInt(table.getInitialStateIndex()).putInt(alphabetBytes)
+                    .putLong(tableOffset).putLong(acceptingOffset);
+            for (byte[] bytes: symbols) header.putShort((short) bytes.length).put(bytes);
+            writeFully(channel, header.clear());
+
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(symbolCount * Integer.BYTES, 1 << 16)).order(ByteOrder.LITTLE_ENDIAN);
+            for (int q = 0; q < stateCount; q++) {
+                if (buffer.remaining() < symbolCount * Integer.BYTES) writeFully(channel, buffer.flip());
+                for (int symbol = 0; symbol < symbolCount; symbol++) buffer.putInt(table.next(q, symbol));
+            }
+            writeFully(channel, buffer.flip());
+
+            channel.position(acceptingOffset);
+            long word = 0;
+            for (int q = 0; q < stateCount; q++) {
+                if (table.isAccepting(q)) word |= 1L << (q % Long.SIZE);
+                if (q % Long.SIZE == Long.SIZE - 1 || q == stateCount - 1) {
+                    if (buffer.remaining() < Long.BYTES) writeFully(channel, buffer.flip());
+                    buffer.putLong(word);
+                    word = 0;
+                }
+            }
+            writeFully(channel, buffer.flip());
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    // maps a compiled automaton read only, the table is paged in by the operating system on first access
+    public static OffHeapTransitionTable map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) throw new IllegalArgumentException(String.format("%s is not a compiled automaton!", path));
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) throw new IllegalArgumentException(String.format("%s is not a compiled automaton!", path));
+            int version = header.getInt();
+            if (version != VERSION) throw new IllegalArgumentException(String.format("Unsupported version %d of the compiled automaton %s!", version, path));
+
+            int stateCount = header.getInt();
+            int symbolCount = header.getInt();
+            int initialState = header.getInt();
+            int alphabetBytes = header.getInt();
+            long tableOffset = header.getLong();
+            long acceptingOffset = header.getLong();
+            long cells = cellCount(stateCount, symbolCount);
+            if (acceptingOffset + (long) acceptingWords(stateCount) * Long.BYTES > channel.size() || tableOffset + cells * Integer.BYTES > acceptingOffset)
+                throw new IllegalArgumentException(String.format("The compiled automaton %s is truncated!", path));
+
+            ByteBuffer alphabet = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, alphabetBytes).order(ByteOrder.LITTLE_ENDIAN);
+            List<String> symbols = new ArrayList<>(symbolCount);
+            for (int i = 0; i < symbolCount; i++) {
+                byte[] bytes = new byte[alphabet.getShort()];
+                alphabet.get(bytes);
+                symbols.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+
+            IntBuffer[] segments = new IntBuffer[segmentCount(cells)];
+            for (int s = 0; s < segments.length; s++) {
+                long offset = tableOffset + ((long) s << SEGMENT_SHIFT) * Integer.BYTES;
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) segmentLength(cells, s) * Integer.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            }
+            LongBuffer accepting = channel.map(FileChannel.MapMode.READ_ONLY, acceptingOffset, (long) acceptingWords(stateCount) * Long.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+
+            return new OffHeapTransitionTable(SymbolTable.of(symbols), stateCount, initialState, segments, accepting);
+        }
+    }
+
+    @Override
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    @Override
+    public int getInitialStateIndex() {
+        return initialState;
+    }
+
+    @Override
+    public int next(int state, int symbol) {
+        long cell = (long) state * symbolCount + symbol;
+        return segments[(int) (cell >>> SEGMENT_SHIFT)].get((int) (cell & SEGMENT_MASK));
+    }
+
+    @Override
+    public boolean isAccepting(int state) {
+        return (accepting.get(state / Long.SIZE) & (1L << (state % Long.SIZE))) != 0;
+    }
+}
@@ -0,0 +1,370 @@
+package me.kokokotlin.main.engine;
+
+import me.kokokotlin.main.utils.Tuple;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// loads .aut files with several threads, the result and the error messages are the same as the ones of the Loader
+// (errors are thrown as IllegalArgumentException like by Loader.loadOrThrow)
+// the file is memory mapped and everything after the header is split into chunks at line boundaries, then
+// 1. every chunk counts its lines, so every chunk knows the line number of its first line
+// 2. the chunks with state lines parse the names in parallel
+// 3. the chunks with transition lines parse them into their own arrays, which are merged into the compact automaton
+// a loader has no mutable state, one instance can load several files at the same time
+public class ParallelLoader {
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+    private static final long MAX_CHUNK_SIZE = 64L << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final byte NEWLINE = '\n';
+
+    private static final ParallelLoader DEFAULT = new ParallelLoader(Runtime.getRuntime().availableProcessors());
+
+    private final int parallelism;
+
+    public ParallelLoader(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("The loader needs at least one thread!");
+        this.parallelism = parallelism;
+    }
+
+    public static ParallelLoader getDefault() {
+        return DEFAULT;
+    }
+
+    // first error of a chunk, fatal errors are thrown as IllegalStateException like in the Loader
+    private record ParseError(int line, String message, boolean fatal) {}
+
+    private static final class Chunk {
+        final MappedByteBuffer buffer;
+        int firstLine;
+        int lineCount;
+        ParseError error;
+
+        int[] sources = new int[16];
+        int[] symbols = new int[16];
+        int[] targets = new int[16];
+        int transitionCount = 0;
+
+        int[] epsilonSources = new int[16];
+        int[] epsilonTargets = new int[16];
+        int epsilonCount = 0;
+
+        Chunk(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void addTransition(int source, int symbol, int target) {
+            if (transitionCount == targets.length) {
+                sources = Arrays.copyOf(sources, 2 * transitionCount);
+                symbols = Arrays.copyOf(symbols, 2 * transitionCount);
+                targets = Arrays.copyOf(targets, 2 * transitionCount);
+            }
+            sources[transitionCount] = source;
+            symbols[transitionCount] = symbol;
+            targets[transitionCount] = target;
+            transitionCount++;
+        }
+
+        void addEpsilonTransition(int source, int target) {
+            if (epsilonCount == epsilonTargets.length) {
+                epsilonSources = Arrays.copyOf(epsilonSources, 2 * epsilonCount);
+                epsilonTargets = Arrays.copyOf(epsilonTargets, 2 * epsilonCount);
+            }
+            epsilonSources[epsilonCount] = source;
+            epsilonTargets[epsilonCount] = target;
+            epsilonCount++;
+        }
+
+        // calls the consumer with the global line number and the line without the line break for every line
+        void forEachLine(LineConsumer consumer) {
+            int line = firstLine;
+            int start = 0;
+            int end = buffer.limit();
+            for (int i = 0; i <= end && error == null; i++) {
+                if (i < end && buffer.get(i) != NEWLINE) continue;
+                if (i == end && start == end) break;
+
+                int length = i - start;
+                if (length > 0 && buffer.get(start + length - 1) == '\r') length--;
+                byte[] bytes = new byte[length];
+                buffer.get(start, bytes, 0, length);
+
+                if (!consumer.accept(line++, new String(bytes, StandardCharsets.UTF_8))) break;
+                start = i + 1;
+            }
+        }
+    }
+
+    private interface LineConsumer {
+        // returns false to stop
+        boolean accept(int line, String content);
+    }
+
+    public AutomatonBase load(Path path) {
+        Tuple<Loader.Header, CompactAutomaton> loaded = parse(path);
+        CompactAutomaton compact = loaded.getSecond();
+        return switch (loaded.getFirst().type) {
+            case DFA -> DFA.fromCompact(compact);
+            case NFA -> NFA.fromCompact(compact);
+            case ENFA -> ENFA.fromCompact(compact);
+        };
+    }
+
+    // only the compact representation, the state graph for the automaton classes is not built
+    public CompactAutomaton loadCompact(Path path) {
+        Tuple<Loader.Header, CompactAutomaton> loaded = parse(path);
+        return loaded.getSecond();
+    }
+
+    private Tuple<Loader.Header, CompactAutomaton> parse(Path path) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long headerEnd = findLineEnd(channel, 0);
+            String headerLine = readString(channel, 0, headerEnd);
+            Loader headerParser = new Loader();
+            Loader.Header header = headerParser.parseHeader(headerLine.endsWith("\r") ? headerLine.substring(0, headerLine.length() - 1) : headerLine);
+            if (header == null) throw new IllegalArgumentException(headerParser.getErrorMessage());
+
+            List<String> alphabet = Arrays.asList(header.alphabet.split(""));
+            SymbolTable symbolTable = SymbolTable.of(alphabet);
+
+            List<Chunk> chunks = split(channel, Math.min(headerEnd + 1, channel.size()));
+
+            // 1. line numbers, the header is line 0
+            runAll(executor, chunks, chunk -> chunk.lineCount = countLines(chunk.buffer));
+            int line = 1;
+            for (Chunk chunk: chunks) {
+                chunk.firstLine = line;
+                line += chunk.lineCount;
+            }
+            final int lineCount = line - 1;
+
+            // 2. states
+            final int stateCount = Math.min(header.stateCount, lineCount);
+            final String[] names = new String[stateCount];
+            final Map<String, Integer> stateIndices = new ConcurrentHashMap<>();
+            runAll(executor, chunks, chunk -> {
+                if (chunk.firstLine > stateCount) return;
+                chunk.forEachLine((number, content) -> {
+                    if (number > stateCount) return false;
+
+                    String[] lineData = content.split(" ");
+                    if (lineData.length != 2) {
+                        chunk.error = new ParseError(number, String.format("Error while parsing line %d! Not enough arguments. Expected 2 got %d!\n", number, lineData.length), false);
+                    } else if (!lineData[0].equals("s")) {
+                        chunk.error = new ParseError(number, String.format("Error while parsing line %d! Expected state.\n", number), false);
+                    } else {
+                        names[number - 1] = lineData[1];
+                        // the first state with a name is the one that is used in the transitions
+                        stateIndices.merge(lineData[1], number - 1, Math::min);
+                    }
+                    return true;
+                });
+            });
+            throwFirstError(chunks);
+
+            // 3. transitions
+            final int lastTransitionLine = (int) Math.min((long) stateCount + header.transitionCount, lineCount);
+            runAll(executor, chunks, chunk -> {
+                if (chunk.firstLine + chunk.lineCount <= stateCount + 1 || chunk.firstLine > lastTransitionLine) return;
+                chunk.forEachLine((number, content) -> {
+                    if (number > lastTransitionLine) return false;
+                    if (number > stateCount) parseTransition(chunk, number, content, stateIndices, header, symbolTable);
+                    return true;
+                });
+            });
+            throwFirstError(chunks);
+
+            CompactAutomaton.Builder builder = new CompactAutomaton.Builder(stateCount, symbolTable);
+            for (int q = 0; q < stateCount; q++) builder.setStateName(q, names[q]);
+            for (Chunk chunk: chunks) {
+                builder.addTransitions(chunk.sources, chunk.symbols, chunk.targets, chunk.transitionCount);
+                builder.addEpsilonTransitions(chunk.epsilonSources, chunk.epsilonTargets, chunk.epsilonCount);
+            }
+            addStates(header, stateCount, builder);
+            CompactAutomaton compact = builder.build();
+
+            if (header.type == Loader.AutomatonType.DFA) checkSaturation(compact, alphabet);
+
+            return new Tuple<>(header, compact);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Cant open file %s: %s!", path, e.getMessage()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void parseTransition(Chunk chunk, int number, String content, Map<String, Integer> stateIndices,
+                                        Loader.Header header, SymbolTable symbolTable) {
+        String[] transitionData = content.split(" ");
+
+        if (transitionData.length != 4) {
+            chunk.error = new ParseError(number, String.format("Error while parsing line %d! Not enough arguments. Expected 4 got %d!\n", number, transitionData.length), false);
+            return;
+        }
+
+        if (!transitionData[0].equals("t")) {
+            chunk.error = new ParseError(number, String.format("Error while parsing line %d! Expected transition.\n", number), false);
+            return;
+        }
+
+        String symbol = transitionData[3];
+        boolean isEpsilon = symbol.equals("\"\"");
+        if (symbol.length() != 1 && !isEpsilon) {
+            chunk.error = new ParseError(number, String.format("Error while parsing line %d! Second argument has to be character! Got %s.\n", number, symbol), false);
+            return;
+        }
+
+        Integer source = stateIndices.get(transitionData[1]);
+        if (source == null) {
+            chunk.error = new ParseError(number, String.format("Error while parsing line %d! Starting state %s not defined!", number, transitionData[1]), false);
+            return;
+        }
+
+        Integer target = stateIndices.get(transitionData[2]);
+        if (target == null) {
+            chunk.error = new ParseError(number, String.format("Error while parsing line %d! Final state %s not defined!", number, transitionData[2]), false);
+            return;
+        }
+
+        if (!header.alphabet.contains(symbol) && !isEpsilon) {
+            chunk.error = new ParseError(number, String.format("Error while parsing line %d! Symbol %s not in alphabet!", number, symbol), false);
+            return;
+        }
+
+        if (isEpsilon) {
+            if (header.type != Loader.AutomatonType.ENFA) {
+                chunk.error = new ParseError(number, "Only automata of type enfa can contain epsilon trainsitions!", true);
+                return;
+            }
+            chunk.addEpsilonTransition(source, target);
+        } else {
+            chunk.addTransition(source, symbolTable.idOf(symbol), target);
+        }
+    }
+
+    private static void addStates(Loader.Header header, int stateCount, CompactAutomaton.Builder builder) {
+        for (int idx: header.initialStates) {
+            if (idx >= 0 && idx < stateCount) builder.addInitialState(idx);
+            else System.out.printf("Initial State at index %d is out of bounds of [0, %d]!\n", idx, stateCount - 1);
+        }
+
+        for (int idx: header.finalStates) {
+            if (idx >= 0 && idx < stateCount) builder.addFinalState(idx);
+            else System.out.printf("Initial State at index %d is out of bounds of [0, %d]!\n", idx, stateCount - 1);
+        }
+    }
+
+    private static void checkSaturation(CompactAutomaton compact, List<String> alphabet) {
+        List<Tuple<String, String>> notSaturated = new ArrayList<>();
+        for (int q = 0; q < compact.getStateCount(); q++) {
+            StringBuilder missing = new StringBuilder();
+            for (String symbol: alphabet) {
+                int id = compact.getSymbolTable().idOf(symbol);
+                if (id == SymbolTable.UNKNOWN || compact.lowerBound(q, id) == compact.upperBound(q, id)) missing.append(symbol);
+            }
+            if (missing.length() != 0) notSaturated.add(new Tuple<>(compact.getStateName(q), missing.toString()));
+        }
+
+        if (!notSaturated.isEmpty())
+            throw new IllegalStateException(String.format("Not all states are saturated! \n%s", Loader.errorForNonSaturatedStates(notSaturated)));
+    }
+
+    // the first error of the file as IllegalArgumentException (the message of the Loader), fatal ones as IllegalStateException
+    private static void throwFirstError(List<Chunk> chunks) {
+        ParseError first = null;
+        for (Chunk chunk: chunks) {
+            if (chunk.error != null && (first == null || chunk.error.line() < first.line())) first = chunk.error;
+        }
+        if (first == null) return;
+
+        if (first.fatal()) throw new IllegalStateException(first.message());
+        throw new IllegalArgumentException(first.message().strip());
+    }
+
+    private interface ChunkTask {
+        void run(Chunk chunk);
+    }
+
+    private static void runAll(ExecutorService executor, List<Chunk> chunks, ChunkTask task) {
+        List<Callable<Void>> tasks = new ArrayList<>(chunks.size());
+        for (Chunk chunk: chunks) {
+            tasks.add(() -> {
+                task.run(chunk);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> future: executor.invokeAll(tasks)) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Loading was interrupted!");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static int countLines(MappedByteBuffer buffer) {
+        int lines = 0;
+        int end = buffer.limit();
+        for (int i = 0; i < end; i++) {
+            if (buffer.get(i) == NEWLINE) lines++;
+        }
+        if (end > 0 && buffer.get(end - 1) != NEWLINE) lines++;
+
+        return lines;
+    }
+
+    // splits [start, size) into chunks that end after a line break (or at the end of the file)
+    private List<Chunk> split(FileChannel channel, long start) throws IOException {
+        final long size = channel.size();
+        long chunkSize = (size - start) / ((long) parallelism * CHUNKS_PER_THREAD) + 1;
+        chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+
+        List<Chunk> chunks = new ArrayList<>();
+        long chunkStart = start;
+        while (chunkStart < size) {
+            long chunkEnd = (chunkStart + chunkSize >= size) ? size : Math.min(size, findLineEnd(channel, chunkStart + chunkSize - 1) + 1);
+            chunks.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart)));
+            chunkStart = chunkEnd;
+        }
+
+        return chunks;
+    }
+
+    // position of the first line break at or after from, the size of the file if there is none
+    private static long findLineEnd(FileChannel channel, long from) throws IOException {
+        final long size = channel.size();
+        for (long windowStart = from; windowStart < size; windowStart += MIN_CHUNK_SIZE) {
+            long windowSize = Math.min(MIN_CHUNK_SIZE, size - windowStart);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+            for (int i = 0; i < windowSize; i++) {
+                if (window.get(i) == NEWLINE) return windowStart + i;
+            }
+        }
+
+        return size;
+    }
+
+    private static String readString(FileChannel channel, long start, long end) throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        channel.map(FileChannel.MapMode.READ_ONLY, start, end - start).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,116 @@
+package me.kokokotlin.main.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// skips runs of characters on which a state of a dfa loops, e.g. the state of .* in a regex or a "read until delimiter"
+// state: a state is accelerated if it loops on all but at most MAX_EXIT_SYMBOLS symbols (and on OTHER if the table has
+// it). instead of one table lookup per character the matcher searches the next exit character with String.indexOf,
+// which the jvm compiles to a vectorized scan, and continues there with the normal step
+// without OTHER every character that is not in the alphabet leaves the state as well (the word is rejected), so the
+// skipped characters are also checked for them, that check is a plain loop without the table lookups
+// the position of the next occurrence of every exit character is remembered during a match, a state that is entered
+// again doesn't search the same characters twice
+final class SelfLoopAccelerator {
+    static final int MAX_EXIT_SYMBOLS = 4;
+
+    private final SymbolTable symbolTable;
+    // exitSlots[q] are the indices of the exit characters of q in exitCharacters, null if q isn't accelerated
+    private final int[][] exitSlots;
+    private final char[] exitCharacters;
+    // slot of the memo for the next character that is not in the alphabet
+    private final int unknownSlot;
+    private final int acceleratedCount;
+
+    private SelfLoopAccelerator(SymbolTable symbolTable, int[][] exitSlots, char[] exitCharacters, int acceleratedCount) {
+        this.symbolTable = symbolTable;
+        this.exitSlots = exitSlots;
+        this.exitCharacters = exitCharacters;
+        this.unknownSlot = exitCharacters.length;
+        this.acceleratedCount = acceleratedCount;
+    }
+
+    // null if no state can be accelerated
+    // table[q * symbolCount + symbol] is the next state, halting states are never accelerated, the match stops there anyway
+    static SelfLoopAccelerator of(SymbolTable symbolTable, int[] table, boolean[] halting) {
+        final int symbolCount = symbolTable.size();
+        final int stateCount = halting.length;
+        final int otherId = symbolTable.idOf(SymbolTable.OTHER);
+
+        int[][] exitSlots = new int[stateCount][];
+        Map<Character, Integer> slots = new HashMap<>();
+        int accelerated = 0;
+
+        for (int q = 0; q < stateCount; q++) {
+            if (halting[q] || (otherId != SymbolTable.UNKNOWN && table[q * symbolCount + otherId] != q)) continue;
+
+            int[] exits = new int[MAX_EXIT_SYMBOLS];
+            int exitCount = 0;
+            for (int symbol = 0; symbol < symbolCount && exitCount <= MAX_EXIT_SYMBOLS; symbol++) {
+                // symbols of more than one character are never read
+                String name = symbolTable.getAlphabet().get(symbol);
+                if (table[q * symbolCount + symbol] == q || name.length() != 1) continue;
+
+                if (exitCount < MAX_EXIT_SYMBOLS) exits[exitCount] = slots.computeIfAbsent(name.charAt(0), c -> slots.size());
+                exitCount++;
+            }
+
+            if (exitCount > MAX_EXIT_SYMBOLS) continue;
+            exitSlots[q] = Arrays.copyOf(exits, exitCount);
+            accelerated++;
+        }
+
+        if (accelerated == 0) return null;
+
+        char[] exitCharacters = new char[slots.size()];
+        slots.forEach((c, slot) -> exitCharacters[slot] = c);
+        return new SelfLoopAccelerator(symbolTable, exitSlots, exitCharacters, accelerated);
+    }
+
+    int getAcceleratedCount() {
+        return acceleratedCount;
+    }
+
+    boolean isAccelerated(int state) {
+        return exitSlots[state] != null;
+    }
+
+    // memo[slot] is the next position of the exit character at or after the position it was searched from, -1 if it
+    // wasn't searched yet
+    int[] newMemo() {
+        int[] memo = new int[exitCharacters.length + 1];
+        Arrays.fill(memo, -1);
+        return memo;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        if (text instanceof String s) {
+            int index = s.indexOf(c, from);
+            return (index < 0) ? s.length() : index;
+        }
+
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) return i;
+        }
+
+        return text.length();
+    }
+
+    // the first position at or after from whose character leaves the accelerated state, the length of the text if there
+    // is none. the state loops on all characters before it
+    int skip(CharSequence text, int from, int state, int[] memo) {
+        int exit = text.length();
+        for (int slot: exitSlots[state]) {
+            if (memo[slot] < from) memo[slot] = indexOf(text, exitCharacters[slot], from);
+            exit = Math.min(exit, memo[slot]);
+        }
+
+        if (!symbolTable.hasOther()) {
+            if (memo[unknownSlot] < from) memo[unknownSlot] = symbolTable.firstUnknown(text, from);
+            exit = Math.min(exit, memo[unknownSlot]);
+        }
+
+        return exit;
+    }
+}
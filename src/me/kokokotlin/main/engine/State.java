@@ -8,39 +8,30 @@ public class State {
     private final Map<Symbol, List<State>> transition;
     private final List<String> alphabet;
 
-    public State(String name, List<String> alphabet, boolean needsEpsilon) {
+    // the lists of destination states are only allocated for symbols that are actually used
+    public State(String name, List<String> alphabet) {
         this.name = name;
-        transition = new HashMap<>();
-
-        if (needsEpsilon)
-            transition.put(Symbol.epsilon(), new ArrayList<>());
-
-        for(int i = 0; i < alphabet.size(); i++) {
-            transition.put(new Symbol(alphabet.get(i)), new ArrayList<>());
-        }
-
+        this.transition = new HashMap<>();
         this.alphabet = alphabet;
     }
 
-    // TODO: refactoring for symbol 
     public String missingChars() {
-        /*
         return alphabet.stream()
-                .filter(c -> transition.get(c) == null)
+                .filter(c -> getNextStates(new Symbol(c)).isEmpty())
                 .collect(Collectors.joining());
-        */
-        return "";
     }
 
     public void addTransition(Symbol symbol, State destState) {
-        transition.get(symbol).add(destState);
+        transition.computeIfAbsent(symbol, k -> new ArrayList<>(1)).add(destState);
     }
 
+    // deterministic: exactly one transition for every symbol of the alphabet and no epsilon transitions
     public boolean hasUniqueTransitions() {
-        return transition.entrySet().stream().allMatch(entry -> entry.getValue().size() == 1);
+        return transition.entrySet().stream().allMatch(entry -> entry.getValue().size() == 1 && !entry.getKey().equals(Symbol.epsilon()))
+                && alphabet.stream().allMatch(c -> transition.containsKey(new Symbol(c)));
     }
 
-    public List<State> getNextStates(Symbol inputSymbol) { return transition.get(inputSymbol); }
+    public List<State> getNextStates(Symbol inputSymbol) { return transition.getOrDefault(inputSymbol, List.of()); }
 
     public String getName() {
         return name;
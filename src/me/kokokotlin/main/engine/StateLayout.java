@@ -0,0 +1,191 @@
+package me.kokokotlin.main.engine;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// profile guided numbering of the states of a transition table
+// a match reads one row of the table per character, the rows of states that are read after each other should be close
+// to each other in memory, so that they share cache lines and pages. the discovery order of the subset construction or
+// the order of the .aut file doesn't know which states are hot
+// the profile counts the visits of every state and every transition for a sample of words, the layout places the states
+// as chains: starting with the most visited state that is not placed yet, the most used successor that is not placed
+// yet follows, until the chain reaches a placed state. states that the sample never visits keep their order at the end
+// the reordered table has the same language, written with OffHeapTransitionTable.write the layout is the compiled table
+public final class StateLayout {
+    private StateLayout() {}
+
+    public static final class Profile {
+        private final long[] stateVisits;
+        // transitionCounts[state * symbolCount + symbol]
+        private final long[] transitionCounts;
+        private final int symbolCount;
+
+        private Profile(int stateCount, int symbolCount) {
+            this.stateVisits = new long[stateCount];
+            this.transitionCounts = new long[stateCount * symbolCount];
+            this.symbolCount = symbolCount;
+        }
+
+        public long getVisits(int state) {
+            return stateVisits[state];
+        }
+
+        public long getCount(int state, int symbol) {
+            return transitionCounts[state * symbolCount + symbol];
+        }
+
+        public int getVisitedStateCount() {
+            int visited = 0;
+            for (long visits: stateVisits) {
+                if (visits > 0) visited++;
+            }
+
+            return visited;
+        }
+    }
+
+    private static void checkSize(TransitionTable table) {
+        if ((long) table.getStateCount() * table.getSymbolTable().size() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The transition table is too large to be reordered!");
+    }
+
+    // runs every word of the sample through the table
+    public static Profile profile(TransitionTable table, List<String> sample) {
+        checkSize(table);
+        final SymbolTable symbolTable = table.getSymbolTable();
+        final int symbolCount = symbolTable.size();
+        Profile profile = new Profile(table.getStateCount(), symbolCount);
+
+        for (String word: sample) {
+            int state = table.getInitialStateIndex();
+            profile.stateVisits[state]++;
+
+            for (int i = 0; i < word.length(); i++) {
+                int symbol = symbolTable.idOf(word.charAt(i));
+                if (symbol == SymbolTable.UNKNOWN) break;
+
+                profile.transitionCounts[state * symbolCount + symbol]++;
+                state = table.next(state, symbol);
+                if (state == TransitionTable.NO_STATE) break;
+                profile.stateVisits[state]++;
+            }
+        }
+
+        return profile;
+    }
+
+    // order[i] is the state of the table that gets the index i, the initial state comes first
+    public static int[] order(TransitionTable table, Profile profile) {
+        final int stateCount = table.getStateCount();
+        final int symbolCount = table.getSymbolTable().size();
+
+        // the visited states by visits (the most visited first), then the others in their current order
+        Integer[] candidates = new Integer[stateCount];
+        for (int q = 0; q < stateCount; q++) candidates[q] = q;
+        Arrays.sort(candidates, (a, b) -> Long.compare(profile.stateVisits[b], profile.stateVisits[a]));
+
+        int[] order = new int[stateCount];
+        int placedCount = 0;
+        BitSet placed = new BitSet(stateCount);
+
+        int start = table.getInitialStateIndex();
+        for (int c = -1; c < stateCount; c++) {
+            int state = (c < 0) ? start : candidates[c];
+
+            // the chain only continues with the transitions the sample used
+            while (state != TransitionTable.NO_STATE && !placed.get(state)) {
+                placed.set(state);
+                order[placedCount++] = state;
+
+                int next = TransitionTable.NO_STATE;
+                long hottest = 0;
+                for (int symbol = 0; symbol < symbolCount; symbol++) {
+                    long count = profile.transitionCounts[state * symbolCount + symbol];
+                    int target = table.next(state, symbol);
+                    if (count > hottest && target != TransitionTable.NO_STATE && !placed.get(target)) {
+                        hottest = count;
+                        next = target;
+                    }
+                }
+                state = next;
+            }
+        }
+
+        return order;
+    }
+
+    public static TransitionTable reorder(TransitionTable table, Profile profile) {
+        return reorder(table, order(table, profile));
+    }
+
+    // the table with the state order[i] as state i
+    public static TransitionTable reorder(TransitionTable table, int[] order) {
+        checkSize(table);
+        if (order.length != table.getStateCount()) throw new IllegalArgumentException("The order has to contain every state once!");
+
+        int[] indices = new int[order.length];
+        Arrays.fill(indices, -1);
+        for (int i = 0; i < order.length; i++) {
+            if (indices[order[i]] >= 0) throw new IllegalArgumentException("The order has to contain every state once!");
+            indices[order[i]] = i;
+        }
+
+        final int symbolCount = table.getSymbolTable().size();
+        int[] next = new int[order.length * symbolCount];
+        BitSet accepting = new BitSet(order.length);
+        for (int i = 0; i < order.length; i++) {
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int target = table.next(order[i], symbol);
+                next[i * symbolCount + symbol] = (target == TransitionTable.NO_STATE) ? TransitionTable.NO_STATE : indices[target];
+            }
+            if (table.isAccepting(order[i])) accepting.set(i);
+        }
+
+        return new Table(table.getSymbolTable(), order.length, indices[table.getInitialStateIndex()], next, accepting);
+    }
+
+    // dense table on the heap
+    private static final class Table implements TransitionTable {
+        private final SymbolTable symbolTable;
+        private final int symbolCount;
+        private final int stateCount;
+        private final int initialState;
+        private final int[] next;
+        private final BitSet accepting;
+
+        Table(SymbolTable symbolTable, int stateCount, int initialState, int[] next, BitSet accepting) {
+            this.symbolTable = symbolTable;
+            this.symbolCount = symbolTable.size();
+            this.stateCount = stateCount;
+            this.initialState = initialState;
+            this.next = next;
+            this.accepting = accepting;
+        }
+
+        @Override
+        public int getStateCount() {
+            return stateCount;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable() {
+            return symbolTable;
+        }
+
+        @Override
+        public int getInitialStateIndex() {
+            return initialState;
+        }
+
+        @Override
+        public int next(int state, int symbol) {
+            return next[state * symbolCount + symbol];
+        }
+
+        @Override
+        public boolean isAccepting(int state) {
+            return accepting.get(state);
+        }
+    }
+}
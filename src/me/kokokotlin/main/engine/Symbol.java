@@ -6,25 +6,38 @@ public class Symbol {
     // encoding of empty word
     public static final String EPSILON = "\0";
 
-    private Type type;
-    private String symbol;
+    private static final Symbol EPSILON_SYMBOL = new Symbol(EPSILON);
+    private static final Symbol WILDCARD_SYMBOL = new Symbol(null);
+
+    private final Type type;
+    private final String symbol;
+    private final int hash;
     
     public Symbol(Type type, String symbol) {
         this.type = type;
         this.symbol = symbol;
+        this.hash = computeHash();
     }
 
     public Symbol(String symbol) {
-        this.type = (symbol == null) ? Type.WILDCARD : Type.CONSTANT;
-        this.symbol = symbol;
+        this((symbol == null) ? Type.WILDCARD : Type.CONSTANT, symbol);
     }
 
+    // symbols are immutable, so epsilon and the wildcard can be shared
     public static Symbol epsilon() {
-        return new Symbol(EPSILON);
+        return EPSILON_SYMBOL;
     }
 
     public static Symbol wildcard() {
-        return new Symbol(null);
+        return WILDCARD_SYMBOL;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getSymbol() {
+        return symbol;
     }
 
     public boolean match(String matchingSymbol) {
@@ -46,6 +59,10 @@ public class Symbol {
 
     @Override
     public int hashCode() {
+        return hash;
+    }
+
+    private int computeHash() {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((symbol == null) ? 0 : symbol.hashCode());
@@ -0,0 +1,142 @@
+package me.kokokotlin.main.engine;
+
+import me.kokokotlin.main.engine.regex.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// interned symbols of an alphabet, every symbol gets a dense id (its index in the alphabet without duplicates)
+// the engines translate every input character once into its id and only work with ints afterwards
+// epsilon is not part of the table, it is handled separately by the engines
+// a table can contain the symbol OTHER, every character that is not in the alphabet is then mapped to its id
+// (the wildcard of a regex is a transition for every symbol including OTHER)
+public final class SymbolTable {
+    public static final int UNKNOWN = -1;
+    public static final String OTHER = "<other>";
+    private static final String PREFERRED_OTHER_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    private final List<String> alphabet;
+    private final Symbol[] symbols;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final int[] charIds;
+    private final int otherId;
+    // the characters that have a symbol of their own, in ascending order
+    private final char[] namedChars;
+
+    private SymbolTable(List<String> alphabet) {
+        List<String> distinct = new ArrayList<>();
+        char maxChar = 0;
+        for (String s: alphabet) {
+            if (s.equals(Symbol.EPSILON) || ids.containsKey(s)) continue;
+
+            ids.put(s, distinct.size());
+            distinct.add(s);
+            if (s.length() == 1) maxChar = (char) Math.max(maxChar, s.charAt(0));
+        }
+
+        this.alphabet = Collections.unmodifiableList(distinct);
+        this.symbols = distinct.stream().map(Symbol::new).toArray(Symbol[]::new);
+
+        this.otherId = ids.getOrDefault(OTHER, UNKNOWN);
+        this.charIds = new int[maxChar + 1];
+        Arrays.fill(charIds, otherId);
+        for (int id = 0; id < distinct.size(); id++) {
+            String s = distinct.get(id);
+            if (s.length() == 1) charIds[s.charAt(0)] = id;
+        }
+
+        StringBuilder named = new StringBuilder();
+        for (int c = 0; c < charIds.length; c++) {
+            if (charIds[c] != otherId) named.append((char) c);
+        }
+        this.namedChars = named.toString().toCharArray();
+    }
+
+    public static SymbolTable of(List<String> alphabet) {
+        return new SymbolTable(alphabet);
+    }
+
+    public int idOf(char c) {
+        return (c < charIds.length) ? charIds[c] : otherId;
+    }
+
+    public boolean hasOther() {
+        return otherId != UNKNOWN;
+    }
+
+    // index of the first character at or after from that is not in the alphabet, the length of the text if there is none
+    public int firstUnknown(CharSequence text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (idOf(text.charAt(i)) == UNKNOWN) return i;
+        }
+
+        return text.length();
+    }
+
+    // number of characters that are mapped to OTHER (or to no symbol if the table has no OTHER)
+    public int otherCharacterCount() {
+        return (Character.MAX_VALUE + 1) - namedChars.length;
+    }
+
+    // the index-th character (in ascending order) that is mapped to OTHER, index is in [0, otherCharacterCount())
+    public char otherCharacter(int index) {
+        int c = index;
+        for (char named: namedChars) {
+            if (named <= c) c++;
+            else break;
+        }
+
+        return (char) c;
+    }
+
+    // a character that is mapped to OTHER (or to no symbol if the table has no OTHER), it stands for OTHER in words that
+    // are generated from the automaton, e.g. samples of its language. letters and digits are preferred
+    public char otherCharacter() {
+        for (char c: PREFERRED_OTHER_CHARACTERS.toCharArray()) {
+            if (idOf(c) == otherId) return c;
+        }
+        for (char c = '!'; c < Character.MAX_VALUE; c++) {
+            if (idOf(c) == otherId) return c;
+        }
+
+        throw new IllegalStateException("Every character is in the alphabet!");
+    }
+
+    public int idOf(String symbol) {
+        return ids.getOrDefault(symbol, UNKNOWN);
+    }
+
+    public int idOf(Symbol symbol) {
+        return (symbol.getType() == Type.CONSTANT) ? idOf(symbol.getSymbol()) : UNKNOWN;
+    }
+
+    public Symbol symbol(int id) {
+        return symbols[id];
+    }
+
+    // returns the canonical symbol object, so the same object is used for all transitions with this symbol
+    public Symbol intern(String symbol) {
+        if (symbol.equals(Symbol.EPSILON)) return Symbol.epsilon();
+
+        int id = idOf(symbol);
+        if (id == UNKNOWN) throw new IllegalArgumentException(String.format("Symbol %s is not in the alphabet!", symbol));
+
+        return symbols[id];
+    }
+
+    public boolean contains(String symbol) {
+        return ids.containsKey(symbol);
+    }
+
+    public int size() {
+        return symbols.length;
+    }
+
+    public List<String> getAlphabet() {
+        return alphabet;
+    }
+}
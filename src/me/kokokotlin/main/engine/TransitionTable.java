@@ -0,0 +1,49 @@
+package me.kokokotlin.main.engine;
+
+// dense deterministic transition table: next(state, symbol) for every state and symbol id of the symbol table
+// NO_STATE as target means that there is no transition and the word is rejected
+// match and longestMatch walk the table, so every storage of a table can be used as matcher
+public interface TransitionTable extends Matcher {
+    int NO_STATE = -1;
+
+    int getStateCount();
+
+    SymbolTable getSymbolTable();
+
+    int getInitialStateIndex();
+
+    int next(int state, int symbol);
+
+    boolean isAccepting(int state);
+
+    @Override
+    default boolean match(String word) {
+        final SymbolTable symbolTable = getSymbolTable();
+
+        int state = getInitialStateIndex();
+        for (int i = 0; i < word.length() && state != NO_STATE; i++) {
+            int symbol = symbolTable.idOf(word.charAt(i));
+            state = (symbol == SymbolTable.UNKNOWN) ? NO_STATE : next(state, symbol);
+        }
+
+        return state != NO_STATE && isAccepting(state);
+    }
+
+    @Override
+    default int longestMatch(CharSequence text, int from) {
+        final SymbolTable symbolTable = getSymbolTable();
+
+        int state = getInitialStateIndex();
+        int longest = isAccepting(state) ? 0 : -1;
+        for (int i = from; i < text.length(); i++) {
+            int symbol = symbolTable.idOf(text.charAt(i));
+            if (symbol == SymbolTable.UNKNOWN) break;
+
+            state = next(state, symbol);
+            if (state == NO_STATE) break;
+            if (isAccepting(state)) longest = i - from + 1;
+        }
+
+        return longest;
+    }
+}
@@ -1,38 +1,59 @@
 package me.kokokotlin.main.engine.graphviz;
 
 import me.kokokotlin.main.engine.AutomatonBase;
+import me.kokokotlin.main.engine.State;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
 
 public class DotEncoder {
+    private static final int BUFFER_SIZE = 1 << 16;
+
     public static void automatonToDotfile(AutomatonBase automaton, Path outputPath) {
-        writeOut(outputPath, automaton.toDotRepr());
+        automatonToDotfile(automaton, outputPath, Integer.MAX_VALUE);
     }
 
-    public static void automatonToPng(AutomatonBase automaton, Path pngPath) {
-        Path tempDotPath = Paths.get("__automaton__.dot");
-        automatonToDotfile(automaton, tempDotPath);
+    public static void automatonToDotfile(AutomatonBase automaton, Path outputPath, int maxStates) {
+        automatonToDotfile(automaton, outputPath, List.of(), maxStates);
+    }
 
-        try {
-            Runtime.getRuntime().exec(String.format("dot -Tpng %s -o %s", tempDotPath.toAbsolutePath(), pngPath.toAbsolutePath()));
-            Files.delete(tempDotPath);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    public static void automatonToDotfile(AutomatonBase automaton, Path outputPath, Collection<State> highlighted) {
+        automatonToDotfile(automaton, outputPath, highlighted, Integer.MAX_VALUE);
     }
 
-    private static void writeOut(Path outputPath, String stringRepr) {
+    public static void automatonToDotfile(AutomatonBase automaton, Path outputPath, Collection<State> highlighted, int maxStates) {
         try {
-            BufferedWriter bWriter = Files.newBufferedWriter(outputPath);
-            bWriter.write(stringRepr);
-            bWriter.flush();
+            writeOut(automaton, outputPath, highlighted, maxStates, true);
         } catch (IOException e) {
             System.err.printf("Couldn't create output dot file! %s\n", e.getMessage());
         }
     }
 
+    public static boolean automatonToPng(AutomatonBase automaton, Path pngPath) {
+        return automatonToPng(automaton, pngPath, Integer.MAX_VALUE);
+    }
+
+    public static boolean automatonToPng(AutomatonBase automaton, Path pngPath, int maxStates) {
+        GraphvizRenderer.RenderResult result = new GraphvizRenderer(1, GraphvizRenderer.DEFAULT_TIMEOUT, maxStates, true).render(automaton, pngPath);
+        if (!result.isSuccess()) System.err.printf("Couldn't render %s! %s\n", pngPath, result.describe());
+
+        return result.isSuccess();
+    }
+
+    // the graph is written directly into the file channel, the writer only buffers a small part of it
+    public static void writeOut(AutomatonBase automaton, Path outputPath, Collection<State> highlighted, int maxStates, boolean collapse) throws IOException {
+        try (FileChannel channel = FileChannel.open(outputPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            automaton.writeDot(writer, highlighted, maxStates, collapse);
+        }
+    }
+
 }
@@ -1,7 +1,13 @@
 package me.kokokotlin.main.engine.graphviz;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Queue;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.Map;
@@ -11,41 +17,96 @@ import me.kokokotlin.main.engine.State;
 import me.kokokotlin.main.engine.Symbol;
 
 public class DotUtils {
+    public static final String COLLAPSED_STATE_NAME = "__collapsed__";
+
     public static String getStartStateName(int index) {
         return String.format("__start%d__", index);
     }
 
-    public static void writeTransitions(StringBuilder sink, List<State> states) {
+    // selects at most maxStates states in breadth first order beginning at the initial states,
+    // such that the part of the automaton that is drawn is connected to the start
+    // states that aren't reachable are added afterwards in the order of the state list
+    public static Set<State> selectStates(List<State> initials, List<State> states, int maxStates) {
+        Set<State> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+        Queue<State> queue = new ArrayDeque<>();
+
+        for (State s: initials) {
+            if (selected.size() >= maxStates) return selected;
+            if (selected.add(s)) queue.add(s);
+        }
+
+        while (!queue.isEmpty()) {
+            State current = queue.poll();
+            for (List<State> destStates: current.getTransition().values()) {
+                for (State s: destStates) {
+                    if (selected.size() >= maxStates) return selected;
+                    if (selected.add(s)) queue.add(s);
+                }
+            }
+        }
+
+        for (State s: states) {
+            if (selected.size() >= maxStates) break;
+            selected.add(s);
+        }
+
+        return selected;
+    }
+
+    public static void writeTransitions(Appendable sink, List<State> states) throws IOException {
+        writeTransitions(sink, states, null, false);
+    }
+
+    // only the transitions of the selected states are written (all states if selected is null)
+    // transitions to other states either point to one collapsed node or are left out
+    public static void writeTransitions(Appendable sink, List<State> states, Set<State> selected, boolean collapse) throws IOException {
         for (State state: states) {
-            // group transitions be destination state
-            Map<State, Set<Symbol>> groupedTransitionChars = new HashMap<>();
+            if (selected != null && !selected.contains(state)) continue;
+
+            // group transitions be destination state, states are distinct even if they have the same name
+            // the collapsed states are one destination, they are written last
+            Map<State, Set<Symbol>> groupedTransitionChars = new IdentityHashMap<>();
+            List<State> destinations = new ArrayList<>();
+            Set<Symbol> collapsedChars = new HashSet<>();
             for (var entry: state.getTransition().entrySet()) {
                 Symbol symbol = entry.getKey();
                 List<State> destStates = entry.getValue();
 
                 for (State s: destStates) {
-                    Set<Symbol> transitionSymbols = groupedTransitionChars.getOrDefault(s, new HashSet<>());
-                    transitionSymbols.add(symbol);
-                    groupedTransitionChars.put(s, transitionSymbols);
+                    if (selected != null && !selected.contains(s)) {
+                        if (collapse) collapsedChars.add(symbol);
+                        continue;
+                    }
+
+                    groupedTransitionChars.computeIfAbsent(s, k -> {
+                        destinations.add(k);
+                        return new HashSet<>();
+                    }).add(symbol);
                 }
             }
 
             // write all characters to the same state as a label on the same arrow to make the image more clean
-            for (var entry: groupedTransitionChars.entrySet()) {
-                State destState = entry.getKey();
-                String symbols = entry.getValue().stream().map(s -> s.dotRepr()).collect(Collectors.joining(","));
-
-                sink.append("\t");
-                sink.append(state.getName());
-                sink.append(" -> ");
-                sink.append(destState.getName());
-                sink.append(String.format(" [label = \" %s\"]", symbols));
-                sink.append("\n");
-            }
+            for (State destination: destinations) writeTransition(sink, state.getName(), destination.getName(), groupedTransitionChars.get(destination));
+            if (!collapsedChars.isEmpty()) writeTransition(sink, state.getName(), COLLAPSED_STATE_NAME, collapsedChars);
         }
     }
 
-    public static void writeInitialAndFinalStates(StringBuilder sink, List<State> initials, List<State> finals) {
+    private static void writeTransition(Appendable sink, String sourceName, String destName, Set<Symbol> symbols) throws IOException {
+        sink.append("\t");
+        sink.append(sourceName);
+        sink.append(" -> ");
+        sink.append(destName);
+        sink.append(String.format(" [label = \" %s\"]", symbols.stream().map(s -> s.dotRepr()).collect(Collectors.joining(","))));
+        sink.append("\n");
+    }
+
+    public static void writeCollapsedState(Appendable sink, int collapsedCount) throws IOException {
+        sink.append("\t");
+        sink.append(COLLAPSED_STATE_NAME);
+        sink.append(String.format(" [shape = box, style = dashed, label = \"+%d states\"]\n", collapsedCount));
+    }
+
+    public static void writeInitialAndFinalStates(Appendable sink, List<State> initials, List<State> finals) throws IOException {
 
         for(int i = 0; i < initials.size(); i++) {
             sink.append("\t");
@@ -69,4 +130,12 @@ public class DotUtils {
             sink.append("\n");
         }
     }
+
+    public static void writeHighlightedStates(Appendable sink, Collection<State> highlighted) throws IOException {
+        for (State s: highlighted) {
+            sink.append("\t");
+            sink.append(s.getName());
+            sink.append(" [style = filled, fillcolor = gold]\n");
+        }
+    }
 }
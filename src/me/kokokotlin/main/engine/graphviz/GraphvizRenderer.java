@@ -0,0 +1,156 @@
+package me.kokokotlin.main.engine.graphviz;
+
+import me.kokokotlin.main.engine.AutomatonBase;
+import me.kokokotlin.main.utils.Tuple;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// renders automata with the dot executable of graphviz
+// every automaton gets its own temporary dot file and dot process, up to `parallelism` processes run at the same time
+// the temporary files are only deleted after the process has terminated
+public class GraphvizRenderer {
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(2);
+    public static final int NO_EXIT_CODE = -1;
+
+    private final int parallelism;
+    private final Duration timeout;
+    private final int maxStates;
+    private final boolean collapse;
+
+    public static class RenderResult {
+        private final Path output;
+        private final int exitCode;
+        private final boolean timedOut;
+        private final String errorOutput;
+
+        public RenderResult(Path output, int exitCode, boolean timedOut, String errorOutput) {
+            this.output = output;
+            this.exitCode = exitCode;
+            this.timedOut = timedOut;
+            this.errorOutput = errorOutput;
+        }
+
+        public boolean isSuccess() {
+            return !timedOut && exitCode == 0;
+        }
+
+        public String describe() {
+            if (timedOut) return "dot timed out";
+            if (exitCode == NO_EXIT_CODE) return errorOutput;
+            return String.format("dot exited with code %d%s", exitCode, errorOutput.isEmpty() ? "" : ": " + errorOutput);
+        }
+
+        public Path getOutput() {
+            return output;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        public String getErrorOutput() {
+            return errorOutput;
+        }
+    }
+
+    // maxStates limits the number of drawn states, see AutomatonBase.writeDot
+    public GraphvizRenderer(int parallelism, Duration timeout, int maxStates, boolean collapse) {
+        if (parallelism <= 0) throw new IllegalArgumentException("The renderer needs at least one process!");
+
+        this.parallelism = parallelism;
+        this.timeout = timeout;
+        this.maxStates = maxStates;
+        this.collapse = collapse;
+    }
+
+    // the output format is taken from the file extension of the output path (png if there is none)
+    private static String formatOf(Path output) {
+        String fileName = output.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+
+        return (dot == -1 || dot == fileName.length() - 1) ? "png" : fileName.substring(dot + 1);
+    }
+
+    public RenderResult render(AutomatonBase automaton, Path output) {
+        Path dotFile = null;
+        Path errorFile = null;
+
+        try {
+            dotFile = Files.createTempFile("automaton", ".dot");
+            errorFile = Files.createTempFile("automaton", ".log");
+            DotEncoder.writeOut(automaton, dotFile, List.of(), maxStates, collapse);
+
+            Process process = new ProcessBuilder("dot", "-T" + formatOf(output), dotFile.toAbsolutePath().toString(), "-o", output.toAbsolutePath().toString())
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(errorFile.toFile())
+                    .start();
+
+            if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly().waitFor();
+                return new RenderResult(output, NO_EXIT_CODE, true, "");
+            }
+
+            return new RenderResult(output, process.exitValue(), false, Files.readString(errorFile).trim());
+        } catch (IOException e) {
+            return new RenderResult(output, NO_EXIT_CODE, false, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new RenderResult(output, NO_EXIT_CODE, false, "Interrupted while waiting for dot!");
+        } finally {
+            deleteQuietly(dotFile);
+            deleteQuietly(errorFile);
+        }
+    }
+
+    // renders all automata in parallel, the results are in the same order as the jobs
+    public List<RenderResult> renderAll(List<Tuple<AutomatonBase, Path>> jobs) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, jobs.size())));
+
+        try {
+            List<Callable<RenderResult>> tasks = new ArrayList<>();
+            for (var job: jobs) tasks.add(() -> render(job.getFirst(), job.getSecond()));
+
+            List<RenderResult> results = new ArrayList<>();
+            List<Future<RenderResult>> futures = executor.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new RenderResult(jobs.get(i).getSecond(), NO_EXIT_CODE, false, String.valueOf(e.getCause())));
+                }
+            }
+
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rendering!", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) return;
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.printf("Couldn't delete temporary file %s! %s\n", path, e.getMessage());
+        }
+    }
+}
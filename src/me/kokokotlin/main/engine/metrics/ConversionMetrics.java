@@ -0,0 +1,68 @@
+package me.kokokotlin.main.engine.metrics;
+
+public class ConversionMetrics implements ConversionMetricsMBean {
+    private final Histogram duration = new Histogram();
+
+    private volatile long lastInputStateCount;
+    private volatile long lastOutputStateCount;
+    private volatile long lastOutputTransitionCount;
+    private volatile long lastOutputFootprintBytes;
+
+    void recordConversion(long nanos, long inputStates, long outputStates, long outputTransitions, long footprintBytes) {
+        duration.record(nanos);
+        lastInputStateCount = inputStates;
+        lastOutputStateCount = outputStates;
+        lastOutputTransitionCount = outputTransitions;
+        lastOutputFootprintBytes = footprintBytes;
+    }
+
+    @Override
+    public long getConversionCount() {
+        return duration.getCount();
+    }
+
+    @Override
+    public long getTotalConversionNanos() {
+        return duration.getSum();
+    }
+
+    @Override
+    public double getMeanConversionNanos() {
+        return duration.getMean();
+    }
+
+    @Override
+    public long getConversionP99Nanos() {
+        return duration.getQuantile(0.99);
+    }
+
+    @Override
+    public long[] getConversionHistogram() {
+        return duration.getBuckets();
+    }
+
+    @Override
+    public long getLastInputStateCount() {
+        return lastInputStateCount;
+    }
+
+    @Override
+    public long getLastOutputStateCount() {
+        return lastOutputStateCount;
+    }
+
+    @Override
+    public long getLastOutputTransitionCount() {
+        return lastOutputTransitionCount;
+    }
+
+    @Override
+    public long getLastOutputFootprintBytes() {
+        return lastOutputFootprintBytes;
+    }
+
+    @Override
+    public void reset() {
+        duration.reset();
+    }
+}
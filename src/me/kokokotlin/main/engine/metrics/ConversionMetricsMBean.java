@@ -0,0 +1,16 @@
+package me.kokokotlin.main.engine.metrics;
+
+public interface ConversionMetricsMBean {
+    long getConversionCount();
+    long getTotalConversionNanos();
+    double getMeanConversionNanos();
+    long getConversionP99Nanos();
+    long[] getConversionHistogram();
+
+    long getLastInputStateCount();
+    long getLastOutputStateCount();
+    long getLastOutputTransitionCount();
+    long getLastOutputFootprintBytes();
+
+    void reset();
+}
@@ -0,0 +1,125 @@
+package me.kokokotlin.main.engine.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class EngineMetrics implements EngineMetricsMBean {
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder transitions = new LongAdder();
+    private final Histogram matchLatency = new Histogram();
+    private final Histogram activeStates = new Histogram();
+    private final AtomicLong maxActiveStates = new AtomicLong();
+
+    private final LongAdder automata = new LongAdder();
+    private volatile long lastStateCount;
+    private volatile long lastTransitionCount;
+    private volatile long lastFootprintBytes;
+
+    void recordMatch(long nanos, int symbols, boolean isAccepted) {
+        matches.increment();
+        if (isAccepted) accepted.increment();
+        transitions.add(symbols);
+        matchLatency.record(nanos);
+    }
+
+    void recordActiveStates(int count) {
+        activeStates.record(count);
+        maxActiveStates.accumulateAndGet(count, Math::max);
+    }
+
+    void recordAutomaton(long stateCount, long transitionCount, long footprintBytes) {
+        automata.increment();
+        lastStateCount = stateCount;
+        lastTransitionCount = transitionCount;
+        lastFootprintBytes = footprintBytes;
+    }
+
+    @Override
+    public long getMatchCount() {
+        return matches.sum();
+    }
+
+    @Override
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    @Override
+    public long getTransitionCount() {
+        return transitions.sum();
+    }
+
+    // throughput while matching, the time between matches is not taken into account
+    @Override
+    public double getTransitionsPerSecond() {
+        long nanos = matchLatency.getSum();
+        return (nanos == 0) ? 0.0 : getTransitionCount() * 1e9 / nanos;
+    }
+
+    @Override
+    public double getMeanMatchLatencyNanos() {
+        return matchLatency.getMean();
+    }
+
+    @Override
+    public long getMatchLatencyP50Nanos() {
+        return matchLatency.getQuantile(0.5);
+    }
+
+    @Override
+    public long getMatchLatencyP99Nanos() {
+        return matchLatency.getQuantile(0.99);
+    }
+
+    @Override
+    public long[] getMatchLatencyHistogram() {
+        return matchLatency.getBuckets();
+    }
+
+    @Override
+    public long getMaxActiveStates() {
+        return maxActiveStates.get();
+    }
+
+    @Override
+    public double getMeanActiveStates() {
+        return activeStates.getMean();
+    }
+
+    @Override
+    public long getActiveStatesP99() {
+        return activeStates.getQuantile(0.99);
+    }
+
+    @Override
+    public long getAutomatonCount() {
+        return automata.sum();
+    }
+
+    @Override
+    public long getLastStateCount() {
+        return lastStateCount;
+    }
+
+    @Override
+    public long getLastTransitionCount() {
+        return lastTransitionCount;
+    }
+
+    @Override
+    public long getLastFootprintBytes() {
+        return lastFootprintBytes;
+    }
+
+    @Override
+    public void reset() {
+        matches.reset();
+        accepted.reset();
+        transitions.reset();
+        matchLatency.reset();
+        activeStates.reset();
+        maxActiveStates.set(0);
+        automata.reset();
+    }
+}
@@ -0,0 +1,24 @@
+package me.kokokotlin.main.engine.metrics;
+
+public interface EngineMetricsMBean {
+    long getMatchCount();
+    long getAcceptedCount();
+    long getTransitionCount();
+    double getTransitionsPerSecond();
+
+    double getMeanMatchLatencyNanos();
+    long getMatchLatencyP50Nanos();
+    long getMatchLatencyP99Nanos();
+    long[] getMatchLatencyHistogram();
+
+    long getMaxActiveStates();
+    double getMeanActiveStates();
+    long getActiveStatesP99();
+
+    long getAutomatonCount();
+    long getLastStateCount();
+    long getLastTransitionCount();
+    long getLastFootprintBytes();
+
+    void reset();
+}
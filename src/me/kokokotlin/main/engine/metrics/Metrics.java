@@ -0,0 +1,118 @@
+package me.kokokotlin.main.engine.metrics;
+
+import me.kokokotlin.main.engine.AutomatonBase;
+import me.kokokotlin.main.engine.DFA;
+import me.kokokotlin.main.engine.NFA;
+import me.kokokotlin.main.engine.State;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// entry point for the instrumentation of the engines
+// metrics are only collected if the jvm is started with -Dautomaton.metrics=true
+// every call site is guarded by ENABLED, which is a static final field, so the jit removes the instrumentation when disabled
+public class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("automaton.metrics");
+
+    private static final String DOMAIN = "me.kokokotlin.automaton";
+
+    public enum Conversion {
+        ENFA_TO_NFA,
+        NFA_TO_DFA,
+        ENFA_TO_DFA,
+    }
+
+    private static final EngineMetrics DFA_METRICS = new EngineMetrics();
+    private static final EngineMetrics NFA_METRICS = new EngineMetrics();
+    private static final EngineMetrics ENFA_METRICS = new EngineMetrics();
+    private static final Map<Conversion, ConversionMetrics> CONVERSION_METRICS = new EnumMap<>(Conversion.class);
+    private static final ReloadMetrics RELOAD_METRICS = new ReloadMetrics();
+
+    static {
+        for (Conversion conversion: Conversion.values()) CONVERSION_METRICS.put(conversion, new ConversionMetrics());
+        if (ENABLED) registerMBeans();
+    }
+
+    private static void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            server.registerMBean(DFA_METRICS, new ObjectName(DOMAIN + ":type=EngineMetrics,engine=DFA"));
+            server.registerMBean(NFA_METRICS, new ObjectName(DOMAIN + ":type=EngineMetrics,engine=NFA"));
+            server.registerMBean(ENFA_METRICS, new ObjectName(DOMAIN + ":type=EngineMetrics,engine=ENFA"));
+
+            for (var entry: CONVERSION_METRICS.entrySet()) {
+                server.registerMBean(entry.getValue(), new ObjectName(DOMAIN + ":type=ConversionMetrics,conversion=" + entry.getKey()));
+            }
+            server.registerMBean(RELOAD_METRICS, new ObjectName(DOMAIN + ":type=ReloadMetrics"));
+        } catch (JMException e) {
+            System.err.printf("Couldn't register metrics MBeans! %s\n", e.getMessage());
+        }
+    }
+
+    public static EngineMetrics forEngine(AutomatonBase automaton) {
+        if (automaton instanceof DFA) return DFA_METRICS;
+        if (automaton instanceof NFA) return NFA_METRICS;
+        return ENFA_METRICS;
+    }
+
+    public static ConversionMetrics forConversion(Conversion conversion) {
+        return CONVERSION_METRICS.get(conversion);
+    }
+
+    public static ReloadMetrics forReloads() {
+        return RELOAD_METRICS;
+    }
+
+    public static void recordReload(long nanos) {
+        RELOAD_METRICS.recordReload(nanos);
+    }
+
+    public static void recordReloadFailure(String message) {
+        RELOAD_METRICS.recordFailure(message);
+    }
+
+    public static void recordMatch(AutomatonBase automaton, long nanos, int symbols, boolean accepted) {
+        forEngine(automaton).recordMatch(nanos, symbols, accepted);
+    }
+
+    public static void recordActiveStates(AutomatonBase automaton, int count) {
+        forEngine(automaton).recordActiveStates(count);
+    }
+
+    public static void recordAutomaton(AutomatonBase automaton) {
+        forEngine(automaton).recordAutomaton(automaton.getStates().size(), automaton.getTransitionCount(), estimateFootprint(automaton));
+    }
+
+    public static void recordConversion(Conversion conversion, long nanos, AutomatonBase input, AutomatonBase output) {
+        forConversion(conversion).recordConversion(nanos,
+                input.getStates().size(),
+                output.getStates().size(),
+                output.getTransitionCount(),
+                estimateFootprint(output));
+    }
+
+    // rough estimate of the retained heap of the state graph (64 bit jvm with compressed oops)
+    // state: object + HashMap + table, per symbol: map node + symbol + list + backing array
+    public static long estimateFootprint(AutomatonBase automaton) {
+        long bytes = 0;
+
+        for (State state: automaton.getStates()) {
+            int symbols = state.getTransition().size();
+            int tableSize = Integer.highestOneBit(Math.max(1, (int) (symbols / 0.75f)) * 2 - 1);
+
+            bytes += 24 + 48 + 16 + 4L * tableSize;
+            for (List<State> destStates: state.getTransition().values()) {
+                bytes += 32 + 24 + 24;
+                if (!destStates.isEmpty()) bytes += 16 + 4L * Math.max(10, destStates.size());
+            }
+        }
+
+        return bytes;
+    }
+}
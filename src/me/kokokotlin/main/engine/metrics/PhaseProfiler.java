@@ -0,0 +1,185 @@
+package me.kokokotlin.main.engine.metrics;
+
+import me.kokokotlin.main.engine.AutomatonBase;
+import me.kokokotlin.main.engine.CompactAutomaton;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// measures the phases of one run of the command line program (loading, conversions, dot generation, matching, ...)
+// every phase records the wall time, the cpu time and the bytes allocated by the current thread,
+// phases that produce an automaton also record its size
+// the work of other threads (e.g. of the ParallelLoader) only shows up in the wall time
+public class PhaseProfiler {
+    public enum Format {
+        TEXT,
+        JSON;
+
+        public static Format of(String name) {
+            for (Format format: values()) {
+                if (format.name().equalsIgnoreCase(name)) return format;
+            }
+
+            throw new IllegalArgumentException(String.format("Unknown profile format %s! Expected text or json.", name));
+        }
+    }
+
+    public static class Phase {
+        private final String name;
+        private final long wallNanos;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+        private String automatonType = null;
+        private int stateCount = -1;
+        private int transitionCount = -1;
+        private int epsilonTransitionCount = -1;
+
+        Phase(String name, long wallNanos, long cpuNanos, long allocatedBytes) {
+            this.name = name;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        // -1 if the jvm doesn't support cpu time measurement
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        // -1 if the jvm doesn't support allocation measurement
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public boolean hasAutomaton() {
+            return automatonType != null;
+        }
+    }
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final com.sun.management.ThreadMXBean allocations;
+    private final List<Phase> phases = new ArrayList<>();
+
+    public PhaseProfiler() {
+        if (threads.isCurrentThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) threads.setThreadCpuTimeEnabled(true);
+
+        com.sun.management.ThreadMXBean allocationBean = null;
+        if (threads instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported()) {
+            if (!bean.isThreadAllocatedMemoryEnabled()) bean.setThreadAllocatedMemoryEnabled(true);
+            allocationBean = bean;
+        }
+        allocations = allocationBean;
+    }
+
+    private long cpuTime() {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    private long allocatedBytes() {
+        return (allocations != null) ? allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    public <T> T measure(String name, Supplier<T> work) {
+        final long allocatedStart = allocatedBytes();
+        final long cpuStart = cpuTime();
+        final long wallStart = System.nanoTime();
+
+        T result = work.get();
+
+        final long wall = System.nanoTime() - wallStart;
+        final long cpu = (cpuStart < 0) ? -1 : cpuTime() - cpuStart;
+        final long allocated = (allocatedStart < 0) ? -1 : allocatedBytes() - allocatedStart;
+        Phase phase = new Phase(name, wall, cpu, allocated);
+        phases.add(phase);
+
+        // the size is determined after the measurement, the compact representation is cached by the automaton
+        if (result instanceof AutomatonBase automaton) {
+            CompactAutomaton compact = automaton.toCompact();
+            phase.automatonType = automaton.getClass().getSimpleName();
+            phase.stateCount = compact.getStateCount();
+            phase.transitionCount = compact.getTransitionCount();
+            phase.epsilonTransitionCount = compact.getEpsilonTransitionCount();
+        }
+
+        return result;
+    }
+
+    public void run(String name, Runnable work) {
+        measure(name, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public List<Phase> getPhases() {
+        return phases;
+    }
+
+    public void report(Format format, PrintStream out) {
+        switch (format) {
+            case TEXT -> reportText(out);
+            case JSON -> reportJson(out);
+        }
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 0) return "n/a";
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KiB", bytes / 1024.0);
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static String formatNanos(long nanos) {
+        return (nanos < 0) ? "n/a" : String.format("%.3f ms", nanos / 1e6);
+    }
+
+    private void reportText(PrintStream out) {
+        out.printf("%-16s %14s %14s %14s   %s\n", "phase", "wall", "cpu", "allocated", "automaton");
+        long wall = 0, cpu = 0, allocated = 0;
+        for (Phase phase: phases) {
+            String size = phase.hasAutomaton()
+                    ? String.format("%s, %d states, %d transitions, %d epsilon transitions", phase.automatonType,
+                        phase.stateCount, phase.transitionCount, phase.epsilonTransitionCount)
+                    : "";
+            out.println(String.format("%-16s %14s %14s %14s   %s", phase.name, formatNanos(phase.wallNanos), formatNanos(phase.cpuNanos),
+                    formatBytes(phase.allocatedBytes), size).stripTrailing());
+
+            wall += phase.wallNanos;
+            cpu = (cpu < 0 || phase.cpuNanos < 0) ? -1 : cpu + phase.cpuNanos;
+            allocated = (allocated < 0 || phase.allocatedBytes < 0) ? -1 : allocated + phase.allocatedBytes;
+        }
+        out.printf("%-16s %14s %14s %14s\n", "total", formatNanos(wall), formatNanos(cpu), formatBytes(allocated));
+    }
+
+    // one object with the list of phases, times are in nanoseconds, -1 means not supported by the jvm
+    private void reportJson(PrintStream out) {
+        StringBuilder json = new StringBuilder("{\"phases\":[");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            if (i > 0) json.append(',');
+
+            json.append(String.format("{\"name\":\"%s\",\"wallNanos\":%d,\"cpuNanos\":%d,\"allocatedBytes\":%d",
+                    phase.name, phase.wallNanos, phase.cpuNanos, phase.allocatedBytes));
+            if (phase.hasAutomaton()) {
+                json.append(String.format(",\"automaton\":{\"type\":\"%s\",\"states\":%d,\"transitions\":%d,\"epsilonTransitions\":%d}",
+                        phase.automatonType, phase.stateCount, phase.transitionCount, phase.epsilonTransitionCount));
+            }
+            json.append('}');
+        }
+        json.append("]}");
+
+        out.println(json);
+    }
+}
@@ -0,0 +1,63 @@
+package me.kokokotlin.main.engine.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class ReloadMetrics implements ReloadMetricsMBean {
+    private final Histogram duration = new Histogram();
+    private final LongAdder failures = new LongAdder();
+
+    private volatile long lastReloadNanos;
+    private volatile String lastFailure = "";
+
+    void recordReload(long nanos) {
+        duration.record(nanos);
+        lastReloadNanos = nanos;
+    }
+
+    void recordFailure(String message) {
+        failures.increment();
+        lastFailure = message;
+    }
+
+    @Override
+    public long getReloadCount() {
+        return duration.getCount();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public double getMeanReloadNanos() {
+        return duration.getMean();
+    }
+
+    @Override
+    public long getReloadP99Nanos() {
+        return duration.getQuantile(0.99);
+    }
+
+    @Override
+    public long getLastReloadNanos() {
+        return lastReloadNanos;
+    }
+
+    @Override
+    public long[] getReloadHistogram() {
+        return duration.getBuckets();
+    }
+
+    @Override
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    @Override
+    public void reset() {
+        duration.reset();
+        failures.reset();
+        lastFailure = "";
+    }
+}
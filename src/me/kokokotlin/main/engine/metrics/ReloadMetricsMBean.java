@@ -0,0 +1,13 @@
+package me.kokokotlin.main.engine.metrics;
+
+public interface ReloadMetricsMBean {
+    long getReloadCount();
+    long getFailureCount();
+    double getMeanReloadNanos();
+    long getReloadP99Nanos();
+    long getLastReloadNanos();
+    long[] getReloadHistogram();
+    String getLastFailure();
+
+    void reset();
+}
@@ -1,10 +1,13 @@
 package me.kokokotlin.main.engine.regex;
 
+import me.kokokotlin.main.engine.SymbolTable;
+
 import java.util.*;
 
 public class RegexStack {
     private final Deque<RegexState> stack = new ArrayDeque<>();
     private final Set<String> alphabet = new HashSet<>();
+    private SymbolTable symbolTable;
 
     public RegexStack(String regex) {
         buildStack(regex);
@@ -30,14 +33,14 @@ public class RegexStack {
                     stack.push(s);
                 }
                 case "+" -> {
-                    RegexState s = stack.pollLast();
+                    RegexState s = stack.poll();
                     if (s == null) {
                         errorIndex = i;
                         break;
                     }
-                    s.frequency = SymbolFrequency.NONE_OR_MORE;
                     // + == one + none_or_more
-                    stack.push(new RegexState(s.symbol));
+                    stack.push(s.copy());
+                    s.frequency = SymbolFrequency.NONE_OR_MORE;
                     stack.push(s);
                 }
                 case "?" -> {
@@ -73,4 +76,15 @@ public class RegexStack {
     public List<String> getAlphabet() {
         return alphabet.stream().toList();
     }
+
+    // shared by all automata that are built from this regex
+    // a wildcard also has to match the characters that don't occur in the regex, so they get the symbol OTHER
+    public SymbolTable getSymbolTable() {
+        if (symbolTable == null) {
+            List<String> symbols = new ArrayList<>(getAlphabet());
+            if (stack.stream().anyMatch(s -> s.type == Type.WILDCARD)) symbols.add(SymbolTable.OTHER);
+            symbolTable = SymbolTable.of(symbols);
+        }
+        return symbolTable;
+    }
 }
@@ -1,6 +1,7 @@
 package me.kokokotlin.main.engine.regex;
 
 import me.kokokotlin.main.engine.Symbol;
+import me.kokokotlin.main.engine.SymbolTable;
 
 public class RegexState {
     public String symbol;
@@ -19,9 +20,16 @@ public class RegexState {
         return r;
     }
 
-    public Symbol toSymbol() {
+    public RegexState copy() {
+        RegexState r = new RegexState(symbol);
+        r.type = type;
+        r.frequency = frequency;
+        return r;
+    }
+
+    public Symbol toSymbol(SymbolTable symbolTable) {
         if (type == Type.WILDCARD) return Symbol.wildcard();
-        else return new Symbol(this.symbol);
+        else return symbolTable.intern(this.symbol);
     }
 
     @Override
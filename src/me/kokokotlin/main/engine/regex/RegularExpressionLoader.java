@@ -2,15 +2,21 @@ package me.kokokotlin.main.engine.regex;
 
 import me.kokokotlin.main.engine.DFA;
 import me.kokokotlin.main.engine.ENFA;
+import me.kokokotlin.main.engine.Matcher;
 
 // Idea: create an Epsilon-NFA from the regular expression and then
-// construct an equivalent NFA and then DFA
+// construct an equivalent DFA (the subset construction closes the subsets under epsilon transitions)
 // Supported symbols:
 // wildcard: .
 // Kleene-Star: *
 // Kleene-Plus: +
 // Optional: ?
+// for matching only, compile() skips the automaton and returns a bit parallel matcher, see ShiftAndMatcher
 public class RegularExpressionLoader {
+    public static Matcher compile(String regex) {
+        return ShiftAndMatcher.compile(regex);
+    }
+
     public static DFA loadFromRegex(String regex) {
         return ENFA.fromRegex(regex).toDFA();
     }
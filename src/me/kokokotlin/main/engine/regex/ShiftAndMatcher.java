@@ -0,0 +1,250 @@
+package me.kokokotlin.main.engine.regex;
+
+import me.kokokotlin.main.engine.Matcher;
+import me.kokokotlin.main.engine.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+
+// bit parallel (Shift-And) matcher for the linear patterns of RegexStack, no automaton is constructed
+// bit j of the state is set if the pattern is ready to read its element j, bit m (m elements) means the whole pattern
+// was read. reading a character moves every ready bit whose element matches the character one position further
+// (starred elements also stay ready) and then every ready element that can be skipped (? and *) also makes the
+// next element ready. this closure over runs of skippable elements is done with one subtraction:
+//   rf = ready | F, ready |= O & (~(rf - I) ^ rf), ready |= (ready & F) << 1
+// where O are the skippable elements and I and F the first and the last element of every run of them
+// patterns with up to 63 elements use a single long, longer patterns an array of longs
+public abstract class ShiftAndMatcher implements Matcher {
+    public static final int MAX_SINGLE_WORD_ELEMENTS = Long.SIZE - 1;
+
+    protected final SymbolTable symbolTable;
+    protected final int elementCount;
+
+    protected ShiftAndMatcher(SymbolTable symbolTable, int elementCount) {
+        this.symbolTable = symbolTable;
+        this.elementCount = elementCount;
+    }
+
+    public static ShiftAndMatcher compile(String regex) {
+        return compile(new RegexStack(regex));
+    }
+
+    public static ShiftAndMatcher compile(RegexStack stack) {
+        Pattern pattern = new Pattern(stack);
+        return (pattern.elementCount <= MAX_SINGLE_WORD_ELEMENTS) ? new SingleWord(pattern) : new MultiWord(pattern);
+    }
+
+    public int getElementCount() {
+        return elementCount;
+    }
+
+    // the masks of the pattern as bitsets over the element positions, converted to the word layout by the matchers
+    private static class Pattern {
+        final SymbolTable symbolTable;
+        final int elementCount;
+        final BitSet[] symbolMasks;
+        final BitSet wildcards = new BitSet();
+        final BitSet stars = new BitSet();
+        final BitSet skippable = new BitSet();
+        final BitSet runStarts = new BitSet();
+        final BitSet runEnds = new BitSet();
+
+        Pattern(RegexStack stack) {
+            symbolTable = stack.getSymbolTable();
+
+            // the bottom of the stack is the first element of the regex
+            List<RegexState> elements = new ArrayList<>(stack.getStack().size());
+            for (Iterator<RegexState> it = stack.getStack().descendingIterator(); it.hasNext(); ) elements.add(it.next());
+            elementCount = elements.size();
+
+            symbolMasks = new BitSet[symbolTable.size()];
+            for (int id = 0; id < symbolMasks.length; id++) symbolMasks[id] = new BitSet();
+
+            for (int j = 0; j < elementCount; j++) {
+                RegexState element = elements.get(j);
+
+                if (element.type == Type.WILDCARD) wildcards.set(j);
+                else symbolMasks[symbolTable.idOf(element.symbol)].set(j);
+
+                if (element.frequency == SymbolFrequency.NONE_OR_MORE) stars.set(j);
+                if (element.frequency != SymbolFrequency.EXACTLY_ONE) skippable.set(j);
+            }
+
+            for (int j = skippable.nextSetBit(0); j >= 0; j = skippable.nextSetBit(j + 1)) {
+                if (j == 0 || !skippable.get(j - 1)) runStarts.set(j);
+                if (!skippable.get(j + 1)) runEnds.set(j);
+            }
+
+            // a wildcard matches every symbol
+            for (BitSet mask: symbolMasks) mask.or(wildcards);
+        }
+    }
+
+    private static final class SingleWord extends ShiftAndMatcher {
+        private final long[] symbolMasks;
+        private final long wildcards;
+        private final long stars;
+        private final long skippable;
+        private final long runStarts;
+        private final long runEnds;
+        private final long accepting;
+        private final long initial;
+
+        SingleWord(Pattern pattern) {
+            super(pattern.symbolTable, pattern.elementCount);
+
+            symbolMasks = new long[pattern.symbolMasks.length];
+            for (int id = 0; id < symbolMasks.length; id++) symbolMasks[id] = toLong(pattern.symbolMasks[id]);
+            wildcards = toLong(pattern.wildcards);
+            stars = toLong(pattern.stars);
+            skippable = toLong(pattern.skippable);
+            runStarts = toLong(pattern.runStarts);
+            runEnds = toLong(pattern.runEnds);
+            accepting = 1L << elementCount;
+            initial = closure(1L);
+        }
+
+        private static long toLong(BitSet bits) {
+            return bits.isEmpty() ? 0L : bits.toLongArray()[0];
+        }
+
+        private long closure(long ready) {
+            long rf = ready | runEnds;
+            ready |= skippable & (~(rf - runStarts) ^ rf);
+            return ready | ((ready & runEnds) << 1);
+        }
+
+        private long step(long ready, char c) {
+            int symbol = symbolTable.idOf(c);
+            long read = ready & ((symbol == SymbolTable.UNKNOWN) ? wildcards : symbolMasks[symbol]);
+            return closure((read << 1) | (read & stars));
+        }
+
+        @Override
+        public boolean match(String word) {
+            long ready = initial;
+            for (int i = 0; i < word.length() && ready != 0; i++) ready = step(ready, word.charAt(i));
+
+            return (ready & accepting) != 0;
+        }
+
+        @Override
+        public int longestMatch(CharSequence text, int from) {
+            long ready = initial;
+            int longest = ((ready & accepting) != 0) ? 0 : -1;
+
+            for (int i = from; i < text.length() && ready != 0; i++) {
+                ready = step(ready, text.charAt(i));
+                if ((ready & accepting) != 0) longest = i - from + 1;
+            }
+
+            return longest;
+        }
+    }
+
+    // the same operations on arrays of longs, bit j is bit j % 64 of word j / 64
+    private static final class MultiWord extends ShiftAndMatcher {
+        private final int wordCount;
+        private final long[][] symbolMasks;
+        private final long[] wildcards;
+        private final long[] stars;
+        private final long[] skippable;
+        private final long[] runStarts;
+        private final long[] runEnds;
+        private final long[] initial;
+
+        MultiWord(Pattern pattern) {
+            super(pattern.symbolTable, pattern.elementCount);
+
+            wordCount = (elementCount + Long.SIZE) / Long.SIZE;
+            symbolMasks = new long[pattern.symbolMasks.length][];
+            for (int id = 0; id < symbolMasks.length; id++) symbolMasks[id] = toWords(pattern.symbolMasks[id]);
+            wildcards = toWords(pattern.wildcards);
+            stars = toWords(pattern.stars);
+            skippable = toWords(pattern.skippable);
+            runStarts = toWords(pattern.runStarts);
+            runEnds = toWords(pattern.runEnds);
+
+            initial = new long[wordCount];
+            initial[0] = 1L;
+            closure(initial, new long[wordCount]);
+        }
+
+        private long[] toWords(BitSet bits) {
+            long[] words = new long[wordCount];
+            long[] set = bits.toLongArray();
+            System.arraycopy(set, 0, words, 0, set.length);
+            return words;
+        }
+
+        private boolean isAccepting(long[] ready) {
+            return (ready[elementCount / Long.SIZE] & (1L << (elementCount % Long.SIZE))) != 0;
+        }
+
+        private static boolean isEmpty(long[] ready) {
+            for (long word: ready) {
+                if (word != 0) return false;
+            }
+
+            return true;
+        }
+
+        // rf = ready | F, ready |= O & (~(rf - I) ^ rf), ready |= (ready & F) << 1 with the borrow and the carry
+        // passed from word to word, tmp is scratch space
+        private void closure(long[] ready, long[] tmp) {
+            long borrow = 0;
+            for (int w = 0; w < wordCount; w++) {
+                long rf = ready[w] | runEnds[w];
+                long difference = rf - runStarts[w] - borrow;
+                borrow = (Long.compareUnsigned(rf, runStarts[w]) < 0 || (borrow != 0 && rf - runStarts[w] == 0)) ? 1 : 0;
+                tmp[w] = ready[w] | (skippable[w] & (~difference ^ rf));
+            }
+
+            long carry = 0;
+            for (int w = 0; w < wordCount; w++) {
+                long ends = tmp[w] & runEnds[w];
+                ready[w] = tmp[w] | (ends << 1) | carry;
+                carry = ends >>> (Long.SIZE - 1);
+            }
+        }
+
+        // reads c, the new state is written into ready
+        private void step(long[] ready, long[] tmp, char c) {
+            int symbol = symbolTable.idOf(c);
+            long[] mask = (symbol == SymbolTable.UNKNOWN) ? wildcards : symbolMasks[symbol];
+
+            long carry = 0;
+            for (int w = 0; w < wordCount; w++) {
+                long read = ready[w] & mask[w];
+                ready[w] = (read << 1) | carry | (read & stars[w]);
+                carry = read >>> (Long.SIZE - 1);
+            }
+            closure(ready, tmp);
+        }
+
+        @Override
+        public boolean match(String word) {
+            long[] ready = initial.clone();
+            long[] tmp = new long[wordCount];
+            for (int i = 0; i < word.length() && !isEmpty(ready); i++) step(ready, tmp, word.charAt(i));
+
+            return isAccepting(ready);
+        }
+
+        @Override
+        public int longestMatch(CharSequence text, int from) {
+            long[] ready = initial.clone();
+            long[] tmp = new long[wordCount];
+            int longest = isAccepting(ready) ? 0 : -1;
+
+            for (int i = from; i < text.length() && !isEmpty(ready); i++) {
+                step(ready, tmp, text.charAt(i));
+                if (isAccepting(ready)) longest = i - from + 1;
+            }
+
+            return longest;
+        }
+    }
+}
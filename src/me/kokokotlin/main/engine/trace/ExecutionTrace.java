@@ -0,0 +1,122 @@
+package me.kokokotlin.main.engine.trace;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// records the steps of the matching algorithms into a preallocated ring buffer
+// every entry consists of (match id, position, symbol, active states), the initial configuration has the position -1
+// states are recorded by their index in the state list of the automaton
+// only the last `capacity` entries are kept and at most `maxActiveStates` state indices per entry
+// tracing is only compiled into the matchers if the jvm is started with -Dautomaton.trace=true
+public class ExecutionTrace {
+    public static final boolean ENABLED = Boolean.getBoolean("automaton.trace");
+
+    public static final int INITIAL_POSITION = -1;
+    public static final String HEADER = "# automaton trace v1";
+
+    private final int capacity;
+    private final int maxActiveStates;
+
+    private final int[] matchIds;
+    private final int[] positions;
+    private final char[] symbols;
+    private final int[] activeCounts;
+    private final int[] activeStates;
+
+    private long recorded = 0;
+    private int currentMatch = -1;
+
+    public ExecutionTrace(int capacity, int maxActiveStates) {
+        if (capacity <= 0 || maxActiveStates <= 0)
+            throw new IllegalArgumentException("Capacity and number of active states of a trace have to be positive!");
+
+        this.capacity = capacity;
+        this.maxActiveStates = maxActiveStates;
+
+        matchIds = new int[capacity];
+        positions = new int[capacity];
+        symbols = new char[capacity];
+        activeCounts = new int[capacity];
+        activeStates = new int[capacity * maxActiveStates];
+    }
+
+    public void beginMatch() {
+        currentMatch++;
+    }
+
+    private int nextSlot(int position, char symbol, int activeCount) {
+        int slot = (int) (recorded++ % capacity);
+
+        matchIds[slot] = currentMatch;
+        positions[slot] = position;
+        symbols[slot] = symbol;
+        activeCounts[slot] = activeCount;
+
+        return slot;
+    }
+
+    public void record(int position, char symbol, int state) {
+        int slot = nextSlot(position, symbol, 1);
+        activeStates[slot * maxActiveStates] = state;
+    }
+
+    public void record(int position, char symbol, BitSet states) {
+        int slot = nextSlot(position, symbol, states.cardinality());
+
+        int offset = slot * maxActiveStates;
+        int i = 0;
+        for (int q = states.nextSetBit(0); q >= 0 && i < maxActiveStates; q = states.nextSetBit(q + 1)) {
+            activeStates[offset + i++] = q;
+        }
+    }
+
+    public int size() {
+        return (int) Math.min(recorded, capacity);
+    }
+
+    public void clear() {
+        recorded = 0;
+        currentMatch = -1;
+    }
+
+    // entries from the oldest to the newest one
+    public List<TraceStep> getSteps() {
+        List<TraceStep> steps = new ArrayList<>(size());
+
+        for (long i = recorded - size(); i < recorded; i++) {
+            int slot = (int) (i % capacity);
+            int count = Math.min(activeCounts[slot], maxActiveStates);
+
+            int[] states = new int[count];
+            System.arraycopy(activeStates, slot * maxActiveStates, states, 0, count);
+            steps.add(new TraceStep(matchIds[slot], positions[slot], symbols[slot], states, activeCounts[slot] > maxActiveStates));
+        }
+
+        return steps;
+    }
+
+    // line format: match_id position symbol_code state_index0,state_index1,... [+]
+    // the + marks entries where not all active states fit into the buffer
+    public void export(Writer writer) throws IOException {
+        writer.write(HEADER);
+        writer.write("\n");
+
+        for (TraceStep step: getSteps()) {
+            writer.write(step.toExportLine());
+            writer.write("\n");
+        }
+        writer.flush();
+    }
+
+    public void export(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            export(writer);
+        }
+    }
+}
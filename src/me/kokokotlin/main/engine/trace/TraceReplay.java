@@ -0,0 +1,106 @@
+package me.kokokotlin.main.engine.trace;
+
+import me.kokokotlin.main.engine.AutomatonBase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// replays an exported trace: the steps can be walked through one by one
+// and complete matches can be rerun against an automaton to find the first step where the execution differs
+public class TraceReplay {
+    private final Map<Integer, List<TraceStep>> matches = new LinkedHashMap<>();
+    private final List<TraceStep> steps;
+
+    public TraceReplay(List<TraceStep> steps) {
+        this.steps = steps;
+        for (TraceStep step: steps) matches.computeIfAbsent(step.getMatchId(), k -> new ArrayList<>()).add(step);
+    }
+
+    public static TraceReplay load(Path path) throws IOException {
+        List<TraceStep> steps = new ArrayList<>();
+
+        try (BufferedReader bReader = Files.newBufferedReader(path)) {
+            int lineCount = 0;
+            for (String line = bReader.readLine(); line != null; line = bReader.readLine()) {
+                lineCount++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+
+                steps.add(TraceStep.fromExportLine(line, lineCount));
+            }
+        }
+
+        return new TraceReplay(steps);
+    }
+
+    public List<TraceStep> getSteps() {
+        return steps;
+    }
+
+    public List<Integer> getMatchIds() {
+        return new ArrayList<>(matches.keySet());
+    }
+
+    public List<TraceStep> getSteps(int matchId) {
+        return matches.getOrDefault(matchId, List.of());
+    }
+
+    // the input word of a match, or null if the beginning of the match was already overwritten in the ring buffer
+    public String getWord(int matchId) {
+        List<TraceStep> matchSteps = getSteps(matchId);
+        if (matchSteps.isEmpty() || !matchSteps.get(0).isInitial()) return null;
+
+        StringBuilder word = new StringBuilder();
+        for (int i = 1; i < matchSteps.size(); i++) {
+            if (matchSteps.get(i).getPosition() != i - 1) return null;
+            word.append(matchSteps.get(i).getSymbol());
+        }
+
+        return word.toString();
+    }
+
+    // reruns the match with tracing enabled and returns the first recorded step that doesn't match the new execution
+    // returns null if both executions are identical
+    public TraceStep findDivergence(AutomatonBase automaton, int matchId) {
+        if (!ExecutionTrace.ENABLED)
+            throw new IllegalStateException("Replaying a match needs tracing to be enabled (-Dautomaton.trace=true)!");
+
+        String word = getWord(matchId);
+        if (word == null)
+            throw new IllegalArgumentException(String.format("The trace doesn't contain the complete match %d!", matchId));
+
+        ExecutionTrace previousTracer = automaton.getTracer();
+        ExecutionTrace tracer = new ExecutionTrace(word.length() + 1, Math.max(1, automaton.getStates().size()));
+        automaton.setTracer(tracer);
+        try {
+            automaton.match(word);
+        } finally {
+            automaton.setTracer(previousTracer);
+        }
+
+        List<TraceStep> expected = getSteps(matchId);
+        List<TraceStep> actual = tracer.getSteps();
+        for (int i = 0; i < expected.size(); i++) {
+            if (i >= actual.size() || !sameStates(expected.get(i), actual.get(i))) return expected.get(i);
+        }
+
+        return null;
+    }
+
+    private static boolean sameStates(TraceStep recorded, TraceStep rerun) {
+        int[] a = recorded.getActiveStates().clone();
+        int[] b = rerun.getActiveStates().clone();
+        Arrays.sort(a);
+        Arrays.sort(b);
+
+        // truncated entries only contain a subset of the active states
+        if (recorded.isTruncated()) return Arrays.stream(a).allMatch(idx -> Arrays.binarySearch(b, idx) >= 0);
+        return Arrays.equals(a, b);
+    }
+}
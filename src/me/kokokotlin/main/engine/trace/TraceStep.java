@@ -0,0 +1,104 @@
+package me.kokokotlin.main.engine.trace;
+
+import me.kokokotlin.main.engine.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class TraceStep {
+    private final int matchId;
+    private final int position;
+    private final char symbol;
+    private final int[] activeStates;
+    private final boolean truncated;
+
+    public TraceStep(int matchId, int position, char symbol, int[] activeStates, boolean truncated) {
+        this.matchId = matchId;
+        this.position = position;
+        this.symbol = symbol;
+        this.activeStates = activeStates;
+        this.truncated = truncated;
+    }
+
+    static TraceStep fromExportLine(String line, int lineCount) {
+        String[] data = line.trim().split(" ");
+        if (data.length < 3 || data.length > 5)
+            throw new IllegalArgumentException(String.format("Malformed trace entry in line %d!", lineCount));
+
+        try {
+            int matchId = Integer.parseInt(data[0]);
+            int position = Integer.parseInt(data[1]);
+            char symbol = (char) Integer.parseInt(data[2]);
+
+            int[] states = new int[0];
+            boolean truncated = false;
+            for (int i = 3; i < data.length; i++) {
+                if (data[i].equals("+")) truncated = true;
+                else states = Arrays.stream(data[i].split(",")).mapToInt(Integer::parseInt).toArray();
+            }
+
+            return new TraceStep(matchId, position, symbol, states, truncated);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Malformed trace entry in line %d! %s", lineCount, e.getMessage()));
+        }
+    }
+
+    String toExportLine() {
+        StringBuilder line = new StringBuilder();
+        line.append(matchId).append(' ').append(position).append(' ').append((int) symbol);
+
+        if (activeStates.length != 0) {
+            line.append(' ');
+            line.append(Arrays.stream(activeStates).mapToObj(String::valueOf).collect(Collectors.joining(",")));
+        }
+        if (truncated) line.append(" +");
+
+        return line.toString();
+    }
+
+    public List<State> resolveStates(List<State> states) {
+        List<State> resolved = new ArrayList<>();
+        for (int idx: activeStates) {
+            if (idx >= 0 && idx < states.size()) resolved.add(states.get(idx));
+        }
+
+        return resolved;
+    }
+
+    public boolean isInitial() {
+        return position == ExecutionTrace.INITIAL_POSITION;
+    }
+
+    public int getMatchId() {
+        return matchId;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public char getSymbol() {
+        return symbol;
+    }
+
+    public int[] getActiveStates() {
+        return activeStates;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public String toString() {
+        return "TraceStep{" +
+                "matchId=" + matchId +
+                ", position=" + position +
+                ", symbol=" + (isInitial() ? "ε" : String.valueOf(symbol)) +
+                ", activeStates=" + Arrays.toString(activeStates) +
+                (truncated ? ", truncated" : "") +
+                '}';
+    }
+}
@@ -0,0 +1,175 @@
+package me.kokokotlin.main.generator;
+
+import me.kokokotlin.main.engine.CompactAutomaton;
+import me.kokokotlin.main.engine.SymbolTable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// generates random automata of a given size that can be written as .aut files
+// every state is reachable from the initial state 0: state i gets a transition from a state with a smaller index,
+// the remaining transitions have random sources and targets
+// - dfa: every state has a transition for every symbol, density, nondeterminism and epsilon ratio are ignored
+// - nfa/enfa: every state has density transitions on average, nondeterminism is the probability that a transition
+//   reuses a symbol of an earlier transition of the same state, epsilon ratio is the share of epsilon transitions (enfa only)
+public class AutomatonGenerator {
+    // symbols that can be used in .aut files and regular expressions
+    public static final String SYMBOLS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    private final String type;
+    private final int stateCount;
+    private final int alphabetSize;
+    private final double density;
+    private final double nondeterminism;
+    private final double epsilonRatio;
+    private final double finalRatio;
+    private final Random random;
+
+    public AutomatonGenerator(String type, int stateCount, int alphabetSize, double density, double nondeterminism,
+                              double epsilonRatio, double finalRatio, long seed) {
+        if (!List.of("dfa", "nfa", "enfa").contains(type))
+            throw new IllegalArgumentException(String.format("Illegal automaton type %s: Type has to be one of the following: dfa, nfa, enfa!", type));
+        if (stateCount < 1) throw new IllegalArgumentException("The automaton needs at least one state!");
+        checkAlphabetSize(alphabetSize);
+        if (density < 0) throw new IllegalArgumentException("The density can't be negative!");
+        checkProbability("nondeterminism", nondeterminism);
+        checkProbability("epsilon ratio", epsilonRatio);
+        checkProbability("final ratio", finalRatio);
+
+        this.type = type;
+        this.stateCount = stateCount;
+        this.alphabetSize = alphabetSize;
+        this.density = density;
+        this.nondeterminism = nondeterminism;
+        this.epsilonRatio = type.equals("enfa") ? epsilonRatio : 0.0;
+        this.finalRatio = finalRatio;
+        this.random = new Random(seed);
+    }
+
+    static void checkAlphabetSize(int alphabetSize) {
+        if (alphabetSize < 1 || alphabetSize > SYMBOLS.length())
+            throw new IllegalArgumentException(String.format("The alphabet size has to be in [1, %d]!", SYMBOLS.length()));
+    }
+
+    static void checkProbability(String name, double probability) {
+        if (probability < 0 || probability > 1)
+            throw new IllegalArgumentException(String.format("The %s has to be in [0, 1]!", name));
+    }
+
+    public static String alphabet(int alphabetSize) {
+        checkAlphabetSize(alphabetSize);
+        return SYMBOLS.substring(0, alphabetSize);
+    }
+
+    public CompactAutomaton generate() {
+        SymbolTable symbolTable = SymbolTable.of(Arrays.asList(alphabet(alphabetSize).split("")));
+        CompactAutomaton.Builder builder = new CompactAutomaton.Builder(stateCount, symbolTable);
+        for (int q = 0; q < stateCount; q++) builder.setStateName(q, "q" + q);
+
+        if (type.equals("dfa")) generateDFATransitions(builder);
+        else generateNFATransitions(builder);
+
+        builder.addInitialState(0);
+        boolean hasFinal = false;
+        for (int q = 0; q < stateCount; q++) {
+            if (random.nextDouble() < finalRatio) {
+                builder.addFinalState(q);
+                hasFinal = true;
+            }
+        }
+        if (!hasFinal) builder.addFinalState(stateCount - 1);
+
+        return builder.build();
+    }
+
+    // the parent of state q is (q - 1) / k with the symbol (q - 1) % k, every other cell gets a random target
+    private void generateDFATransitions(CompactAutomaton.Builder builder) {
+        for (int q = 0; q < stateCount; q++) {
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                long child = (long) q * alphabetSize + symbol + 1;
+                int target = (child < stateCount) ? (int) child : random.nextInt(stateCount);
+                builder.addTransition(q, symbol, target);
+            }
+        }
+    }
+
+    private void generateNFATransitions(CompactAutomaton.Builder builder) {
+        for (int q = 1; q < stateCount; q++) addTransition(builder, random.nextInt(q), q, -1);
+
+        List<Integer> usedSymbols = new ArrayList<>();
+        for (int q = 0; q < stateCount; q++) {
+            int degree = (int) density + (random.nextDouble() < density - (int) density ? 1 : 0);
+
+            usedSymbols.clear();
+            for (int i = 0; i < degree; i++) {
+                int symbol = (!usedSymbols.isEmpty() && random.nextDouble() < nondeterminism)
+                        ? usedSymbols.get(random.nextInt(usedSymbols.size()))
+                        : random.nextInt(alphabetSize);
+                if (addTransition(builder, q, random.nextInt(stateCount), symbol)) usedSymbols.add(symbol);
+            }
+        }
+    }
+
+    // symbol -1 picks a random symbol, returns false if an epsilon transition was added instead
+    private boolean addTransition(CompactAutomaton.Builder builder, int source, int target, int symbol) {
+        if (epsilonRatio > 0 && random.nextDouble() < epsilonRatio) {
+            builder.addEpsilonTransition(source, target);
+            return false;
+        }
+
+        builder.addTransition(source, (symbol < 0) ? random.nextInt(alphabetSize) : symbol, target);
+        return true;
+    }
+
+    // writes the automaton in the format of the Loader, the transitions are streamed state by state
+    public static void writeAut(CompactAutomaton automaton, String type, Writer writer) throws IOException {
+        int transitionCount = automaton.getTransitionCount() + automaton.getEpsilonTransitionCount();
+        writer.write(String.format("%s %d %d ", type, automaton.getStateCount(), transitionCount));
+        writeStateList(automaton.getInitialStates(), writer);
+        writer.write(' ');
+        writeStateList(automaton.getFinalStates().stream().toArray(), writer);
+        writer.write(' ');
+        writer.write(String.join("", automaton.getAlphabet()));
+        writer.write('\n');
+
+        for (int q = 0; q < automaton.getStateCount(); q++) {
+            writer.write("s ");
+            writer.write(automaton.getStateName(q));
+            writer.write('\n');
+        }
+
+        for (int q = 0; q < automaton.getStateCount(); q++) {
+            String source = automaton.getStateName(q);
+            for (int i = automaton.transitionStart(q); i < automaton.transitionEnd(q); i++) {
+                writeTransition(writer, source, automaton.getStateName(automaton.targetAt(i)),
+                        automaton.getSymbolTable().symbol(automaton.symbolAt(i)).getSymbol());
+            }
+            for (int i = automaton.epsilonStart(q); i < automaton.epsilonEnd(q); i++) {
+                writeTransition(writer, source, automaton.getStateName(automaton.epsilonTargetAt(i)), "\"\"");
+            }
+        }
+    }
+
+    private static void writeStateList(int[] states, Writer writer) throws IOException {
+        writer.write('(');
+        for (int i = 0; i < states.length; i++) {
+            if (i != 0) writer.write(',');
+            writer.write(Integer.toString(states[i]));
+        }
+        writer.write(')');
+    }
+
+    private static void writeTransition(Writer writer, String source, String target, String symbol) throws IOException {
+        writer.write("t ");
+        writer.write(source);
+        writer.write(' ');
+        writer.write(target);
+        writer.write(' ');
+        writer.write(symbol);
+        writer.write('\n');
+    }
+}
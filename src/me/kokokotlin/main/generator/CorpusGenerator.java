@@ -0,0 +1,177 @@
+package me.kokokotlin.main.generator;
+
+import me.kokokotlin.main.engine.CompactAutomaton;
+import me.kokokotlin.main.engine.SymbolTable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+// generates words for an automaton together with the expected result of a match
+// accepted words are random walks from an initial state to a final state that never leave the states which can still
+// reach a final state within the remaining length, rejected words are random words that are checked by a simulation
+// the corpus has one word per line, prefixed with 1 (accepted) or 0 (rejected): "1 abba"
+public class CorpusGenerator {
+    private static final int MAX_REJECTION_ATTEMPTS = 100;
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final CompactAutomaton automaton;
+    private final String alphabet;
+    private final int maxLength;
+    private final Random random;
+
+    // minimal number of transitions (epsilon transitions included) from a state to a final state
+    private final int[] distances;
+
+    public CorpusGenerator(CompactAutomaton automaton, String alphabet, int maxLength, long seed) {
+        if (maxLength < 0) throw new IllegalArgumentException("The maximal word length can't be negative!");
+
+        this.automaton = automaton;
+        this.alphabet = alphabet;
+        this.maxLength = maxLength;
+        this.random = new Random(seed);
+        this.distances = distancesToFinalStates();
+    }
+
+    private int[] distancesToFinalStates() {
+        final int stateCount = automaton.getStateCount();
+
+        // reverse adjacency of all transitions
+        int[] offsets = new int[stateCount + 1];
+        for (int q = 0; q < stateCount; q++) {
+            for (int i = automaton.transitionStart(q); i < automaton.transitionEnd(q); i++) offsets[automaton.targetAt(i) + 1]++;
+            for (int i = automaton.epsilonStart(q); i < automaton.epsilonEnd(q); i++) offsets[automaton.epsilonTargetAt(i) + 1]++;
+        }
+        for (int q = 0; q < stateCount; q++) offsets[q + 1] += offsets[q];
+
+        int[] sources = new int[offsets[stateCount]];
+        int[] fill = Arrays.copyOf(offsets, stateCount);
+        for (int q = 0; q < stateCount; q++) {
+            for (int i = automaton.transitionStart(q); i < automaton.transitionEnd(q); i++) sources[fill[automaton.targetAt(i)]++] = q;
+            for (int i = automaton.epsilonStart(q); i < automaton.epsilonEnd(q); i++) sources[fill[automaton.epsilonTargetAt(i)]++] = q;
+        }
+
+        int[] distances = new int[stateCount];
+        Arrays.fill(distances, UNREACHABLE);
+        int[] queue = new int[stateCount];
+        int tail = 0;
+        BitSet finalStates = automaton.getFinalStates();
+        for (int q = finalStates.nextSetBit(0); q >= 0; q = finalStates.nextSetBit(q + 1)) {
+            distances[q] = 0;
+            queue[tail++] = q;
+        }
+
+        for (int head = 0; head < tail; head++) {
+            int q = queue[head];
+            for (int i = offsets[q]; i < offsets[q + 1]; i++) {
+                if (distances[sources[i]] == UNREACHABLE) {
+                    distances[sources[i]] = distances[q] + 1;
+                    queue[tail++] = sources[i];
+                }
+            }
+        }
+
+        return distances;
+    }
+
+    // returns null if no word with at most maxLength symbols is accepted
+    public String acceptedWord() {
+        int state = -1;
+        int candidates = 0;
+        for (int q: automaton.getInitialStates()) {
+            if (distances[q] <= maxLength && random.nextInt(++candidates) == 0) state = q;
+        }
+        if (state == -1) return null;
+
+        // the walk stops in a final state with this probability, so the expected length is about half of maxLength
+        final double stopProbability = 2.0 / (maxLength + 2);
+        StringBuilder word = new StringBuilder();
+        for (int steps = 0; ; steps++) {
+            if (automaton.isFinal(state) && (steps == maxLength || random.nextDouble() < stopProbability)) break;
+
+            // reservoir sampling over all transitions that keep a final state within reach
+            int budget = maxLength - steps - 1;
+            int next = -1;
+            int symbol = -1;
+            candidates = 0;
+            for (int i = automaton.transitionStart(state); i < automaton.transitionEnd(state); i++) {
+                if (distances[automaton.targetAt(i)] <= budget && random.nextInt(++candidates) == 0) {
+                    next = automaton.targetAt(i);
+                    symbol = automaton.symbolAt(i);
+                }
+            }
+            for (int i = automaton.epsilonStart(state); i < automaton.epsilonEnd(state); i++) {
+                if (distances[automaton.epsilonTargetAt(i)] <= budget && random.nextInt(++candidates) == 0) {
+                    next = automaton.epsilonTargetAt(i);
+                    symbol = -1;
+                }
+            }
+
+            // only a final state can have no candidate, it is the end of the word then
+            if (next == -1) break;
+
+            if (symbol != -1) word.append(automaton.getSymbolTable().symbol(symbol).getSymbol());
+            state = next;
+        }
+
+        return word.toString();
+    }
+
+    // returns null if no rejected word was found, e.g. because every word up to maxLength is accepted
+    public String rejectedWord() {
+        for (int attempt = 0; attempt < MAX_REJECTION_ATTEMPTS; attempt++) {
+            int length = random.nextInt(maxLength + 1);
+            StringBuilder word = new StringBuilder(length);
+            for (int i = 0; i < length; i++) word.append(alphabet.charAt(random.nextInt(alphabet.length())));
+
+            if (!accepts(word)) return word.toString();
+        }
+
+        return null;
+    }
+
+    public boolean accepts(CharSequence word) {
+        final SymbolTable symbolTable = automaton.getSymbolTable();
+
+        BitSet currentStates = new BitSet(automaton.getStateCount());
+        for (int q: automaton.getInitialStates()) currentStates.set(q);
+        automaton.epsilonClosure(currentStates);
+
+        for (int i = 0; i < word.length() && !currentStates.isEmpty(); i++) {
+            int symbol = symbolTable.idOf(word.charAt(i));
+            BitSet nextStates = new BitSet(automaton.getStateCount());
+            if (symbol != SymbolTable.UNKNOWN) automaton.step(currentStates, symbol, nextStates);
+            automaton.epsilonClosure(nextStates);
+            currentStates = nextStates;
+        }
+
+        return automaton.containsFinal(currentStates);
+    }
+
+    // writes count words of which about acceptRate are accepted
+    // if one kind of word can't be generated, the other kind is written instead
+    // returns the number of accepted words in the corpus
+    public int writeCorpus(Writer writer, int count, double acceptRate) throws IOException {
+        AutomatonGenerator.checkProbability("accept rate", acceptRate);
+
+        int acceptedCount = 0;
+        for (int i = 0; i < count; i++) {
+            boolean accepted = random.nextDouble() < acceptRate;
+            String word = accepted ? acceptedWord() : rejectedWord();
+            if (word == null) {
+                accepted = !accepted;
+                word = accepted ? acceptedWord() : rejectedWord();
+            }
+            if (word == null) throw new IllegalStateException("Neither an accepted nor a rejected word could be generated!");
+
+            if (accepted) acceptedCount++;
+            writer.write(accepted ? "1 " : "0 ");
+            writer.write(word);
+            writer.write('\n');
+        }
+
+        return acceptedCount;
+    }
+}
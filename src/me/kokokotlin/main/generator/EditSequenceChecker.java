@@ -0,0 +1,240 @@
+package me.kokokotlin.main.generator;
+
+import me.kokokotlin.main.engine.CompactAutomaton;
+import me.kokokotlin.main.engine.DFA;
+import me.kokokotlin.main.engine.ENFA;
+import me.kokokotlin.main.engine.MutableAutomaton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+
+// command line entry point that checks the incremental updates of the MutableAutomaton:
+// a generated automaton is edited randomly, after every edit the reachable states, the epsilon closures, the
+// deterministic and complete flags, the matches and the cached minimal dfa are compared with the ones computed from
+// scratch on a snapshot of the automaton. exits with 1 if one of them differs
+public class EditSequenceChecker {
+    private static final int MAX_REPORTED_MISMATCHES = 10;
+    private static final char UNKNOWN_CHARACTER = '#';
+
+    private static int stateCount = 12;
+    private static int alphabetSize = 3;
+    private static int editCount = 10000;
+    private static int wordCount = 20;
+    private static int maxLength = 8;
+    private static long seed = 1;
+
+    private static void printHelp() {
+        System.out.println("""
+Edit sequence checker for the mutable automaton
+
+Command line switches:
+    -h: Display help
+    -seed <n>: Seed of the random generator [default: 1]
+    -states <n>: Number of states of the generated automaton [default: 12]
+    -alphabet <n>: Size of the alphabet, at most 62 [default: 3]
+    -edits <n>: Number of random edits [default: 10000]
+    -words <n>: Number of random words that are matched after every edit [default: 20]
+    -max-length <n>: Maximal length of a word [default: 8]
+""");
+    }
+
+    private static String getArgumentOrError(Queue<String> queue, String option) {
+        String s = queue.poll();
+        if (s == null) throw new IllegalArgumentException(String.format("Command line option %s needs a argument!", option));
+
+        return s;
+    }
+
+    private static int getIntOrError(Queue<String> queue, String option) {
+        try {
+            return Integer.parseInt(getArgumentOrError(queue, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Command line option %s needs a number as argument!", option));
+        }
+    }
+
+    private static long getLongOrError(Queue<String> queue, String option) {
+        try {
+            return Long.parseLong(getArgumentOrError(queue, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Command line option %s needs a number as argument!", option));
+        }
+    }
+
+    private static void handleARGS(String[] args) {
+        Queue<String> argQueue = new LinkedList<>(Arrays.asList(args));
+        while (!argQueue.isEmpty()) {
+            String currentOption = argQueue.poll();
+
+            switch (currentOption) {
+                case "-h" -> {
+                    printHelp();
+                    System.exit(0);
+                }
+                case "-seed" -> seed = getLongOrError(argQueue, currentOption);
+                case "-states" -> stateCount = getIntOrError(argQueue, currentOption);
+                case "-alphabet" -> alphabetSize = getIntOrError(argQueue, currentOption);
+                case "-edits" -> editCount = getIntOrError(argQueue, currentOption);
+                case "-words" -> wordCount = getIntOrError(argQueue, currentOption);
+                case "-max-length" -> maxLength = getIntOrError(argQueue, currentOption);
+                default -> throw new IllegalArgumentException(String.format("Command line option %s unknown! See -h for help!", currentOption));
+            }
+        }
+
+        if (stateCount < 1) throw new IllegalArgumentException("The automaton needs at least one state!");
+    }
+
+    // source, symbol (or MutableAutomaton.EPSILON) and target of a transition of the mutable automaton
+    private record Edge(int source, int symbol, int target) {}
+
+    private final Random random = new Random(seed);
+    private final String alphabet = AutomatonGenerator.alphabet(alphabetSize);
+    private final MutableAutomaton automaton;
+    private final List<Edge> edges = new ArrayList<>();
+    // the indices of the states that aren't removed in increasing order, their position is the index in the snapshot
+    private final List<Integer> states = new ArrayList<>();
+    private final BitSet initialStates = new BitSet();
+    private final BitSet finalStates = new BitSet();
+    private int mismatchCount = 0;
+
+    private EditSequenceChecker() {
+        AutomatonGenerator generator = new AutomatonGenerator("enfa", stateCount, alphabetSize, 2.0, 0.2, 0.1, 0.2, seed);
+        CompactAutomaton generated = generator.generate();
+        automaton = MutableAutomaton.of(ENFA.fromCompact(generated));
+
+        for (int q = 0; q < generated.getStateCount(); q++) {
+            states.add(q);
+            for (int i = generated.transitionStart(q); i < generated.transitionEnd(q); i++)
+                edges.add(new Edge(q, generated.symbolAt(i), generated.targetAt(i)));
+            for (int i = generated.epsilonStart(q); i < generated.epsilonEnd(q); i++)
+                edges.add(new Edge(q, MutableAutomaton.EPSILON, generated.epsilonTargetAt(i)));
+            if (generated.isFinal(q)) finalStates.set(q);
+        }
+        for (int q: generated.getInitialStates()) initialStates.set(q);
+    }
+
+    private int randomState() {
+        return states.get(random.nextInt(states.size()));
+    }
+
+    private int randomSymbol() {
+        return (random.nextInt(8) == 0) ? MutableAutomaton.EPSILON : random.nextInt(alphabetSize);
+    }
+
+    // one random edit, returns its description for the report
+    private String edit() {
+        int kind = random.nextInt(10);
+
+        if (kind < 4) {
+            Edge edge = new Edge(randomState(), randomSymbol(), randomState());
+            if (automaton.addTransition(edge.source(), edge.symbol(), edge.target())) edges.add(edge);
+            return "add " + edge;
+        }
+        if (kind < 7 && !edges.isEmpty()) {
+            Edge edge = edges.remove(random.nextInt(edges.size()));
+            if (!automaton.removeTransition(edge.source(), edge.symbol(), edge.target()))
+                report("remove " + edge, "the transition wasn't found");
+            return "remove " + edge;
+        }
+        if (kind == 7) {
+            int state = automaton.addState("q" + random.nextInt(1000));
+            states.add(state);
+            return "add state " + state;
+        }
+        if (kind == 8 && states.size() > 1) {
+            int state = states.remove(random.nextInt(states.size()));
+            automaton.removeState(state);
+            edges.removeIf(e -> e.source() == state || e.target() == state);
+            initialStates.clear(state);
+            finalStates.clear(state);
+            return "remove state " + state;
+        }
+
+        int state = randomState();
+        if (random.nextBoolean()) {
+            boolean initial = !initialStates.get(state);
+            automaton.setInitial(state, initial);
+            initialStates.set(state, initial);
+            return String.format("set initial %d %b", state, initial);
+        }
+
+        boolean isFinal = !finalStates.get(state);
+        automaton.setFinal(state, isFinal);
+        finalStates.set(state, isFinal);
+        return String.format("set final %d %b", state, isFinal);
+    }
+
+    private void report(String edit, String mismatch) {
+        if (mismatchCount++ < MAX_REPORTED_MISMATCHES) System.err.printf("After %s: %s\n", edit, mismatch);
+    }
+
+    // the snapshot is built from the transitions alone, so it doesn't depend on the incrementally updated structures
+    private void compare(String edit) {
+        CompactAutomaton snapshot = automaton.toCompact();
+
+        BitSet expectedReachable = snapshot.getReachableStates();
+        BitSet reachable = automaton.getReachableStates();
+        for (int i = 0; i < states.size(); i++) {
+            int q = states.get(i);
+            if (reachable.get(q) != expectedReachable.get(i))
+                report(edit, String.format("state %d is %sreachable", q, reachable.get(q) ? "" : "not "));
+
+            BitSet snapshotClosure = new BitSet();
+            snapshotClosure.set(i);
+            snapshot.epsilonClosure(snapshotClosure);
+            BitSet expectedClosure = new BitSet();
+            for (int j = snapshotClosure.nextSetBit(0); j >= 0; j = snapshotClosure.nextSetBit(j + 1)) expectedClosure.set(states.get(j));
+            BitSet closure = automaton.epsilonClosure(q);
+            if (!closure.equals(expectedClosure))
+                report(edit, String.format("the epsilon closure of state %d is %s instead of %s", q, closure, expectedClosure));
+        }
+
+        boolean deterministic = snapshot.getEpsilonTransitionCount() == 0 && snapshot.getInitialStates().length == 1;
+        boolean complete = true;
+        for (int q = 0; q < snapshot.getStateCount(); q++) {
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int targets = snapshot.upperBound(q, symbol) - snapshot.lowerBound(q, symbol);
+                if (targets > 1) deterministic = false;
+                if (targets == 0) complete = false;
+            }
+        }
+        if (automaton.isDeterministic() != deterministic) report(edit, "isDeterministic() is " + automaton.isDeterministic());
+        if (automaton.isComplete() != complete) report(edit, "isComplete() is " + automaton.isComplete());
+
+        DFA minimal = automaton.toMinimalDFA();
+        DFA expectedMinimal = ENFA.fromCompact(snapshot).toDFA().minimize();
+        if (minimal.getStates().size() != expectedMinimal.getStates().size())
+            report(edit, String.format("the minimal dfa has %d states instead of %d", minimal.getStates().size(), expectedMinimal.getStates().size()));
+
+        // the words contain characters outside of the alphabet as well
+        CorpusGenerator reference = new CorpusGenerator(snapshot, alphabet, maxLength, seed);
+        for (int w = 0; w < wordCount; w++) {
+            StringBuilder word = new StringBuilder();
+            int length = random.nextInt(maxLength + 1);
+            for (int i = 0; i < length; i++) {
+                int symbol = random.nextInt(alphabetSize + 1);
+                word.append((symbol < alphabetSize) ? alphabet.charAt(symbol) : UNKNOWN_CHARACTER);
+            }
+
+            boolean expected = reference.accepts(word);
+            if (automaton.match(word.toString()) != expected) report(edit, String.format("match(\"%s\") is %b", word, !expected));
+            if (minimal.match(word.toString()) != expected) report(edit, String.format("the minimal dfa matches \"%s\": %b", word, !expected));
+        }
+    }
+
+    public static void main(String[] args) {
+        handleARGS(args);
+
+        EditSequenceChecker checker = new EditSequenceChecker();
+        checker.compare("construction");
+        for (int i = 0; i < editCount; i++) checker.compare(String.format("edit %d (%s)", i, checker.edit()));
+
+        System.out.printf("Checked %d edits: %d mismatches\n", editCount, checker.mismatchCount);
+        if (checker.mismatchCount > 0) System.exit(1);
+    }
+}
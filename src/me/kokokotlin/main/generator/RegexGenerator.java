@@ -0,0 +1,47 @@
+package me.kokokotlin.main.generator;
+
+import java.util.Random;
+
+// generates random regular expressions in the syntax of RegexStack
+// every element is a symbol of the alphabet (or the wildcard) that is followed by * or ? with the given probabilities
+// + is not generated, it is only a shorthand for a symbol followed by the same symbol with *
+public class RegexGenerator {
+    private final String alphabet;
+    private final double starProbability;
+    private final double optionalProbability;
+    private final double wildcardProbability;
+    private final Random random;
+
+    public RegexGenerator(int alphabetSize, double starProbability, double optionalProbability, double wildcardProbability, long seed) {
+        AutomatonGenerator.checkProbability("star probability", starProbability);
+        AutomatonGenerator.checkProbability("optional probability", optionalProbability);
+        AutomatonGenerator.checkProbability("wildcard probability", wildcardProbability);
+        if (starProbability + optionalProbability > 1)
+            throw new IllegalArgumentException("The star and optional probability can't be more than 1 together!");
+
+        this.alphabet = AutomatonGenerator.alphabet(alphabetSize);
+        this.starProbability = starProbability;
+        this.optionalProbability = optionalProbability;
+        this.wildcardProbability = wildcardProbability;
+        this.random = new Random(seed);
+    }
+
+    public String generate(int elementCount) {
+        if (elementCount < 1) throw new IllegalArgumentException("The regular expression needs at least one element!");
+
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < elementCount; i++) {
+            regex.append(random.nextDouble() < wildcardProbability ? '.' : alphabet.charAt(random.nextInt(alphabet.length())));
+
+            double frequency = random.nextDouble();
+            if (frequency < starProbability) regex.append('*');
+            else if (frequency < starProbability + optionalProbability) regex.append('?');
+        }
+
+        return regex.toString();
+    }
+
+    public String getAlphabet() {
+        return alphabet;
+    }
+}
@@ -0,0 +1,169 @@
+package me.kokokotlin.main.generator;
+
+import me.kokokotlin.main.engine.CompactAutomaton;
+import me.kokokotlin.main.engine.ENFA;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Queue;
+
+// command line entry point for generating benchmark inputs:
+// an automaton (<output>.aut) or a regular expression (<output>.regex) and a word corpus (<output>.words) for it
+public class WorkloadGenerator {
+    private static String type = "nfa";
+    private static int stateCount = 1000;
+    private static int alphabetSize = 4;
+    private static double density = 2.0;
+    private static double nondeterminism = 0.2;
+    private static double epsilonRatio = 0.1;
+    private static double finalRatio = 0.1;
+
+    private static int regexElements = 0;
+    private static double starProbability = 0.3;
+    private static double optionalProbability = 0.2;
+    private static double wildcardProbability = 0.0;
+
+    private static int wordCount = 1000;
+    private static double acceptRate = 0.5;
+    private static int maxLength = 32;
+    private static long seed = 1;
+    private static String output = "workload";
+
+    private static void printHelp() {
+        System.out.println("""
+Workload generator for the automaton interpreter
+
+Command line switches:
+    -h: Display help
+    -o <path>: Prefix of the generated files [default: workload]
+    -seed <n>: Seed of the random generator [default: 1]
+
+    -type <dfa|nfa|enfa>: Type of the generated automaton [default: nfa]
+    -states <n>: Number of states [default: 1000]
+    -alphabet <n>: Size of the alphabet, at most 62 [default: 4]
+    -density <d>: Average number of transitions per state (nfa, enfa) [default: 2.0]
+    -nondeterminism <p>: Probability that a transition reuses a symbol of the same state (nfa, enfa) [default: 0.2]
+    -epsilon <p>: Share of epsilon transitions (enfa) [default: 0.1]
+    -finals <p>: Share of final states [default: 0.1]
+
+    -regex <n>: Generate a regular expression with n elements instead of an automaton
+    -star <p>: Probability of * after an element [default: 0.3]
+    -optional <p>: Probability of ? after an element [default: 0.2]
+    -wildcard <p>: Probability of the wildcard . as element [default: 0.0]
+
+    -words <n>: Number of words in the corpus [default: 1000]
+    -accept-rate <p>: Share of accepted words in the corpus [default: 0.5]
+    -max-length <n>: Maximal length of a word [default: 32]
+""");
+    }
+
+    private static String getArgumentOrError(Queue<String> queue, String option) {
+        String s = queue.poll();
+        if (s == null) throw new IllegalArgumentException(String.format("Command line option %s needs a argument!", option));
+
+        return s;
+    }
+
+    private static int getIntOrError(Queue<String> queue, String option) {
+        try {
+            return Integer.parseInt(getArgumentOrError(queue, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Command line option %s needs a number as argument!", option));
+        }
+    }
+
+    private static long getLongOrError(Queue<String> queue, String option) {
+        try {
+            return Long.parseLong(getArgumentOrError(queue, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Command line option %s needs a number as argument!", option));
+        }
+    }
+
+    private static double getDoubleOrError(Queue<String> queue, String option) {
+        try {
+            return Double.parseDouble(getArgumentOrError(queue, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Command line option %s needs a number as argument!", option));
+        }
+    }
+
+    private static void handleARGS(String[] args) {
+        Queue<String> argQueue = new LinkedList<>(Arrays.asList(args));
+        while (!argQueue.isEmpty()) {
+            String currentOption = argQueue.poll();
+
+            switch (currentOption) {
+                case "-h" -> {
+                    printHelp();
+                    System.exit(0);
+                }
+                case "-o" -> output = getArgumentOrError(argQueue, currentOption);
+                case "-seed" -> seed = getLongOrError(argQueue, currentOption);
+                case "-type" -> type = getArgumentOrError(argQueue, currentOption);
+                case "-states" -> stateCount = getIntOrError(argQueue, currentOption);
+                case "-alphabet" -> alphabetSize = getIntOrError(argQueue, currentOption);
+                case "-density" -> density = getDoubleOrError(argQueue, currentOption);
+                case "-nondeterminism" -> nondeterminism = getDoubleOrError(argQueue, currentOption);
+                case "-epsilon" -> epsilonRatio = getDoubleOrError(argQueue, currentOption);
+                case "-finals" -> finalRatio = getDoubleOrError(argQueue, currentOption);
+                case "-regex" -> regexElements = getIntOrError(argQueue, currentOption);
+                case "-star" -> starProbability = getDoubleOrError(argQueue, currentOption);
+                case "-optional" -> optionalProbability = getDoubleOrError(argQueue, currentOption);
+                case "-wildcard" -> wildcardProbability = getDoubleOrError(argQueue, currentOption);
+                case "-words" -> wordCount = getIntOrError(argQueue, currentOption);
+                case "-accept-rate" -> acceptRate = getDoubleOrError(argQueue, currentOption);
+                case "-max-length" -> maxLength = getIntOrError(argQueue, currentOption);
+                default -> throw new IllegalArgumentException(String.format("Command line option %s unknown! See -h for help!", currentOption));
+            }
+        }
+    }
+
+    private static void writeCorpus(CompactAutomaton automaton, String alphabet) throws IOException {
+        Path corpusPath = Paths.get(output + ".words");
+        CorpusGenerator generator = new CorpusGenerator(automaton, alphabet, maxLength, seed);
+
+        int acceptedCount;
+        try (Writer writer = Files.newBufferedWriter(corpusPath)) {
+            acceptedCount = generator.writeCorpus(writer, wordCount, acceptRate);
+        }
+        System.out.printf("Wrote %s: %d words, %d accepted\n", corpusPath, wordCount, acceptedCount);
+    }
+
+    public static void main(String[] args) {
+        handleARGS(args);
+
+        try {
+            if (regexElements > 0) {
+                RegexGenerator generator = new RegexGenerator(alphabetSize, starProbability, optionalProbability, wildcardProbability, seed);
+                String regex = generator.generate(regexElements);
+
+                Path regexPath = Paths.get(output + ".regex");
+                Files.writeString(regexPath, regex + "\n");
+                System.out.printf("Wrote %s: %s\n", regexPath, regex);
+
+                writeCorpus(ENFA.fromRegex(regex).toCompact(), generator.getAlphabet());
+            } else {
+                AutomatonGenerator generator = new AutomatonGenerator(type, stateCount, alphabetSize, density, nondeterminism,
+                        epsilonRatio, finalRatio, seed);
+                CompactAutomaton automaton = generator.generate();
+
+                Path automatonPath = Paths.get(output + ".aut");
+                try (Writer writer = Files.newBufferedWriter(automatonPath)) {
+                    AutomatonGenerator.writeAut(automaton, type, writer);
+                }
+                System.out.printf("Wrote %s: %d states, %d transitions\n", automatonPath, automaton.getStateCount(),
+                        automaton.getTransitionCount() + automaton.getEpsilonTransitionCount());
+
+                writeCorpus(automaton, AutomatonGenerator.alphabet(alphabetSize));
+            }
+        } catch (IOException e) {
+            System.err.printf("Couldn't write workload %s: %s\n", output, e.getMessage());
+        }
+    }
+}
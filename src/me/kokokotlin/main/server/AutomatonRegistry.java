@@ -0,0 +1,119 @@
+package me.kokokotlin.main.server;
+
+import me.kokokotlin.main.engine.AutomatonBase;
+import me.kokokotlin.main.engine.Loader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// named automata that are loaded once and shared by all requests
+// every name holds its current version in an atomic reference, a reload swaps the reference
+// requests that already got the old version keep using it, there are no locks on the match path
+public class AutomatonRegistry {
+    public static final String AUTOMATON_EXTENSION = ".aut";
+
+    public static class Version {
+        private final AutomatonBase automaton;
+        private final Path source;
+        private final long version;
+
+        Version(AutomatonBase automaton, Path source, long version) {
+            this.automaton = automaton;
+            this.source = source;
+            this.version = version;
+        }
+
+        public AutomatonBase getAutomaton() {
+            return automaton;
+        }
+
+        // null if the automaton wasn't loaded from a file
+        public Path getSource() {
+            return source;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    private final Map<String, AtomicReference<Version>> automata = new ConcurrentHashMap<>();
+
+    public static String nameOf(Path path) {
+        String fileName = path.getFileName().toString();
+        return fileName.endsWith(AUTOMATON_EXTENSION) ? fileName.substring(0, fileName.length() - AUTOMATON_EXTENSION.length()) : fileName;
+    }
+
+    public static boolean isAutomatonFile(Path path) {
+        return path.getFileName().toString().endsWith(AUTOMATON_EXTENSION);
+    }
+
+    public void register(String name, AutomatonBase automaton) {
+        publish(name, automaton, null);
+    }
+
+    // swaps in the new automaton and returns its version
+    long publish(String name, AutomatonBase automaton, Path source) {
+        AtomicReference<Version> current = automata.computeIfAbsent(name, k -> new AtomicReference<>());
+        Version next = current.updateAndGet(old -> new Version(automaton, source, (old == null) ? 1 : old.version + 1));
+
+        return next.version;
+    }
+
+    // loads the file and registers the automaton with the file name (without extension) as its name
+    public boolean load(Path path) {
+        AutomatonBase automaton = Loader.loadFromFile(path);
+        if (automaton == null) return false;
+
+        publish(nameOf(path), automaton, path.toAbsolutePath());
+        return true;
+    }
+
+    // loads all automaton files directly inside the directory, returns the number of loaded automata
+    public int loadDirectory(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> entries = Files.list(directory)) {
+            files = entries.filter(AutomatonRegistry::isAutomatonFile).sorted().collect(Collectors.toList());
+        }
+
+        int loaded = 0;
+        for (Path file: files) {
+            if (load(file)) loaded++;
+        }
+
+        return loaded;
+    }
+
+    public AutomatonBase get(String name) {
+        Version version = getVersion(name);
+        return (version == null) ? null : version.automaton;
+    }
+
+    public Version getVersion(String name) {
+        AtomicReference<Version> current = automata.get(name);
+        return (current == null) ? null : current.get();
+    }
+
+    public List<Path> getSources() {
+        return automata.values().stream()
+                .map(AtomicReference::get)
+                .filter(v -> v != null && v.source != null)
+                .map(v -> v.source)
+                .collect(Collectors.toList());
+    }
+
+    public List<String> getNames() {
+        return automata.keySet().stream().sorted().collect(Collectors.toList());
+    }
+
+    public int size() {
+        return automata.size();
+    }
+}
@@ -0,0 +1,121 @@
+package me.kokokotlin.main.server;
+
+import me.kokokotlin.main.engine.AutomatonBase;
+import me.kokokotlin.main.engine.Loader;
+import me.kokokotlin.main.engine.metrics.Metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// watches the directories of the automaton sources and reloads changed files in the background
+// a changed file is only published if it loads without errors, otherwise the old version stays active
+// editors often write a file in several steps, so the events are collected for a short time before reloading
+public class AutomatonReloader implements Closeable {
+    private static final long SETTLE_MILLIS = 200;
+
+    private final AutomatonRegistry registry;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Set<Path> watchedDirectories;
+    private final Thread thread;
+
+    // files in the watched directories that aren't registered yet are loaded as new automata
+    public AutomatonReloader(AutomatonRegistry registry, Set<Path> watchedDirectories) throws IOException {
+        this.registry = registry;
+        this.watchedDirectories = new LinkedHashSet<>();
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        for (Path directory: watchedDirectories) watch(directory);
+        for (Path source: registry.getSources()) watch(source.getParent());
+
+        thread = new Thread(this::run, "automaton-reloader");
+        thread.setDaemon(true);
+    }
+
+    private void watch(Path directory) throws IOException {
+        Path absolute = directory.toAbsolutePath().normalize();
+        if (!this.watchedDirectories.add(absolute)) return;
+
+        WatchKey key = absolute.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        directories.put(key, absolute);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>();
+                collect(watchService.take(), changed);
+
+                // wait until the writes settled down and collect everything that happened in the meantime
+                for (WatchKey key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS); key != null;
+                     key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) {
+                    collect(key, changed);
+                }
+
+                for (Path file: changed) reload(file);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // reloader was closed
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed) {
+        Path directory = directories.get(key);
+
+        for (WatchEvent<?> event: key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) continue;
+
+            Path file = directory.resolve((Path) event.context());
+            if (AutomatonRegistry.isAutomatonFile(file)) changed.add(file);
+        }
+        key.reset();
+    }
+
+    // loads the file and swaps it in, returns false if the file has errors
+    public boolean reload(Path file) {
+        final long start = System.nanoTime();
+        String name = AutomatonRegistry.nameOf(file);
+
+        AutomatonBase automaton;
+        try {
+            automaton = Loader.loadOrThrow(file);
+            // building the compact representation checks the transitions against the alphabet
+            automaton.toCompact();
+        } catch (RuntimeException e) {
+            // the failure of the metrics shows the reason as well, not only the file
+            String reason = (e.getMessage() != null) ? e.getMessage() : e.toString();
+            System.err.printf("Reloading %s failed: %s\n", file, reason);
+            System.err.printf("Keeping the previous version of %s.\n", name);
+            if (Metrics.ENABLED) Metrics.recordReloadFailure(String.format("%s: %s", file, reason));
+            return false;
+        }
+
+        long version = registry.publish(name, automaton, file);
+        if (Metrics.ENABLED) Metrics.recordReload(System.nanoTime() - start);
+        System.out.printf("Reloaded %s (version %d)\n", name, version);
+
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,231 @@
+package me.kokokotlin.main.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// match daemon on a unix domain socket
+// one selector thread does all the (non blocking) io, the requests are answered by a pool of workers
+// responses are queued per connection in request order and written as soon as the oldest one is ready
+public class MatchServer implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_REQUEST_LENGTH = 1 << 24;
+
+    private final Path socketPath;
+    private final RequestHandler handler;
+    private final ExecutorService workers;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Set<Connection> connections = new HashSet<>();
+
+    private volatile boolean running = true;
+
+    private static class Connection {
+        final SocketChannel channel;
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocate(0);
+        final Deque<CompletableFuture<String>> pending = new ArrayDeque<>();
+        boolean closeAfterWrite = false;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        boolean hasOutput() {
+            return out.hasRemaining() || (!pending.isEmpty() && pending.peek().isDone());
+        }
+    }
+
+    public MatchServer(AutomatonRegistry registry, Path socketPath, int workerCount) throws IOException {
+        this.socketPath = socketPath;
+        this.handler = new RequestHandler(registry);
+        this.workers = Executors.newFixedThreadPool(workerCount);
+
+        // a socket file of a previous run would make the bind fail
+        Files.deleteIfExists(socketPath);
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        serverChannel.bind(UnixDomainSocketAddress.of(socketPath));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    // blocks until the server is closed, the connections and the socket file are cleaned up before returning
+    public void serve() throws IOException {
+        try {
+            while (running) {
+                selector.select();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) read(connection);
+                            if (key.isValid() && key.isWritable()) write(connection);
+                        } catch (IOException e) {
+                            closeConnection(connection);
+                        }
+                    }
+                }
+
+                updateInterest();
+            }
+        } catch (ClosedSelectorException e) {
+            // closed while waiting in select
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+
+        channel.configureBlocking(false);
+        Connection connection = new Connection(channel);
+        channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.add(connection);
+    }
+
+    private void read(Connection connection) throws IOException {
+        int read = connection.channel.read(connection.in);
+        if (read == -1) {
+            // the client finished sending, answer the outstanding requests before closing
+            // a last request without a line break is answered as well
+            connection.closeAfterWrite = true;
+            connection.channel.keyFor(selector).interestOps(0);
+            if (connection.in.position() != 0 && connection.in.get(connection.in.position() - 1) != '\n' && connection.in.hasRemaining()) {
+                connection.in.put((byte) '\n');
+            }
+        }
+
+        ByteBuffer in = connection.in;
+        in.flip();
+        int lineStart = in.position();
+        for (int i = in.position(); i < in.limit(); i++) {
+            if (in.get(i) != '\n') continue;
+
+            int end = (i > lineStart && in.get(i - 1) == '\r') ? i - 1 : i;
+            byte[] line = new byte[end - lineStart];
+            in.get(lineStart, line);
+            submit(connection, new String(line, StandardCharsets.UTF_8));
+
+            lineStart = i + 1;
+        }
+        in.position(lineStart);
+        in.compact();
+
+        // a request that doesn't fit into the buffer, grow the buffer
+        if (!in.hasRemaining()) {
+            if (in.capacity() >= MAX_REQUEST_LENGTH) {
+                submit(connection, null);
+                connection.closeAfterWrite = true;
+                return;
+            }
+
+            ByteBuffer bigger = ByteBuffer.allocate(in.capacity() * 2);
+            in.flip();
+            bigger.put(in);
+            connection.in = bigger;
+        }
+    }
+
+    private void submit(Connection connection, String request) {
+        CompletableFuture<String> response = (request == null)
+                ? CompletableFuture.completedFuture("E Request too long!")
+                : CompletableFuture.supplyAsync(() -> handler.handle(request), workers);
+
+        response.whenComplete((r, e) -> selector.wakeup());
+        connection.pending.add(response);
+    }
+
+    private void write(Connection connection) throws IOException {
+        while (true) {
+            if (!connection.out.hasRemaining()) {
+                CompletableFuture<String> next = connection.pending.peek();
+                if (next == null || !next.isDone()) break;
+
+                connection.pending.poll();
+                String response = next.exceptionally(e -> "E " + e.getMessage()).join();
+                connection.out = ByteBuffer.wrap((response + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+
+            connection.channel.write(connection.out);
+            if (connection.out.hasRemaining()) break;
+        }
+    }
+
+    private void updateInterest() {
+        List<Connection> finished = new ArrayList<>();
+
+        for (Connection connection: connections) {
+            SelectionKey key = connection.channel.keyFor(selector);
+            if (key == null || !key.isValid()) continue;
+
+            if (connection.closeAfterWrite && connection.pending.isEmpty() && !connection.out.hasRemaining()) {
+                finished.add(connection);
+                continue;
+            }
+
+            int ops = connection.closeAfterWrite ? 0 : SelectionKey.OP_READ;
+            if (connection.hasOutput()) ops |= SelectionKey.OP_WRITE;
+            key.interestOps(ops);
+        }
+
+        for (Connection connection: finished) closeConnection(connection);
+    }
+
+    private void closeConnection(Connection connection) {
+        connections.remove(connection);
+        connection.pending.forEach(f -> f.cancel(false));
+
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            System.err.printf("Couldn't close connection! %s\n", e.getMessage());
+        }
+    }
+
+    private void shutdown() throws IOException {
+        workers.shutdownNow();
+
+        for (Connection connection: new ArrayList<>(connections)) closeConnection(connection);
+        selector.close();
+        serverChannel.close();
+        Files.deleteIfExists(socketPath);
+    }
+
+    // can be called from any thread, serve() returns afterwards
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+}
@@ -0,0 +1,67 @@
+package me.kokokotlin.main.server;
+
+import me.kokokotlin.main.engine.AutomatonBase;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+// line based request protocol of the match server
+// every request is one line, every response is one line, responses are sent in the order of the requests
+// so a client can pipeline as many requests as it wants without waiting for the responses
+//
+// M <name> <word>            -> 1 if the word is accepted, else 0 (the word is the rest of the line and may be empty)
+// B <name> <word> <word> ... -> one 1/0 character per word, the words are separated by single spaces
+// S <name> <text>            -> leftmost longest matches in the text as start:length pairs separated by spaces
+// L                          -> names of all loaded automata separated by spaces
+// errors are answered with E <message>
+public class RequestHandler {
+    private final AutomatonRegistry registry;
+
+    public RequestHandler(AutomatonRegistry registry) {
+        this.registry = registry;
+    }
+
+    private static String error(String message) {
+        return "E " + message;
+    }
+
+    public String handle(String request) {
+        if (request.isEmpty()) return error("Empty request!");
+
+        char command = request.charAt(0);
+        if (command == 'L') return String.join(" ", registry.getNames());
+
+        if (request.length() < 3 || request.charAt(1) != ' ') return error(String.format("Malformed request %s!", request));
+
+        int nameEnd = request.indexOf(' ', 2);
+        String name = (nameEnd == -1) ? request.substring(2) : request.substring(2, nameEnd);
+        String argument = (nameEnd == -1) ? "" : request.substring(nameEnd + 1);
+
+        AutomatonBase automaton = registry.get(name);
+        if (automaton == null) return error(String.format("Automaton %s unknown!", name));
+
+        try {
+            switch (command) {
+                case 'M' -> {
+                    return automaton.match(argument) ? "1" : "0";
+                }
+                case 'B' -> {
+                    boolean[] accepted = automaton.matchAll(Arrays.asList(argument.split(" ", -1)));
+                    StringBuilder response = new StringBuilder(accepted.length);
+                    for (boolean a: accepted) response.append(a ? '1' : '0');
+                    return response.toString();
+                }
+                case 'S' -> {
+                    return automaton.search(argument).stream()
+                            .map(m -> m[0] + ":" + m[1])
+                            .collect(Collectors.joining(" "));
+                }
+                default -> {
+                    return error(String.format("Command %c unknown!", command));
+                }
+            }
+        } catch (RuntimeException e) {
+            return error(String.valueOf(e.getMessage()));
+        }
+    }
+}